@@ -0,0 +1,77 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.directory.fortress.core.model.Graphable;
+import org.apache.directory.fortress.core.model.Relationship;
+import org.apache.directory.fortress.core.model.Role;
+import org.apache.directory.fortress.core.model.UserRole;
+import org.jgrapht.graph.SimpleDirectedGraph;
+
+/**
+ * Fortress's role graph, built by {@link HierUtil} from a list of roles rather than read from the directory into the
+ * {@code fortress.roles} cache.  Lives in Fortress's package because HierUtil and RoleUtil are package private.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class FortressRoleGraph
+{
+    private final SimpleDirectedGraph<String, Relationship> graph;
+
+
+    /**
+     * Build the graph, as RoleUtil does when it loads the hierarchy of a tenant.
+     *
+     * @param contextId contains the tenant id.
+     * @param roles     contains every role, with {@link Role#getParents()} set.
+     */
+    public FortressRoleGraph( String contextId, List<Role> roles )
+    {
+        graph = HierUtil.buildGraph( HierUtil.loadHier( contextId, new ArrayList<Graphable>( roles ) ) );
+    }
+
+
+    /**
+     * Same computation as RoleUtil.getInheritedRoles, which AccessMgr.authorizedRoles calls for every session.
+     *
+     * @param userRoles contains the activated roles.
+     * @return names of the activated roles and of all their ascendants.
+     */
+    public Set<String> getInheritedRoles( List<UserRole> userRoles )
+    {
+        Set<String> roles = new TreeSet<String>( String.CASE_INSENSITIVE_ORDER );
+
+        for ( UserRole userRole : userRoles )
+        {
+            String name = userRole.getName();
+            roles.add( name );
+            roles.addAll( HierUtil.getAscendants( name, graph ) );
+        }
+
+        return roles;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.benchmarks;
+
+import java.security.Principal;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.realm.GlobalIds;
+import org.apache.directory.fortress.realm.tomcat.TcAccessMgrImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link TcAccessMgrImpl#authenticate(String, String)}, for good and bad passwords, with and without the
+ * credential cache, against directories of different latency.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthenticateBenchmark
+{
+    @Param({ "0", "500" })
+    public long latencyMicros;
+
+    @Param({ "false", "true" })
+    public boolean credentialCache;
+
+    @Param({ "1000" })
+    public int users;
+
+    private TcAccessMgrImpl accessMgr;
+
+
+    @Setup
+    public void setUp()
+    {
+        Fixtures.install( users, 10, latencyMicros );
+        Config.getInstance().setProperty( GlobalIds.CREDENTIAL_CACHE_ENABLED, String.valueOf( credentialCache ) );
+        accessMgr = new TcAccessMgrImpl();
+    }
+
+
+    @TearDown
+    public void tearDown()
+    {
+        accessMgr.release();
+    }
+
+
+    @Benchmark
+    public Principal authenticate( UserCursor cursor )
+    {
+        return accessMgr.authenticate( cursor.next( users ), InMemoryDirectory.PASSWORD );
+    }
+
+
+    @Benchmark
+    public Principal authenticateWrongPassword( UserCursor cursor )
+    {
+        return accessMgr.authenticate( cursor.next( users ), "wrong" );
+    }
+
+
+    /**
+     * Walks the users round robin, separately for each benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class UserCursor
+    {
+        private int next;
+
+        String next( int users )
+        {
+            next = ( next + 1 ) % users;
+
+            return "user" + next;
+        }
+    }
+}
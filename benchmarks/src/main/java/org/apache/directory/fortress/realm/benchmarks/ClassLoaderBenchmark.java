@@ -0,0 +1,191 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.directory.fortress.realm.J2eePolicyMgrImpl;
+import org.apache.directory.fortress.realm.util.ChildFirstUrlClassLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures realm startup under JBoss, where the realm's classes are loaded through a child first loader.  Every
+ * operation creates a new loader over the benchmarks jar, which holds the realm and all of its dependencies, and loads
+ * the realm's classes through it, including the JDK types their members refer to.
+ * <p>
+ * The {@code parallel} loader is {@link ChildFirstUrlClassLoader}, the {@code plain} loader is the child first loader
+ * the realm used before it was made parallel capable and cached its resource lookups.  Startup happens once, so this is
+ * a single shot benchmark, and must be run from {@code benchmarks.jar}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(3)
+public class ClassLoaderBenchmark
+{
+    /** Package of the realm's classes */
+    private static final String REALM = "org/apache/directory/fortress/realm/";
+
+    /** Package of the benchmarks, not part of the realm */
+    private static final String BENCHMARKS = REALM + "benchmarks/";
+
+    @Param({ "parallel", "plain" })
+    public String loader;
+
+    private URL[] classpath;
+    private List<String> classNames;
+
+
+    @Setup
+    public void setUp() throws IOException, URISyntaxException
+    {
+        URL jar = J2eePolicyMgrImpl.class.getProtectionDomain().getCodeSource().getLocation();
+        File file = new File( jar.toURI() );
+
+        if ( !file.isFile() )
+        {
+            throw new IllegalStateException( "run from benchmarks.jar, the realm was loaded from <" + jar + ">" );
+        }
+
+        classpath = new URL[] { jar };
+        classNames = new ArrayList<String>();
+
+        try ( ZipFile zip = new ZipFile( file ) )
+        {
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); )
+            {
+                String name = entries.nextElement().getName();
+
+                if ( name.startsWith( REALM ) && !name.startsWith( BENCHMARKS ) && name.endsWith( ".class" ) )
+                {
+                    classNames.add( name.substring( 0, name.length() - ".class".length() ).replace( '/', '.' ) );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @return number of classes loaded, those that failed to link are skipped.
+     */
+    @Benchmark
+    public int startup() throws IOException
+    {
+        ClassLoader parent = ClassLoader.getPlatformClassLoader();
+        int loaded = 0;
+
+        try ( URLClassLoader ucl = "parallel".equals( loader ) ? new ChildFirstUrlClassLoader( classpath, parent )
+            : new PlainChildFirstUrlClassLoader( classpath, parent ) )
+        {
+            for ( String name : classNames )
+            {
+                try
+                {
+                    // Resolves the types of all members, most of which are found in the parent:
+                    Class.forName( name, false, ucl ).getDeclaredMethods();
+                    loaded++;
+                }
+                catch ( ClassNotFoundException | LinkageError e )
+                {
+                    // Refers to an optional dependency that is not in the benchmarks jar.
+                }
+            }
+        }
+
+        return loaded;
+    }
+
+
+    /**
+     * The child first loader as it was before it was made parallel capable: every class is first searched for on the
+     * loader's own classpath, and resource lookups are not cached.
+     */
+    static class PlainChildFirstUrlClassLoader extends URLClassLoader
+    {
+        PlainChildFirstUrlClassLoader( URL[] urls, ClassLoader parent )
+        {
+            super( urls, parent );
+        }
+
+
+        @Override
+        protected Class<?> loadClass( String name, boolean resolve ) throws ClassNotFoundException
+        {
+            Class<?> c = findLoadedClass( name );
+
+            if ( c == null )
+            {
+                try
+                {
+                    c = findClass( name );
+                }
+                catch ( ClassNotFoundException ignore )
+                {
+
+                }
+
+                if ( c == null )
+                {
+                    c = getParent().loadClass( name );
+                }
+            }
+
+            if ( resolve )
+            {
+                resolveClass( c );
+            }
+
+            return c;
+        }
+
+
+        @Override
+        public URL getResource( String name )
+        {
+            URL url = findResource( name );
+
+            return url != null ? url : getParent().getResource( name );
+        }
+    }
+}
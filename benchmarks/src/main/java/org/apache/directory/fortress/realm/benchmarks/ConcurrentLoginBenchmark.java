@@ -0,0 +1,187 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.benchmarks;
+
+import java.security.Principal;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.realm.GlobalIds;
+import org.apache.directory.fortress.realm.J2eePolicyMgr;
+import org.apache.directory.fortress.realm.J2eePolicyMgrFactory;
+import org.apache.directory.fortress.realm.tomcat.TcAccessMgrImpl;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures concurrent logins of one user, as fired by a browser or a service account, with and without the single
+ * flight coalescing of {@link TcAccessMgrImpl#authenticate(String, String)}.  The uncoalesced baseline calls
+ * {@link J2eePolicyMgr#createSession(String, String)} directly from every thread.
+ * <p>
+ * Besides the login rate, every benchmark reports the number of {@code logins} per iteration and of
+ * {@code directoryCalls}, the sessions actually created by the directory.  The difference between the two is the number
+ * of directory calls saved.  The credential and failure caches are disabled, so every login that is not coalesced goes
+ * to the directory.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentLoginBenchmark
+{
+    private static final String USER = "user0";
+
+    @Param({ "500", "5000" })
+    public long latencyMicros;
+
+    private InMemoryDirectory directory;
+    private TcAccessMgrImpl accessMgr;
+    private J2eePolicyMgr policyMgr;
+
+
+    @Setup
+    public void setUp() throws SecurityException
+    {
+        directory = Fixtures.install( 1, 10, latencyMicros );
+        Config.getInstance().setProperty( GlobalIds.CREDENTIAL_CACHE_ENABLED, "false" );
+        Config.getInstance().setProperty( GlobalIds.FAILURE_CACHE_TTL, "0" );
+        accessMgr = new TcAccessMgrImpl();
+        policyMgr = J2eePolicyMgrFactory.createInstance();
+    }
+
+
+    @TearDown
+    public void tearDown()
+    {
+        accessMgr.release();
+        J2eePolicyMgrFactory.releaseInstance( policyMgr );
+    }
+
+
+    @Benchmark
+    @Threads(16)
+    public Principal coalesced( Calls calls )
+    {
+        long before = directory.getSessionCount();
+        Principal principal = accessMgr.authenticate( USER, InMemoryDirectory.PASSWORD );
+        calls.count( directory.getSessionCount() - before );
+
+        return principal;
+    }
+
+
+    @Benchmark
+    @Threads(16)
+    public Principal uncoalesced( Calls calls ) throws SecurityException
+    {
+        long before = directory.getSessionCount();
+        Principal principal = policyMgr.createSession( USER, InMemoryDirectory.PASSWORD );
+        calls.count( directory.getSessionCount() - before );
+
+        return principal;
+    }
+
+
+    /**
+     * Half of the threads log in with the good password, half with a wrong one.  Each half is coalesced on its own,
+     * a failure is never shared with the callers of the good password.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(8)
+    public Principal mixedGoodPassword( Calls calls )
+    {
+        long before = directory.getSessionCount();
+        Principal principal = accessMgr.authenticate( USER, InMemoryDirectory.PASSWORD );
+        calls.count( directory.getSessionCount() - before );
+
+        if ( principal == null )
+        {
+            throw new IllegalStateException( "good password rejected" );
+        }
+
+        return principal;
+    }
+
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(8)
+    public Principal mixedWrongPassword( Calls calls )
+    {
+        long before = directory.getSessionCount();
+        Principal principal = accessMgr.authenticate( USER, "wrong" );
+        calls.count( directory.getSessionCount() - before );
+
+        if ( principal != null )
+        {
+            throw new IllegalStateException( "wrong password accepted" );
+        }
+
+        return principal;
+    }
+
+
+    /**
+     * Logins and directory calls of one benchmark thread, reported by JMH summed over all threads.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Calls
+    {
+        public long logins;
+        public long directoryCalls;
+
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            logins = 0;
+            directoryCalls = 0;
+        }
+
+
+        void count( long directoryCalls )
+        {
+            this.logins++;
+            this.directoryCalls += directoryCalls;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.benchmarks;
+
+import org.apache.directory.fortress.core.util.Config;
+
+/**
+ * Settings shared by the benchmarks.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class Fixtures
+{
+    /** Property read by J2eePolicyMgrFactory to select the policy manager class */
+    static final String REALM_IMPLEMENTATION = "realmImplementation";
+
+    private Fixtures()
+    {
+    }
+
+
+    /**
+     * Create the default in-memory directory and route J2eePolicyMgrFactory to it.  Must run before the factory is
+     * first used in the JVM, i.e. in the benchmark's trial setup.
+     *
+     * @param userCount     number of users.
+     * @param roleCount     number of roles assigned to every user.
+     * @param latencyMicros simulated directory round trip, in microseconds.
+     * @return the directory.
+     */
+    static InMemoryDirectory install( int userCount, int roleCount, long latencyMicros )
+    {
+        InMemoryDirectory directory = new InMemoryDirectory( userCount, roleCount, latencyMicros );
+        InMemoryDirectory.setDefault( directory );
+        Config.getInstance().setProperty( REALM_IMPLEMENTATION, InMemoryPolicyMgr.class.getName() );
+
+        return directory;
+    }
+}
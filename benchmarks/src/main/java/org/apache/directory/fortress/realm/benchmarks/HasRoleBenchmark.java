@@ -0,0 +1,111 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.benchmarks;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.realm.J2eePolicyMgr;
+import org.apache.directory.fortress.realm.J2eePolicyMgrImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the role checks of {@link J2eePolicyMgrImpl} for a principal holding a few or many roles.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HasRoleBenchmark
+{
+    @Param({ "10", "300" })
+    public int roles;
+
+    private J2eePolicyMgr policyMgr;
+    private Principal principal;
+    private String held;
+    private List<String> candidates;
+
+
+    @Setup
+    public void setUp() throws SecurityException
+    {
+        InMemoryDirectory directory = new InMemoryDirectory( 1, roles, 0 );
+        policyMgr = new J2eePolicyMgrImpl( new InMemoryAccessMgr( directory ), new InMemoryReviewMgr( directory ) );
+        principal = policyMgr.createSession( "user0", InMemoryDirectory.PASSWORD );
+        held = "ROLE" + ( roles / 2 );
+
+        // A typical security constraint: a few roles the user does not have and one it has.
+        candidates = new ArrayList<String>();
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            candidates.add( "other" + i );
+        }
+
+        candidates.add( held );
+    }
+
+
+    @Benchmark
+    public boolean hasRole() throws SecurityException
+    {
+        return policyMgr.hasRole( principal, held );
+    }
+
+
+    @Benchmark
+    public boolean hasRoleMiss() throws SecurityException
+    {
+        return policyMgr.hasRole( principal, "nosuchrole" );
+    }
+
+
+    @Benchmark
+    public boolean hasAnyRole() throws SecurityException
+    {
+        return policyMgr.hasAnyRole( principal, candidates );
+    }
+
+
+    @Benchmark
+    public BitSet hasRoles() throws SecurityException
+    {
+        return policyMgr.hasRoles( principal, candidates );
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.benchmarks;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.directory.fortress.core.AccessMgr;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.Group;
+import org.apache.directory.fortress.core.model.Permission;
+import org.apache.directory.fortress.core.model.Role;
+import org.apache.directory.fortress.core.model.RoleConstraint;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserRole;
+
+/**
+ * {@link AccessMgr} stand-in backed by an {@link InMemoryDirectory}.  Only the methods used by the realm are
+ * implemented, the others throw {@link UnsupportedOperationException}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class InMemoryAccessMgr implements AccessMgr
+{
+    private final InMemoryDirectory directory;
+
+
+    /**
+     * @param directory holds the users and roles.
+     */
+    public InMemoryAccessMgr( InMemoryDirectory directory )
+    {
+        this.directory = directory;
+    }
+
+
+    @Override
+    public Session authenticate( String userId, String password ) throws SecurityException
+    {
+        return directory.createSession( userId, password, false );
+    }
+
+
+    @Override
+    public Session createSession( User user, boolean isTrusted ) throws SecurityException
+    {
+        return directory.createSession( user.getUserId(), user.getPassword(), isTrusted );
+    }
+
+
+    @Override
+    public Session createSession( User user, List<RoleConstraint> constraints, boolean isTrusted ) throws SecurityException
+    {
+        return createSession( user, isTrusted );
+    }
+
+
+    @Override
+    public Session createSession( Group group ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "createSession(Group)" );
+    }
+
+
+    @Override
+    public boolean checkAccess( Session session, Permission perm ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "checkAccess" );
+    }
+
+
+    @Override
+    public boolean checkAccess( User user, Permission perm, boolean isTrusted ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "checkAccess" );
+    }
+
+
+    @Override
+    public boolean isUserInRole( User user, Role role, boolean isTrusted ) throws SecurityException
+    {
+        return authorizedRoles( createSession( user, isTrusted ) ).contains( role.getName() );
+    }
+
+
+    @Override
+    public List<Permission> sessionPermissions( Session session ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "sessionPermissions" );
+    }
+
+
+    @Override
+    public List<UserRole> sessionRoles( Session session ) throws SecurityException
+    {
+        return session.getRoles();
+    }
+
+
+    /**
+     * Like Fortress, computes a new case insensitive set from the session's activated roles on every call.
+     */
+    @Override
+    public Set<String> authorizedRoles( Session session ) throws SecurityException
+    {
+        Set<String> roles = new TreeSet<String>( String.CASE_INSENSITIVE_ORDER );
+
+        for ( UserRole role : session.getRoles() )
+        {
+            roles.add( role.getName() );
+        }
+
+        return roles;
+    }
+
+
+    @Override
+    public void addActiveRole( Session session, UserRole role ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "addActiveRole" );
+    }
+
+
+    @Override
+    public void dropActiveRole( Session session, UserRole role ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "dropActiveRole" );
+    }
+
+
+    @Override
+    public String getUserId( Session session ) throws SecurityException
+    {
+        return session.getUserId();
+    }
+
+
+    @Override
+    public User getUser( Session session ) throws SecurityException
+    {
+        return session.getUser();
+    }
+
+
+    @Override
+    public void setAdmin( Session session )
+    {
+    }
+
+
+    @Override
+    public void setContextId( String contextId )
+    {
+    }
+}
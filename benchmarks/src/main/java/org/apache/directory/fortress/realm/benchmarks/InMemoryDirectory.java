@@ -0,0 +1,212 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.directory.fortress.core.GlobalErrIds;
+import org.apache.directory.fortress.core.PasswordException;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserRole;
+
+/**
+ * A fixed population of users and roles held in memory, standing in for the directory server.  Every user
+ * {@code user0 .. user(n-1)} has the password {@link #PASSWORD} and is assigned the roles {@code role0 .. role(r-1)}.
+ * Calls that would go to the directory are delayed by a configurable latency so benchmarks can model a remote server.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class InMemoryDirectory
+{
+    /** Password of every user */
+    public static final String PASSWORD = "secret";
+
+    /** Used by stand-ins that are created reflectively, see {@link InMemoryPolicyMgr} */
+    private static volatile InMemoryDirectory defaultInstance;
+
+    private final Map<String, User> users = new HashMap<String, User>();
+    private final List<String> roles;
+    private final long latencyNanos;
+    // Sessions created by each calling thread, lets a benchmark count the directory calls of its own thread:
+    private final ThreadLocal<long[]> sessionCount = ThreadLocal.withInitial( () -> new long[1] );
+
+
+    /**
+     * Create a directory.
+     *
+     * @param userCount     number of users.
+     * @param roleCount     number of roles assigned to every user.
+     * @param latencyMicros delay of every call that would go to the directory server, in microseconds.
+     */
+    public InMemoryDirectory( int userCount, int roleCount, long latencyMicros )
+    {
+        List<String> names = new ArrayList<String>( roleCount );
+
+        for ( int r = 0; r < roleCount; r++ )
+        {
+            names.add( "role" + r );
+        }
+
+        this.roles = Collections.unmodifiableList( names );
+
+        for ( int i = 0; i < userCount; i++ )
+        {
+            User user = new User( "user" + i );
+            user.setOu( "people" );
+            user.setCn( "User " + i );
+            user.setSn( "Sn" + i );
+            user.setDn( "uid=user" + i + ",ou=People,dc=example,dc=com" );
+            user.setInternalId();
+            users.put( user.getUserId(), user );
+        }
+
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos( latencyMicros );
+    }
+
+
+    /**
+     * @return the directory used by stand-ins created without one.
+     */
+    public static InMemoryDirectory getDefault()
+    {
+        return defaultInstance;
+    }
+
+
+    /**
+     * @param directory the directory to be used by stand-ins created without one.
+     */
+    public static void setDefault( InMemoryDirectory directory )
+    {
+        defaultInstance = directory;
+    }
+
+
+    /**
+     * Verify the credentials and build the RBAC session of a user, activating all assigned roles.
+     *
+     * @param userId    contains the userId.
+     * @param password  contains the password, ignored if trusted.
+     * @param isTrusted if true, the password is not checked.
+     * @return a new session.
+     * @throws SecurityException if the user does not exist or the password is wrong.
+     */
+    public Session createSession( String userId, String password, boolean isTrusted ) throws SecurityException
+    {
+        pause();
+        sessionCount.get()[0]++;
+        User entry = users.get( userId );
+
+        if ( entry == null )
+        {
+            throw new SecurityException( GlobalErrIds.USER_NOT_FOUND, "user [" + userId + "] not found" );
+        }
+
+        if ( !isTrusted && !PASSWORD.equals( password ) )
+        {
+            throw new PasswordException( GlobalErrIds.USER_PW_INVLD, "user [" + userId + "] invalid password" );
+        }
+
+        User user = new User( entry.getUserId() );
+        user.setOu( entry.getOu() );
+        user.setCn( entry.getCn() );
+        user.setSn( entry.getSn() );
+        user.setDn( entry.getDn() );
+        user.setInternalId( entry.getInternalId() );
+
+        Session session = new Session( user, UUID.randomUUID().toString() );
+        session.setAuthenticated( true );
+
+        for ( String role : roles )
+        {
+            UserRole userRole = new UserRole( userId, role );
+            userRole.setBeginTime( "0000" );
+            userRole.setEndTime( "0000" );
+            userRole.setBeginDate( "20090101" );
+            userRole.setEndDate( "none" );
+            userRole.setDayMask( "1234567" );
+            userRole.setTimeout( 0 );
+            session.setRole( userRole );
+        }
+
+        return session;
+    }
+
+
+    /**
+     * @return number of times the calling thread went to the directory to create a session, whether it succeeded or not.
+     */
+    public long getSessionCount()
+    {
+        return sessionCount.get()[0];
+    }
+
+
+    /**
+     * @param userId contains the userId.
+     * @return the stored user, or null.
+     */
+    public User readUser( String userId )
+    {
+        pause();
+        return users.get( userId );
+    }
+
+
+    /**
+     * @return names of the roles assigned to every user.
+     */
+    public List<String> getRoles()
+    {
+        return roles;
+    }
+
+
+    /**
+     * @return userIds of all users.
+     */
+    public List<String> getUserIds()
+    {
+        return new ArrayList<String>( users.keySet() );
+    }
+
+
+    /**
+     * Wait for the configured latency, modelling a round trip to the directory server.
+     */
+    void pause()
+    {
+        if ( latencyNanos > 0 )
+        {
+            LockSupport.parkNanos( latencyNanos );
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.benchmarks;
+
+import org.apache.directory.fortress.realm.J2eePolicyMgrImpl;
+
+/**
+ * Policy manager over the {@link InMemoryDirectory#getDefault() default in-memory directory}.  Its public no-arg
+ * constructor lets {@code J2eePolicyMgrFactory} create it when it is named by the {@code realmImplementation} property,
+ * which is how the benchmarks put stand-ins behind {@code TcAccessMgrImpl} and {@code Tc7AccessMgrProxy}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class InMemoryPolicyMgr extends J2eePolicyMgrImpl
+{
+    /**
+     * Create a policy manager over the default in-memory directory.
+     */
+    public InMemoryPolicyMgr()
+    {
+        super( new InMemoryAccessMgr( InMemoryDirectory.getDefault() ), new InMemoryReviewMgr( InMemoryDirectory.getDefault() ) );
+    }
+}
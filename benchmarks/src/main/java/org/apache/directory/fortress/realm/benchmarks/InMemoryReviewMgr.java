@@ -0,0 +1,410 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.directory.fortress.core.GlobalErrIds;
+import org.apache.directory.fortress.core.ReviewMgr;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.OrgUnit;
+import org.apache.directory.fortress.core.model.PermObj;
+import org.apache.directory.fortress.core.model.Permission;
+import org.apache.directory.fortress.core.model.PermissionAttributeSet;
+import org.apache.directory.fortress.core.model.Role;
+import org.apache.directory.fortress.core.model.RoleConstraint;
+import org.apache.directory.fortress.core.model.SDSet;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserRole;
+
+/**
+ * {@link ReviewMgr} stand-in backed by an {@link InMemoryDirectory}.  Only the methods used by the realm are
+ * implemented, the others throw {@link UnsupportedOperationException}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class InMemoryReviewMgr implements ReviewMgr
+{
+    private final InMemoryDirectory directory;
+
+
+    /**
+     * @param directory holds the users and roles.
+     */
+    public InMemoryReviewMgr( InMemoryDirectory directory )
+    {
+        this.directory = directory;
+    }
+
+
+    @Override
+    public Permission readPermission( Permission perm ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "readPermission" );
+    }
+
+
+    @Override
+    public PermObj readPermObj( PermObj permObj ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "readPermObj" );
+    }
+
+
+    @Override
+    public PermissionAttributeSet readPermAttributeSet( PermissionAttributeSet permAttributeSet ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "readPermAttributeSet" );
+    }
+
+
+    @Override
+    public List<Permission> findPermissions( Permission perm ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "findPermissions" );
+    }
+
+
+    @Override
+    public List<Permission> findPermsByObj( PermObj permObj ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "findPermsByObj" );
+    }
+
+
+    @Override
+    public List<Permission> findAnyPermissions( Permission perm ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "findAnyPermissions" );
+    }
+
+
+    @Override
+    public List<PermObj> findPermObjs( PermObj permObj ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "findPermObjs" );
+    }
+
+
+    @Override
+    public List<PermObj> findPermObjs( OrgUnit ou ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "findPermObjs" );
+    }
+
+
+    @Override
+    public Role readRole( Role role ) throws SecurityException
+    {
+        directory.pause();
+
+        if ( !directory.getRoles().contains( role.getName() ) )
+        {
+            throw new SecurityException( GlobalErrIds.ROLE_NOT_FOUND, "role [" + role.getName() + "] not found" );
+        }
+
+        return new Role( role.getName() );
+    }
+
+
+    @Override
+    public List<Role> findRoles( String value ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "findRoles" );
+    }
+
+
+    @Override
+    public List<String> findRoles( String value, int limit ) throws SecurityException
+    {
+        directory.pause();
+        List<String> result = new ArrayList<String>();
+
+        for ( String name : directory.getRoles() )
+        {
+            if ( ( result.size() < limit ) && name.startsWith( value ) )
+            {
+                result.add( name );
+            }
+        }
+
+        return result;
+    }
+
+
+    @Override
+    public User readUser( User user ) throws SecurityException
+    {
+        User entry = directory.readUser( user.getUserId() );
+
+        if ( entry == null )
+        {
+            throw new SecurityException( GlobalErrIds.USER_NOT_FOUND, "user [" + user.getUserId() + "] not found" );
+        }
+
+        return entry;
+    }
+
+
+    @Override
+    public List<User> findUsers( User user ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "findUsers" );
+    }
+
+
+    @Override
+    public List<User> findUsers( OrgUnit ou ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "findUsers" );
+    }
+
+
+    @Override
+    public List<String> findUsers( User user, int limit ) throws SecurityException
+    {
+        directory.pause();
+        List<String> result = new ArrayList<String>();
+
+        for ( String userId : directory.getUserIds() )
+        {
+            if ( ( result.size() < limit ) && userId.startsWith( user.getUserId() ) )
+            {
+                result.add( userId );
+            }
+        }
+
+        return result;
+    }
+
+
+    @Override
+    public List<String> assignedUsers( Role role, int limit ) throws SecurityException
+    {
+        directory.pause();
+        List<String> userIds = directory.getUserIds();
+
+        return directory.getRoles().contains( role.getName() ) ? userIds.subList( 0, Math.min( limit, userIds.size() ) ) : new ArrayList<String>();
+    }
+
+
+    @Override
+    public List<UserRole> assignedRoles( User user ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "assignedRoles" );
+    }
+
+
+    @Override
+    public List<User> assignedUsers( Role role ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "assignedUsers" );
+    }
+
+
+    @Override
+    public List<User> assignedUsers( Role role, RoleConstraint roleConstraint ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "assignedUsers" );
+    }
+
+
+    @Override
+    public List<UserRole> assignedUsers( Role role, RoleConstraint.RCType rcType, String value ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "assignedUsers" );
+    }
+
+
+    @Override
+    public List<String> assignedRoles( String value ) throws SecurityException
+    {
+        directory.pause();
+
+        return new ArrayList<String>( directory.getRoles() );
+    }
+
+
+    @Override
+    public List<User> authorizedUsers( Role role ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "authorizedUsers" );
+    }
+
+
+    @Override
+    public Set<String> authorizedRoles( User user ) throws SecurityException
+    {
+        directory.pause();
+        Set<String> result = new TreeSet<String>( String.CASE_INSENSITIVE_ORDER );
+        result.addAll( directory.getRoles() );
+
+        return result;
+    }
+
+
+    @Override
+    public List<Permission> rolePermissions( Role role ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "rolePermissions" );
+    }
+
+
+    @Override
+    public List<Permission> rolePermissions( Role role, boolean noInheritance ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "rolePermissions" );
+    }
+
+
+    @Override
+    public List<PermissionAttributeSet> rolePermissionAttributeSets( Role role, boolean noInheritance ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "rolePermissionAttributeSets" );
+    }
+
+
+    @Override
+    public List<Permission> userPermissions( User user ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "userPermissions" );
+    }
+
+
+    @Override
+    public List<String> permissionRoles( Permission perm ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "permissionRoles" );
+    }
+
+
+    @Override
+    public Set<String> authorizedPermissionRoles( Permission perm ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "authorizedPermissionRoles" );
+    }
+
+
+    @Override
+    public List<String> permissionUsers( Permission perm ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "permissionUsers" );
+    }
+
+
+    @Override
+    public Set<String> authorizedPermissionUsers( Permission perm ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "authorizedPermissionUsers" );
+    }
+
+
+    @Override
+    public List<SDSet> ssdRoleSets( Role role ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "ssdRoleSets" );
+    }
+
+
+    @Override
+    public SDSet ssdRoleSet( SDSet set ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "ssdRoleSet" );
+    }
+
+
+    @Override
+    public List<SDSet> ssdSets( SDSet set ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "ssdSets" );
+    }
+
+
+    @Override
+    public Set<String> ssdRoleSetRoles( SDSet set ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "ssdRoleSetRoles" );
+    }
+
+
+    @Override
+    public int ssdRoleSetCardinality( SDSet set ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "ssdRoleSetCardinality" );
+    }
+
+
+    @Override
+    public List<SDSet> dsdRoleSets( Role role ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "dsdRoleSets" );
+    }
+
+
+    @Override
+    public SDSet dsdRoleSet( SDSet set ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "dsdRoleSet" );
+    }
+
+
+    @Override
+    public List<SDSet> dsdSets( SDSet set ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "dsdSets" );
+    }
+
+
+    @Override
+    public Set<String> dsdRoleSetRoles( SDSet set ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "dsdRoleSetRoles" );
+    }
+
+
+    @Override
+    public int dsdRoleSetCardinality( SDSet set ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "dsdRoleSetCardinality" );
+    }
+
+
+    @Override
+    public List<RoleConstraint> findRoleConstraints( User user, Permission perm, RoleConstraint.RCType rcType ) throws SecurityException
+    {
+        throw new UnsupportedOperationException( "findRoleConstraints" );
+    }
+
+
+    @Override
+    public void setAdmin( Session session )
+    {
+    }
+
+
+    @Override
+    public void setContextId( String contextId )
+    {
+    }
+}
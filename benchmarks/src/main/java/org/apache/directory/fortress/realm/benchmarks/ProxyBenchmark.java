@@ -0,0 +1,111 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.benchmarks;
+
+import java.security.Principal;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.core.StandardEngine;
+import org.apache.directory.fortress.realm.tomcat.Tc7AccessMgrProxy;
+import org.apache.directory.fortress.realm.tomcat.TcAccessMgr;
+import org.apache.directory.fortress.realm.tomcat.TcAccessMgrImpl;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of going through {@link Tc7AccessMgrProxy} rather than calling {@link TcAccessMgrImpl} directly.
+ * The proxy is started as a context realm, so it loads the implementation through the thread context class loader.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProxyBenchmark
+{
+    private Tc7AccessMgrProxy proxy;
+    private TcAccessMgr direct;
+    private Principal principal;
+
+
+    @Setup
+    public void setUp() throws LifecycleException
+    {
+        Fixtures.install( 1, 10, 0 );
+        proxy = new Tc7AccessMgrProxy();
+        // The realm registers itself in JMX under its container's name:
+        proxy.setContainer( new StandardEngine() );
+        proxy.setContainerType( "TomcatContext" );
+        proxy.setContextId( "HOME" );
+        proxy.start();
+        direct = new TcAccessMgrImpl();
+        principal = direct.authenticate( "user0", InMemoryDirectory.PASSWORD );
+    }
+
+
+    @TearDown
+    public void tearDown() throws LifecycleException
+    {
+        proxy.stop();
+        direct.release();
+    }
+
+
+    @Benchmark
+    public boolean hasRoleDirect()
+    {
+        return direct.hasRole( principal, "role5" );
+    }
+
+
+    @Benchmark
+    public boolean hasRoleProxy()
+    {
+        return proxy.hasRole( null, principal, "role5" );
+    }
+
+
+    @Benchmark
+    public Principal authenticateDirect()
+    {
+        return direct.authenticate( "user0", InMemoryDirectory.PASSWORD );
+    }
+
+
+    @Benchmark
+    public Principal authenticateProxy()
+    {
+        return proxy.authenticate( "user0", InMemoryDirectory.PASSWORD );
+    }
+}
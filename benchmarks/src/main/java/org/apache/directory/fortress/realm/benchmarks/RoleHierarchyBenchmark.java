@@ -0,0 +1,136 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.benchmarks;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.impl.FortressRoleGraph;
+import org.apache.directory.fortress.core.model.Role;
+import org.apache.directory.fortress.core.model.UserRole;
+import org.apache.directory.fortress.realm.RoleDictionary;
+import org.apache.directory.fortress.realm.RoleHierarchy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the roles inherited by a session computed from the compiled {@link RoleHierarchy} with the path the realm
+ * takes without it: Fortress walks its role graph on every authorizedRoles call, see {@link FortressRoleGraph}, and
+ * the realm maps the names to ids in its {@link RoleDictionary}.  Both return the ids of the same roles.  The hierarchy
+ * has {@code width} chains of {@code depth} roles, the session activates the most junior role of 4 chains.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoleHierarchyBenchmark
+{
+    @Param({ "10", "100", "1000" })
+    public int depth;
+
+    @Param({ "10" })
+    public int width;
+
+    private RoleHierarchy hierarchy;
+    private RoleDictionary dictionary;
+    private FortressRoleGraph graph;
+    private List<Role> roles;
+    private List<String> activated;
+    private List<UserRole> userRoles;
+
+
+    @Setup
+    public void setUp() throws SecurityException
+    {
+        roles = new ArrayList<Role>();
+        activated = new ArrayList<String>();
+        userRoles = new ArrayList<UserRole>();
+
+        for ( int chain = 0; chain < width; chain++ )
+        {
+            for ( int level = 0; level < depth; level++ )
+            {
+                Role role = new Role( "role" + chain + "-" + level );
+
+                if ( level > 0 )
+                {
+                    role.setParent( "role" + chain + "-" + ( level - 1 ) );
+                }
+
+                roles.add( role );
+            }
+
+            if ( chain < 4 )
+            {
+                activated.add( "role" + chain + "-" + ( depth - 1 ) );
+                userRoles.add( new UserRole( "user0", "role" + chain + "-" + ( depth - 1 ) ) );
+            }
+        }
+
+        // A tenant of its own, so every trial compiles a fresh hierarchy:
+        String contextId = UUID.randomUUID().toString();
+        hierarchy = RoleHierarchy.getInstance( contextId, TimeUnit.HOURS.toMillis( 1 ) );
+        dictionary = RoleDictionary.getInstance( contextId );
+        graph = new FortressRoleGraph( contextId, roles );
+
+        if ( !compiled().equals( fortress() ) )
+        {
+            throw new IllegalStateException( "compiled and Fortress hierarchies disagree" );
+        }
+    }
+
+
+    @Benchmark
+    public BitSet compiled() throws SecurityException
+    {
+        return hierarchy.authorized( activated, () -> roles );
+    }
+
+
+    @Benchmark
+    public BitSet fortress()
+    {
+        BitSet ids = new BitSet();
+
+        for ( String role : graph.getInheritedRoles( userRoles ) )
+        {
+            ids.set( dictionary.intern( role ) );
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.realm.BinarySessionCodec;
+import org.apache.directory.fortress.realm.GlobalIds;
+import org.apache.directory.fortress.realm.J2eePolicyMgr;
+import org.apache.directory.fortress.realm.J2eePolicyMgrImpl;
+import org.apache.directory.fortress.realm.JavaSessionCodec;
+import org.apache.directory.fortress.realm.SessionCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how sessions are serialized into, and deserialized from, the String carried by
+ * {@link org.apache.directory.fortress.realm.TcPrincipal#toString()}.  {@code deserialize} goes through
+ * {@link J2eePolicyMgr#deserialize(String)} and so includes the decoded session cache.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionCodecBenchmark
+{
+    @Param({ "binary", "java" })
+    public String codec;
+
+    @Param({ "10" })
+    public int roles;
+
+    private SessionCodec sessionCodec;
+    private J2eePolicyMgr policyMgr;
+    private Session session;
+    private String encoded;
+
+
+    @Setup
+    public void setUp() throws SecurityException
+    {
+        // Read once per JVM by SessionCodecFactory, used by deserialize:
+        Config.getInstance().setProperty( GlobalIds.SESSION_CODEC, codec );
+        sessionCodec = "java".equals( codec ) ? new JavaSessionCodec() : new BinarySessionCodec();
+        InMemoryDirectory directory = new InMemoryDirectory( 1, roles, 0 );
+        policyMgr = new J2eePolicyMgrImpl( new InMemoryAccessMgr( directory ), new InMemoryReviewMgr( directory ) );
+        session = directory.createSession( "user0", InMemoryDirectory.PASSWORD, false );
+        encoded = sessionCodec.encode( session );
+    }
+
+
+    @Benchmark
+    public String serialize() throws SecurityException
+    {
+        return sessionCodec.encode( session );
+    }
+
+
+    @Benchmark
+    public Session deserializeUncached() throws SecurityException
+    {
+        return sessionCodec.decode( encoded );
+    }
+
+
+    @Benchmark
+    public Session deserialize() throws SecurityException
+    {
+        return policyMgr.deserialize( encoded );
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.benchmarks;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.realm.J2eePolicyMgr;
+import org.apache.directory.fortress.realm.J2eePolicyMgrImpl;
+import org.apache.directory.fortress.realm.TcPrincipal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures creating a {@link TcPrincipal}, from the bare constructor up to a full login, and rendering it with
+ * {@link TcPrincipal#toString()} the first and subsequent times.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TcPrincipalBenchmark
+{
+    @Param({ "10" })
+    public int roles;
+
+    private J2eePolicyMgr policyMgr;
+    private Session session;
+    private TcPrincipal principal;
+
+
+    @Setup
+    public void setUp() throws SecurityException
+    {
+        InMemoryDirectory directory = new InMemoryDirectory( 1, roles, 0 );
+        policyMgr = new J2eePolicyMgrImpl( new InMemoryAccessMgr( directory ), new InMemoryReviewMgr( directory ) );
+        session = directory.createSession( "user0", InMemoryDirectory.PASSWORD, false );
+        principal = policyMgr.createSession( "user0", InMemoryDirectory.PASSWORD );
+        principal.toString();
+    }
+
+
+    @Benchmark
+    public TcPrincipal construct()
+    {
+        HashMap<String, Object> context = new HashMap<String, Object>();
+        context.put( TcPrincipal.SESSION, session );
+
+        return new TcPrincipal( "user0", context );
+    }
+
+
+    @Benchmark
+    public TcPrincipal createSession() throws SecurityException
+    {
+        return policyMgr.createSession( "user0", InMemoryDirectory.PASSWORD );
+    }
+
+
+    @Benchmark
+    public String toStringFirst()
+    {
+        return construct().toString();
+    }
+
+
+    @Benchmark
+    public String toStringRepeated()
+    {
+        return principal.toString();
+    }
+}
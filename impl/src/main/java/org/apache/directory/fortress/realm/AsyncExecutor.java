@@ -0,0 +1,346 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the blocking calls behind the asynchronous methods of {@link J2eePolicyMgr} and
+ * {@link org.apache.directory.fortress.realm.tomcat.TcAccessMgrImpl}, so the calling thread, e.g. a Tomcat connector
+ * thread serving an async servlet, is not held during directory round trips.
+ * <p>
+ * Calls run on virtual threads when the JVM offers them (JDK 21 and later) unless {@link GlobalIds#ASYNC_VIRTUAL} is
+ * false, otherwise on a pool of {@link GlobalIds#ASYNC_THREADS} daemon threads.  At most
+ * {@link GlobalIds#ASYNC_MAX_INFLIGHT} calls per contextId run at once, so one tenant cannot exhaust the directory
+ * connections of the others.  Further calls wait in a per contextId queue, without holding a thread, and are rejected
+ * once {@link GlobalIds#ASYNC_MAX_QUEUED} are waiting.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class AsyncExecutor
+{
+    private static final String CLS_NM = AsyncExecutor.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static volatile AsyncExecutor instance;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final ConcurrentHashMap<String, Limiter> limiters = new ConcurrentHashMap<String, Limiter>();
+
+
+    /**
+     * The blocking work to run.
+     *
+     * @param <T> type of the result.
+     */
+    public interface Call<T>
+    {
+        /**
+         * Do the work.
+         *
+         * @return the result, may be null.
+         * @throws SecurityException in the event of failure.
+         */
+        T call() throws SecurityException;
+    }
+
+
+    /**
+     * Create an executor around the supplied threads.
+     *
+     * @param executor    runs the calls.
+     * @param maxInFlight maximum number of calls running at once per contextId.
+     * @param maxQueued   maximum number of calls waiting per contextId.
+     */
+    public AsyncExecutor( ExecutorService executor, int maxInFlight, int maxQueued )
+    {
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+    }
+
+
+    /**
+     * Return the executor shared by the realm in this JVM, configured from the {@link GlobalIds#ASYNC_VIRTUAL},
+     * {@link GlobalIds#ASYNC_THREADS}, {@link GlobalIds#ASYNC_MAX_INFLIGHT} and {@link GlobalIds#ASYNC_MAX_QUEUED}
+     * properties.
+     *
+     * @return the shared executor.
+     */
+    public static AsyncExecutor getInstance()
+    {
+        AsyncExecutor current = instance;
+
+        if ( current == null )
+        {
+            synchronized ( AsyncExecutor.class )
+            {
+                current = instance;
+
+                if ( current == null )
+                {
+                    Config cfg = Config.getInstance();
+                    int maxInFlight = Math.max( 1, cfg.getInt( GlobalIds.ASYNC_MAX_INFLIGHT, GlobalIds.ASYNC_MAX_INFLIGHT_DEFAULT ) );
+                    int maxQueued = Math.max( 0, cfg.getInt( GlobalIds.ASYNC_MAX_QUEUED, GlobalIds.ASYNC_MAX_QUEUED_DEFAULT ) );
+                    ExecutorService executor = null;
+
+                    if ( cfg.getBoolean( GlobalIds.ASYNC_VIRTUAL, true ) )
+                    {
+                        executor = newVirtualThreadExecutor();
+                    }
+
+                    if ( executor == null )
+                    {
+                        int threads = Math.max( 1, cfg.getInt( GlobalIds.ASYNC_THREADS, GlobalIds.ASYNC_THREADS_DEFAULT ) );
+                        executor = newPlatformThreadExecutor( threads );
+                        LOG.info( "{} using [{}] platform threads, max in flight [{}], max queued [{}]", CLS_NM, threads, maxInFlight, maxQueued );
+                    }
+                    else
+                    {
+                        LOG.info( "{} using virtual threads, max in flight [{}], max queued [{}]", CLS_NM, maxInFlight, maxQueued );
+                    }
+
+                    current = new AsyncExecutor( executor, maxInFlight, maxQueued );
+                    instance = current;
+                }
+            }
+        }
+
+        return current;
+    }
+
+
+    /**
+     * Run the call in the background.
+     *
+     * @param contextId contains the tenant the call is made for, may be null for the default tenant.
+     * @param call      the blocking work.
+     * @param <T>       type of the result.
+     * @return future completed with the result of the call, or exceptionally with its {@link SecurityException}, or
+     * with a {@link RejectedExecutionException} if too many calls of the tenant are waiting or the executor was shut down.
+     */
+    public <T> CompletableFuture<T> submit( String contextId, Call<T> call )
+    {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        String key = StringUtils.isEmpty( contextId ) ? org.apache.directory.fortress.core.GlobalIds.HOME : contextId;
+        Limiter limiter = limiters.computeIfAbsent( key, k -> new Limiter() );
+
+        if ( !limiter.offer( new Task<T>( future, call ) ) )
+        {
+            future.completeExceptionally( new RejectedExecutionException( CLS_NM + ".submit contextId [" + key + "] has "
+                + maxQueued + " calls waiting" ) );
+        }
+
+        return future;
+    }
+
+
+    private static ExecutorService newVirtualThreadExecutor()
+    {
+        try
+        {
+            // Looked up reflectively, the realm is built for JDKs that do not have virtual threads:
+            return ( ExecutorService ) java.util.concurrent.Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+        }
+        catch ( ReflectiveOperationException | RuntimeException e )
+        {
+            return null;
+        }
+    }
+
+
+    private static ExecutorService newPlatformThreadExecutor( int threads )
+    {
+        final AtomicInteger counter = new AtomicInteger();
+        final ClassLoader loader = AsyncExecutor.class.getClassLoader();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), runnable -> {
+                Thread thread = new Thread( runnable, "FortressRealmAsync-" + counter.incrementAndGet() );
+                thread.setDaemon( true );
+                // Never pin the class loader of the web application whose request happened to start the thread:
+                thread.setContextClassLoader( loader );
+
+                return thread;
+            } );
+        executor.allowCoreThreadTimeOut( true );
+
+        return executor;
+    }
+
+
+    /**
+     * A submitted call and the future it completes.
+     */
+    private static final class Task<T> implements Runnable
+    {
+        private final CompletableFuture<T> future;
+        private final Call<T> call;
+
+        private Task( CompletableFuture<T> future, Call<T> call )
+        {
+            this.future = future;
+            this.call = call;
+        }
+
+        @Override
+        public void run()
+        {
+            // Cancelled while it was waiting:
+            if ( future.isDone() )
+            {
+                return;
+            }
+
+            try
+            {
+                future.complete( call.call() );
+            }
+            catch ( SecurityException | RuntimeException | Error e )
+            {
+                future.completeExceptionally( e );
+            }
+        }
+
+        private void reject( RejectedExecutionException ree )
+        {
+            future.completeExceptionally( ree );
+        }
+    }
+
+
+    /**
+     * Admits the calls of one contextId to the executor, at most {@code maxInFlight} at a time.  Waiting calls are held
+     * in a queue rather than by a blocked thread, and each completing call admits the next one.
+     */
+    private final class Limiter
+    {
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Queue<Task<?>> waiting = new ConcurrentLinkedQueue<Task<?>>();
+
+        private boolean offer( Task<?> task )
+        {
+            // A free slot is taken straight away, unless calls are already waiting for one:
+            if ( waiting.isEmpty() && tryAcquire() )
+            {
+                execute( task );
+                return true;
+            }
+
+            if ( queued.incrementAndGet() > maxQueued )
+            {
+                queued.decrementAndGet();
+                return false;
+            }
+
+            waiting.add( task );
+            drain();
+
+            return true;
+        }
+
+        private boolean tryAcquire()
+        {
+            while ( true )
+            {
+                int current = running.get();
+
+                if ( current >= maxInFlight )
+                {
+                    return false;
+                }
+
+                if ( running.compareAndSet( current, current + 1 ) )
+                {
+                    return true;
+                }
+            }
+        }
+
+        private void drain()
+        {
+            while ( !waiting.isEmpty() )
+            {
+                if ( !tryAcquire() )
+                {
+                    // The call that completes next admits the waiting ones:
+                    return;
+                }
+
+                Task<?> next = waiting.poll();
+
+                if ( next == null )
+                {
+                    // Taken by another thread, give the slot back and look again:
+                    running.decrementAndGet();
+                    continue;
+                }
+
+                queued.decrementAndGet();
+                execute( next );
+            }
+        }
+
+        /**
+         * Run a call that holds a slot, the slot is given back when it completes.
+         */
+        private void execute( Task<?> task )
+        {
+            try
+            {
+                executor.execute( () -> {
+                    try
+                    {
+                        task.run();
+                    }
+                    finally
+                    {
+                        running.decrementAndGet();
+                        drain();
+                    }
+                } );
+            }
+            catch ( RejectedExecutionException ree )
+            {
+                // The executor was shut down. Fail the call, never run it on the submitting thread:
+                running.decrementAndGet();
+                LOG.warn( "{}.execute caught RejectedExecutionException={}", CLS_NM, ree.toString() );
+                task.reject( ree );
+            }
+        }
+    }
+}
@@ -0,0 +1,869 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.Address;
+import org.apache.directory.fortress.core.model.Constraint;
+import org.apache.directory.fortress.core.model.Props;
+import org.apache.directory.fortress.core.model.RoleConstraint;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserAdminRole;
+import org.apache.directory.fortress.core.model.UserRole;
+import org.apache.directory.fortress.core.model.Warning;
+
+/**
+ * Encodes sessions into a compact, versioned binary format carried in an ISO-8859-1 String.  This is the default
+ * {@link SessionCodec}.
+ * <p>
+ * Every encoded session starts with the two byte magic {@code 'F' 'R'} and a one byte format version.  Strings are
+ * written as a variable length size followed by their UTF-8 bytes, integers as zig-zag variable length numbers and
+ * collections as a size followed by their elements, so no class descriptors are carried.  Unlike Java serialization
+ * the user's password is never written.  Like it, the session's last access time and timeout are kept, so Fortress
+ * inactivity timeouts apply to decoded sessions.
+ * <p>
+ * Strings that do not start with the magic, i.e. were produced by {@link JavaSessionCodec}, are handed to that codec,
+ * so principals created before a switch of codecs can still be read.  Group sessions are always written with Java
+ * serialization for the same reason.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class BinarySessionCodec implements SessionCodec
+{
+    private static final byte MAGIC_0 = 'F';
+    private static final byte MAGIC_1 = 'R';
+    private static final byte VERSION = 1;
+    // Session has no public setters for these, Java serialization restores them from the fields as well:
+    private static final Field LAST_ACCESS = field( "lastAccess" );
+    private static final Field TIMEOUT = field( "timeout" );
+    private final JavaSessionCodec fallback = new JavaSessionCodec();
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String encode( Session session ) throws SecurityException
+    {
+        if ( session == null )
+        {
+            return null;
+        }
+
+        if ( session.isGroupSession() )
+        {
+            return fallback.encode( session );
+        }
+
+        Writer out = new Writer();
+        out.writeByte( MAGIC_0 );
+        out.writeByte( MAGIC_1 );
+        out.writeByte( VERSION );
+        out.writeString( session.getSessionId() );
+        out.writeBoolean( session.isAuthenticated() );
+        out.writeInt( session.getErrorId() );
+        out.writeInt( session.getGraceLogins() );
+        out.writeInt( session.getExpirationSeconds() );
+        out.writeLong( session.getLastAccess() );
+        out.writeInt( getInt( TIMEOUT, session ) );
+        out.writeString( session.getMsg() );
+        writeWarnings( out, session.getWarnings() );
+        writeUser( out, session.getUser() );
+
+        return out.toLatin1();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Session decode( String str ) throws SecurityException
+    {
+        if ( !isBinary( str ) )
+        {
+            return fallback.decode( str );
+        }
+
+        Reader in = new Reader( str.getBytes( StandardCharsets.ISO_8859_1 ) );
+
+        try
+        {
+            in.skip( 2 );
+            int version = in.readByte();
+
+            if ( version != VERSION )
+            {
+                throw new SecurityException( GlobalIds.CONTEXT_DESERIALIZATION_FAILED_FORMAT,
+                    "deserialize detected unsupported session format version:" + version );
+            }
+
+            String sessionId = in.readString();
+            boolean isAuthenticated = in.readBoolean();
+            int errorId = in.readInt();
+            int graceLogins = in.readInt();
+            int expirationSeconds = in.readInt();
+            long lastAccess = in.readLong();
+            int timeout = in.readInt();
+            String msg = in.readString();
+            List<Warning> warnings = readWarnings( in );
+            User user = readUser( in );
+
+            Session session = new Session( user, sessionId );
+            session.setAuthenticated( isAuthenticated );
+            session.setErrorId( errorId );
+            session.setGraceLogins( graceLogins );
+            session.setExpirationSeconds( expirationSeconds );
+            session.setMsg( msg );
+
+            if ( !setLong( LAST_ACCESS, session, lastAccess ) )
+            {
+                session.setLastAccess();
+            }
+
+            setInt( TIMEOUT, session, timeout );
+
+            if ( warnings != null )
+            {
+                session.setWarnings( warnings );
+            }
+
+            return session;
+        }
+        catch ( IndexOutOfBoundsException | IllegalArgumentException e )
+        {
+            throw new SecurityException( GlobalIds.CONTEXT_DESERIALIZATION_FAILED_FORMAT, "deserialize caught malformed session:" + e, e );
+        }
+    }
+
+
+    /**
+     * Determine if the String was produced by this codec.
+     *
+     * @param str contains an encoded session.
+     * @return true if the String carries the binary magic.
+     */
+    static boolean isBinary( String str )
+    {
+        return ( str != null ) && ( str.length() > 2 ) && ( str.charAt( 0 ) == MAGIC_0 ) && ( str.charAt( 1 ) == MAGIC_1 );
+    }
+
+
+    private static Field field( String name )
+    {
+        try
+        {
+            Field field = Session.class.getDeclaredField( name );
+            field.setAccessible( true );
+
+            return field;
+        }
+        catch ( NoSuchFieldException | RuntimeException e )
+        {
+            // Not part of this Fortress release, or not accessible, the value is not carried:
+            return null;
+        }
+    }
+
+
+    private static int getInt( Field field, Session session )
+    {
+        try
+        {
+            return field == null ? 0 : field.getInt( session );
+        }
+        catch ( IllegalAccessException e )
+        {
+            return 0;
+        }
+    }
+
+
+    private static void setInt( Field field, Session session, int value )
+    {
+        try
+        {
+            if ( field != null )
+            {
+                field.setInt( session, value );
+            }
+        }
+        catch ( IllegalAccessException e )
+        {
+            // left at its default
+        }
+    }
+
+
+    private static boolean setLong( Field field, Session session, long value )
+    {
+        try
+        {
+            if ( field != null )
+            {
+                field.setLong( session, value );
+
+                return true;
+            }
+        }
+        catch ( IllegalAccessException e )
+        {
+            // left at its default
+        }
+
+        return false;
+    }
+
+
+    private static void writeWarnings( Writer out, List<Warning> warnings )
+    {
+        if ( out.writeSize( warnings ) )
+        {
+            for ( Warning warning : warnings )
+            {
+                out.writeInt( warning.getId() );
+                out.writeString( warning.getMsg() );
+                out.writeString( warning.getType() == null ? null : warning.getType().name() );
+                out.writeString( warning.getName() );
+            }
+        }
+    }
+
+
+    private static List<Warning> readWarnings( Reader in )
+    {
+        int size = in.readSize();
+
+        if ( size < 0 )
+        {
+            return null;
+        }
+
+        List<Warning> warnings = new ArrayList<Warning>( size );
+
+        for ( int i = 0; i < size; i++ )
+        {
+            int id = in.readInt();
+            String msg = in.readString();
+            String type = in.readString();
+            String name = in.readString();
+            warnings.add( new Warning( id, msg, type == null ? null : Warning.Type.valueOf( type ), name ) );
+        }
+
+        return warnings;
+    }
+
+
+    private static void writeUser( Writer out, User user )
+    {
+        out.writeBoolean( user != null );
+
+        if ( user == null )
+        {
+            return;
+        }
+
+        out.writeString( user.getUserId() );
+        out.writeString( user.getInternalId() );
+        out.writeString( user.getPwPolicy() );
+        out.writeString( user.getCn() );
+        out.writeString( user.getSn() );
+        out.writeString( user.getDn() );
+        out.writeString( user.getOu() );
+        out.writeString( user.getDisplayName() );
+        out.writeString( user.getDescription() );
+        out.writeString( user.getName() );
+        out.writeString( user.getEmployeeType() );
+        out.writeString( user.getTitle() );
+        writeConstraint( out, user.getTimeout(), user.getBeginTime(), user.getEndTime(), user.getBeginDate(),
+            user.getEndDate(), user.getBeginLockDate(), user.getEndLockDate(), user.getDayMask() );
+        out.writeBoolean( user.isReset() );
+        out.writeBoolean( user.isLocked() );
+        out.writeString( user.isSystem() == null ? null : user.isSystem().toString() );
+        writeProps( out, user.getProps() );
+        writeAddress( out, user.getAddress() );
+        out.writeStrings( user.getPhones() );
+        out.writeStrings( user.getMobiles() );
+        out.writeStrings( user.getEmails() );
+        out.writeBytes( user.getJpegPhoto() );
+        out.writeString( user.getUidNumber() );
+        out.writeString( user.getGidNumber() );
+        out.writeString( user.getHomeDirectory() );
+        out.writeString( user.getLoginShell() );
+        out.writeString( user.getGecos() );
+
+        List<UserRole> roles = user.getRoles();
+
+        if ( out.writeSize( roles ) )
+        {
+            for ( UserRole role : roles )
+            {
+                writeUserRole( out, role );
+            }
+        }
+
+        List<UserAdminRole> adminRoles = user.getAdminRoles();
+
+        if ( out.writeSize( adminRoles ) )
+        {
+            for ( UserAdminRole role : adminRoles )
+            {
+                writeUserRole( out, role );
+                out.writeStrings( role.getOsPSet() );
+                out.writeStrings( role.getOsUSet() );
+                out.writeString( role.getBeginRange() );
+                out.writeString( role.getEndRange() );
+                out.writeBoolean( role.isBeginInclusive() );
+                out.writeBoolean( role.isEndInclusive() );
+            }
+        }
+    }
+
+
+    private static User readUser( Reader in )
+    {
+        if ( !in.readBoolean() )
+        {
+            return null;
+        }
+
+        User user = new User();
+        user.setUserId( in.readString() );
+        user.setInternalId( in.readString() );
+        user.setPwPolicy( in.readString() );
+        user.setCn( in.readString() );
+        user.setSn( in.readString() );
+        user.setDn( in.readString() );
+        user.setOu( in.readString() );
+        user.setDisplayName( in.readString() );
+        user.setDescription( in.readString() );
+        user.setName( in.readString() );
+        user.setEmployeeType( in.readString() );
+        user.setTitle( in.readString() );
+        readConstraint( in, user );
+        user.setReset( in.readBoolean() );
+        user.setLocked( in.readBoolean() );
+        String system = in.readString();
+        user.setSystem( system == null ? null : Boolean.valueOf( system ) );
+        user.setProps( readProps( in ) );
+        user.setAddress( readAddress( in ) );
+        user.setPhones( in.readStringList() );
+        user.setMobiles( in.readStringList() );
+        user.setEmails( in.readStringList() );
+        user.setJpegPhoto( in.readBytes() );
+        user.setUidNumber( in.readString() );
+        user.setGidNumber( in.readString() );
+        user.setHomeDirectory( in.readString() );
+        user.setLoginShell( in.readString() );
+        user.setGecos( in.readString() );
+
+        int size = in.readSize();
+
+        if ( size >= 0 )
+        {
+            List<UserRole> roles = new ArrayList<UserRole>( size );
+
+            for ( int i = 0; i < size; i++ )
+            {
+                UserRole role = new UserRole();
+                readUserRole( in, role );
+                roles.add( role );
+            }
+
+            user.setRoles( roles );
+        }
+
+        size = in.readSize();
+
+        if ( size >= 0 )
+        {
+            List<UserAdminRole> adminRoles = new ArrayList<UserAdminRole>( size );
+
+            for ( int i = 0; i < size; i++ )
+            {
+                UserAdminRole role = new UserAdminRole();
+                readUserRole( in, role );
+                role.setOsPSet( in.readStringSet() );
+                role.setOsUSet( in.readStringSet() );
+                role.setBeginRange( in.readString() );
+                role.setEndRange( in.readString() );
+                role.setBeginInclusive( in.readBoolean() );
+                role.setEndInclusive( in.readBoolean() );
+                adminRoles.add( role );
+            }
+
+            user.setAdminRoles( adminRoles );
+        }
+
+        return user;
+    }
+
+
+    private static void writeUserRole( Writer out, UserRole role )
+    {
+        out.writeString( role.getUserId() );
+        out.writeString( role.getName() );
+        out.writeBoolean( role.isGroupRole() );
+        writeConstraint( out, role.getTimeout(), role.getBeginTime(), role.getEndTime(), role.getBeginDate(),
+            role.getEndDate(), role.getBeginLockDate(), role.getEndLockDate(), role.getDayMask() );
+        out.writeStrings( role.getParents() );
+
+        List<RoleConstraint> constraints = role.getRoleConstraints();
+
+        if ( out.writeSize( constraints ) )
+        {
+            for ( RoleConstraint constraint : constraints )
+            {
+                out.writeString( constraint.getId() );
+                out.writeString( constraint.getType() == null ? null : constraint.getType().name() );
+                out.writeString( constraint.getValue() );
+                out.writeString( constraint.getKey() );
+                out.writeString( constraint.getTypeName() );
+            }
+        }
+    }
+
+
+    private static void readUserRole( Reader in, UserRole role )
+    {
+        role.setUserId( in.readString() );
+        role.setName( in.readString() );
+        role.setGroupRole( in.readBoolean() );
+        readConstraint( in, role );
+        role.setParents( in.readStringSet() );
+
+        int size = in.readSize();
+
+        if ( size >= 0 )
+        {
+            List<RoleConstraint> constraints = new ArrayList<RoleConstraint>( size );
+
+            for ( int i = 0; i < size; i++ )
+            {
+                RoleConstraint constraint = new RoleConstraint();
+                constraint.setId( in.readString() );
+                String type = in.readString();
+                constraint.setType( type == null ? null : RoleConstraint.RCType.valueOf( type ) );
+                constraint.setValue( in.readString() );
+                constraint.setKey( in.readString() );
+                constraint.setTypeName( in.readString() );
+                constraints.add( constraint );
+            }
+
+            role.setRoleConstraints( constraints );
+        }
+    }
+
+
+    private static void writeConstraint( Writer out, Integer timeout, String beginTime, String endTime, String beginDate,
+        String endDate, String beginLockDate, String endLockDate, String dayMask )
+    {
+        out.writeBoolean( timeout != null );
+
+        if ( timeout != null )
+        {
+            out.writeInt( timeout );
+        }
+
+        out.writeString( beginTime );
+        out.writeString( endTime );
+        out.writeString( beginDate );
+        out.writeString( endDate );
+        out.writeString( beginLockDate );
+        out.writeString( endLockDate );
+        out.writeString( dayMask );
+    }
+
+
+    private static void readConstraint( Reader in, Constraint constraint )
+    {
+        if ( in.readBoolean() )
+        {
+            constraint.setTimeout( in.readInt() );
+        }
+
+        constraint.setBeginTime( in.readString() );
+        constraint.setEndTime( in.readString() );
+        constraint.setBeginDate( in.readString() );
+        constraint.setEndDate( in.readString() );
+        constraint.setBeginLockDate( in.readString() );
+        constraint.setEndLockDate( in.readString() );
+        constraint.setDayMask( in.readString() );
+    }
+
+
+    private static void writeProps( Writer out, Props props )
+    {
+        List<Props.Entry> entries = props == null ? null : props.getEntry();
+
+        if ( out.writeSize( entries ) )
+        {
+            for ( Props.Entry entry : entries )
+            {
+                out.writeString( entry.getKey() );
+                out.writeString( entry.getValue() );
+            }
+        }
+    }
+
+
+    private static Props readProps( Reader in )
+    {
+        int size = in.readSize();
+
+        if ( size < 0 )
+        {
+            return null;
+        }
+
+        Props props = new Props();
+
+        for ( int i = 0; i < size; i++ )
+        {
+            Props.Entry entry = new Props.Entry();
+            entry.setKey( in.readString() );
+            entry.setValue( in.readString() );
+            props.getEntry().add( entry );
+        }
+
+        return props;
+    }
+
+
+    private static void writeAddress( Writer out, Address address )
+    {
+        out.writeBoolean( address != null );
+
+        if ( address != null )
+        {
+            out.writeStrings( address.getAddresses() );
+            out.writeString( address.getCity() );
+            out.writeString( address.getState() );
+            out.writeString( address.getCountry() );
+            out.writeString( address.getPostalCode() );
+            out.writeString( address.getPostOfficeBox() );
+            out.writeString( address.getBuilding() );
+            out.writeString( address.getDepartmentNumber() );
+            out.writeString( address.getRoomNumber() );
+        }
+    }
+
+
+    private static Address readAddress( Reader in )
+    {
+        if ( !in.readBoolean() )
+        {
+            return null;
+        }
+
+        Address address = new Address();
+        address.setAddresses( in.readStringList() );
+        address.setCity( in.readString() );
+        address.setState( in.readString() );
+        address.setCountry( in.readString() );
+        address.setPostalCode( in.readString() );
+        address.setPostOfficeBox( in.readString() );
+        address.setBuilding( in.readString() );
+        address.setDepartmentNumber( in.readString() );
+        address.setRoomNumber( in.readString() );
+
+        return address;
+    }
+
+
+    /**
+     * Growable output buffer.  Sizes are written as size + 1 so that zero can stand for null.
+     */
+    private static final class Writer
+    {
+        private byte[] buf = new byte[512];
+        private int pos;
+
+        private void ensure( int n )
+        {
+            if ( pos + n > buf.length )
+            {
+                buf = Arrays.copyOf( buf, Math.max( buf.length << 1, pos + n ) );
+            }
+        }
+
+        private void writeByte( int b )
+        {
+            ensure( 1 );
+            buf[pos++] = ( byte ) b;
+        }
+
+        private void writeBoolean( boolean b )
+        {
+            writeByte( b ? 1 : 0 );
+        }
+
+        private void writeVarint( int value )
+        {
+            ensure( 5 );
+
+            while ( ( value & ~0x7F ) != 0 )
+            {
+                buf[pos++] = ( byte ) ( ( value & 0x7F ) | 0x80 );
+                value >>>= 7;
+            }
+
+            buf[pos++] = ( byte ) value;
+        }
+
+        private void writeInt( int value )
+        {
+            // zig-zag so small negative numbers stay small:
+            writeVarint( ( value << 1 ) ^ ( value >> 31 ) );
+        }
+
+        private void writeLong( long value )
+        {
+            ensure( 10 );
+            long zigzag = ( value << 1 ) ^ ( value >> 63 );
+
+            while ( ( zigzag & ~0x7FL ) != 0 )
+            {
+                buf[pos++] = ( byte ) ( ( zigzag & 0x7F ) | 0x80 );
+                zigzag >>>= 7;
+            }
+
+            buf[pos++] = ( byte ) zigzag;
+        }
+
+        private boolean writeSize( Collection<?> collection )
+        {
+            writeVarint( collection == null ? 0 : collection.size() + 1 );
+
+            return collection != null;
+        }
+
+        private void writeBytes( byte[] bytes )
+        {
+            writeVarint( bytes == null ? 0 : bytes.length + 1 );
+
+            if ( bytes != null )
+            {
+                ensure( bytes.length );
+                System.arraycopy( bytes, 0, buf, pos, bytes.length );
+                pos += bytes.length;
+            }
+        }
+
+        private void writeString( String str )
+        {
+            writeBytes( str == null ? null : str.getBytes( StandardCharsets.UTF_8 ) );
+        }
+
+        private void writeStrings( Collection<String> strings )
+        {
+            if ( writeSize( strings ) )
+            {
+                for ( String str : strings )
+                {
+                    writeString( str );
+                }
+            }
+        }
+
+        private String toLatin1()
+        {
+            // This encoding induces a bijection between byte[] and String (unlike UTF-8)
+            return new String( buf, 0, pos, StandardCharsets.ISO_8859_1 );
+        }
+    }
+
+
+    /**
+     * Input over an encoded session.  Reading past the end throws {@link IndexOutOfBoundsException}.
+     */
+    private static final class Reader
+    {
+        private final byte[] buf;
+        private int pos;
+
+        private Reader( byte[] buf )
+        {
+            this.buf = buf;
+        }
+
+        private void skip( int n )
+        {
+            pos += n;
+        }
+
+        private int readByte()
+        {
+            if ( pos >= buf.length )
+            {
+                throw new IndexOutOfBoundsException( "unexpected end of session at " + pos );
+            }
+
+            return buf[pos++];
+        }
+
+        private boolean readBoolean()
+        {
+            return readByte() != 0;
+        }
+
+        private int readVarint()
+        {
+            int value = 0;
+
+            for ( int shift = 0; shift < 35; shift += 7 )
+            {
+                int b = readByte();
+                value |= ( b & 0x7F ) << shift;
+
+                if ( ( b & 0x80 ) == 0 )
+                {
+                    return value;
+                }
+            }
+
+            throw new IllegalArgumentException( "malformed varint at " + pos );
+        }
+
+        private int readInt()
+        {
+            int raw = readVarint();
+
+            return ( raw >>> 1 ) ^ -( raw & 1 );
+        }
+
+        private long readLong()
+        {
+            long raw = 0;
+
+            for ( int shift = 0; shift < 70; shift += 7 )
+            {
+                int b = readByte();
+                raw |= ( long ) ( b & 0x7F ) << shift;
+
+                if ( ( b & 0x80 ) == 0 )
+                {
+                    return ( raw >>> 1 ) ^ -( raw & 1 );
+                }
+            }
+
+            throw new IllegalArgumentException( "malformed varint at " + pos );
+        }
+
+        private int readSize()
+        {
+            int size = readVarint() - 1;
+
+            // Guards against allocating huge collections from a corrupt size:
+            if ( size > buf.length - pos )
+            {
+                throw new IndexOutOfBoundsException( "size " + size + " exceeds remaining session bytes" );
+            }
+
+            return size;
+        }
+
+        private byte[] readBytes()
+        {
+            int size = readSize();
+
+            if ( size < 0 )
+            {
+                return null;
+            }
+
+            byte[] bytes = Arrays.copyOfRange( buf, pos, pos + size );
+            pos += size;
+
+            return bytes;
+        }
+
+        private String readString()
+        {
+            int size = readSize();
+
+            if ( size < 0 )
+            {
+                return null;
+            }
+
+            String str = new String( buf, pos, size, StandardCharsets.UTF_8 );
+            pos += size;
+
+            return str;
+        }
+
+        private List<String> readStringList()
+        {
+            int size = readSize();
+
+            if ( size < 0 )
+            {
+                return null;
+            }
+
+            List<String> strings = new ArrayList<String>( size );
+
+            for ( int i = 0; i < size; i++ )
+            {
+                strings.add( readString() );
+            }
+
+            return strings;
+        }
+
+        private Set<String> readStringSet()
+        {
+            int size = readSize();
+
+            if ( size < 0 )
+            {
+                return null;
+            }
+
+            // Fortress role names are case insensitive:
+            Set<String> strings = new TreeSet<String>( String.CASE_INSENSITIVE_ORDER );
+
+            for ( int i = 0; i < size; i++ )
+            {
+                String str = readString();
+
+                if ( str != null )
+                {
+                    strings.add( str );
+                }
+            }
+
+            return strings;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm;
+
+import org.apache.directory.fortress.core.SecurityException;
+
+/**
+ * One failed lookup of a bulk call, see {@link J2eePolicyMgr#authorizedRoles(java.util.Collection,
+ * java.util.function.BiConsumer)}.  Only the error id and message are kept, not the exception with its stack trace
+ * and causes, so a batch with many failures stays small.
+ * <p>
+ * This class is immutable.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class BulkFailure
+{
+    private final String userId;
+    private final int errorId;
+    private final String message;
+
+
+    /**
+     * Record a failed lookup.
+     *
+     * @param userId contains the userId that was looked up.
+     * @param error  the failure.
+     */
+    BulkFailure( String userId, Throwable error )
+    {
+        this.userId = userId;
+        this.errorId = error instanceof SecurityException ? ( ( SecurityException ) error ).getErrorId() : 0;
+        this.message = error.getMessage() != null ? error.getMessage() : error.getClass().getName();
+    }
+
+
+    /**
+     * @return the userId that was looked up.
+     */
+    public String getUserId()
+    {
+        return userId;
+    }
+
+
+    /**
+     * @return the Fortress error id, see {@link org.apache.directory.fortress.core.GlobalErrIds}, or 0 if the lookup
+     * did not fail with a {@link SecurityException}, e.g. because it was rejected by the {@link AsyncExecutor}.
+     */
+    public int getErrorId()
+    {
+        return errorId;
+    }
+
+
+    /**
+     * @return the message of the failure, or the name of its class if it had none.
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return "BulkFailure userId [" + userId + "], errorId [" + errorId + "], message [" + message + "]";
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.directory.fortress.core.model.Constraint;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.model.UserRole;
+
+/**
+ * Computes the next instant at which the temporal constraints of a session, i.e. time of day, day of week, begin and
+ * end dates and lock dates of the user and of its activated roles, can change the outcome of their evaluation.  Until
+ * that instant the set of authorized roles computed by Fortress cannot change because of a constraint, so it can be
+ * reused without evaluating the constraints again.
+ * <p>
+ * Fortress evaluates constraints against the wall clock of this JVM's time zone, at a resolution of one minute for
+ * times and one day for dates.  The result is conservative: it may be earlier than the actual change, never later.
+ * <ul>
+ *   <li>time of day constraints can change at the start of the begin and end minutes and of the minute after each.</li>
+ *   <li>date and lock date constraints can change at the midnight starting the date and at the next one.</li>
+ *   <li>day of week constraints can change at every midnight.</li>
+ *   <li>daylight saving and other offset transitions move the wall clock, so the next one is a boundary as well
+ *   whenever any constraint is set.  Between now and that transition the offset is fixed, which keeps the computation
+ *   of the other boundaries free of gaps and overlaps.</li>
+ * </ul>
+ * Session timeouts are not considered, the realm does not track session inactivity.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class ConstraintWindow
+{
+    private static final String NONE = "none";
+    private static final String ALL_DAYS = "all";
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern( "yyyyMMdd" );
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern( "HHmm" );
+
+    // disallow construction
+    private ConstraintWindow()
+    {
+    }
+
+
+    /**
+     * Return the next instant the constraints of the session can change their outcome, in the default time zone.
+     *
+     * @param session contains the user and the activated roles, may be null.
+     * @param now     current time, in milliseconds since the epoch.
+     * @return instant of the next possible change in milliseconds since the epoch, {@link Long#MAX_VALUE} if there are
+     * no constraints, or {@code now} if a constraint cannot be interpreted.
+     */
+    public static long nextChange( Session session, long now )
+    {
+        return nextChange( session, now, ZoneId.systemDefault() );
+    }
+
+
+    /**
+     * Return the next instant the constraints of the session can change their outcome.
+     *
+     * @param session contains the user and the activated roles, may be null.
+     * @param now     current time, in milliseconds since the epoch.
+     * @param zone    time zone the constraints are evaluated in.
+     * @return instant of the next possible change in milliseconds since the epoch, {@link Long#MAX_VALUE} if there are
+     * no constraints, or {@code now} if a constraint cannot be interpreted.
+     */
+    public static long nextChange( Session session, long now, ZoneId zone )
+    {
+        if ( session == null )
+        {
+            return Long.MAX_VALUE;
+        }
+
+        Clock clock = new Clock( now, zone );
+
+        try
+        {
+            clock.add( session.getUser() );
+
+            if ( session.getRoles() != null )
+            {
+                for ( UserRole role : session.getRoles() )
+                {
+                    clock.add( role );
+                }
+            }
+        }
+        catch ( DateTimeParseException | IllegalArgumentException e )
+        {
+            // Not understood, let Fortress evaluate the constraints on every call:
+            return now;
+        }
+
+        return clock.next;
+    }
+
+
+    /**
+     * The current wall clock, held at a fixed offset up to the next transition of the zone, and the earliest boundary
+     * found so far.
+     */
+    private static final class Clock
+    {
+        private final Instant now;
+        private final LocalDateTime local;
+        private final ZoneOffset offset;
+        private final Instant transition;
+        private long next = Long.MAX_VALUE;
+
+        private Clock( long now, ZoneId zone )
+        {
+            ZoneRules rules = zone.getRules();
+            ZoneOffsetTransition nextTransition = rules.nextTransition( Instant.ofEpochMilli( now ) );
+            this.now = Instant.ofEpochMilli( now );
+            this.offset = rules.getOffset( this.now );
+            this.local = LocalDateTime.ofInstant( this.now, offset );
+            this.transition = nextTransition != null ? nextTransition.getInstant() : null;
+        }
+
+
+        private void add( Constraint constraint )
+        {
+            if ( constraint == null )
+            {
+                return;
+            }
+
+            boolean constrained = false;
+            constrained |= addTime( constraint.getBeginTime() );
+            constrained |= addTime( constraint.getEndTime() );
+            constrained |= addDate( constraint.getBeginDate() );
+            constrained |= addDate( constraint.getEndDate() );
+            constrained |= addDate( constraint.getBeginLockDate() );
+            constrained |= addDate( constraint.getEndLockDate() );
+            constrained |= addDayMask( constraint.getDayMask() );
+
+            if ( constrained && ( transition != null ) )
+            {
+                add( transition );
+            }
+        }
+
+
+        private boolean addTime( String value )
+        {
+            if ( isUnset( value ) )
+            {
+                return false;
+            }
+
+            LocalTime time = LocalTime.parse( value.trim(), TIME );
+            LocalTime following = time.plusMinutes( 1 );
+            addWallClock( time );
+            addWallClock( following );
+
+            return true;
+        }
+
+
+        private boolean addDate( String value )
+        {
+            if ( isUnset( value ) )
+            {
+                return false;
+            }
+
+            LocalDate date = LocalDate.parse( value.trim(), DATE );
+            LocalDateTime start = date.atStartOfDay();
+            LocalDateTime end = date.plusDays( 1 ).atStartOfDay();
+
+            if ( start.isAfter( local ) )
+            {
+                add( start.toInstant( offset ) );
+            }
+            else if ( end.isAfter( local ) )
+            {
+                add( end.toInstant( offset ) );
+            }
+
+            return true;
+        }
+
+
+        private boolean addDayMask( String value )
+        {
+            if ( isUnset( value ) || ALL_DAYS.equalsIgnoreCase( value.trim() ) || "1234567".equals( value.trim() ) )
+            {
+                return false;
+            }
+
+            addWallClock( LocalTime.MIDNIGHT );
+
+            return true;
+        }
+
+
+        /**
+         * Add the next time the wall clock shows the given time of day.  Computed at the current offset, which is
+         * exact up to the next transition, itself a boundary.
+         */
+        private void addWallClock( LocalTime time )
+        {
+            LocalDateTime candidate = local.toLocalDate().atTime( time );
+
+            if ( !candidate.isAfter( local ) )
+            {
+                candidate = candidate.plusDays( 1 );
+            }
+
+            add( candidate.toInstant( offset ) );
+        }
+
+
+        private void add( Instant instant )
+        {
+            if ( instant.isAfter( now ) )
+            {
+                next = Math.min( next, instant.toEpochMilli() );
+            }
+        }
+
+
+        private static boolean isUnset( String value )
+        {
+            return StringUtils.isBlank( value ) || NONE.equalsIgnoreCase( value.trim() );
+        }
+    }
+}
@@ -34,4 +34,139 @@ public final class GlobalIds
     public static final int CONTEXT_DESERIALIZATION_FAILED_UNSUPPORTED_ENCODING = 203;
     public static final int CONTEXT_DESERIALIZATION_FAILED_CLASS_NOT_FOUND = 204;
     public static final int SESSION_INITIALIZATION_FAILED = 205;
+    public static final int CONTEXT_DESERIALIZATION_FAILED_FORMAT = 206;
+
+    /**
+     * Number of seconds the authorized role set stored in a {@link TcPrincipal} is trusted before it is recomputed.
+     * A value of zero recomputes the set on every role check.
+     */
+    public static final String ROLES_TTL = "realm.roles.ttl";
+    public static final int ROLES_TTL_DEFAULT = 60;
+
+    /**
+     * When true, principals of successful password logins are cached so repeated logins with the same credentials skip the directory.
+     */
+    public static final String CREDENTIAL_CACHE_ENABLED = "realm.credential.cache.enabled";
+    /** Number of seconds a verified credential is trusted. */
+    public static final String CREDENTIAL_CACHE_TTL = "realm.credential.cache.ttl";
+    public static final int CREDENTIAL_CACHE_TTL_DEFAULT = 300;
+    /** Maximum number of users held in the credential cache. */
+    public static final String CREDENTIAL_CACHE_SIZE = "realm.credential.cache.size";
+    public static final int CREDENTIAL_CACHE_SIZE_DEFAULT = 10000;
+    /** Number of PBKDF2 iterations used to hash cached passwords. */
+    public static final String CREDENTIAL_CACHE_ITERATIONS = "realm.credential.cache.iterations";
+    public static final int CREDENTIAL_CACHE_ITERATIONS_DEFAULT = 1000;
+
+    /**
+     * Maximum number of principals kept for {@code getPrincipal}, which rebuilds the principal of an already authenticated user
+     * for SSO and session restore.  Zero, the default, disables the cache.  It is opt-in because a cached principal is
+     * returned without asking the directory, so a user who has since been locked or removed keeps getting one until it expires.
+     */
+    public static final String PRINCIPAL_CACHE_SIZE = "realm.principal.cache.size";
+    public static final int PRINCIPAL_CACHE_SIZE_DEFAULT = 0;
+    /** Number of seconds a principal is kept. */
+    public static final String PRINCIPAL_CACHE_TTL = "realm.principal.cache.ttl";
+    public static final int PRINCIPAL_CACHE_TTL_DEFAULT = 300;
+
+    /**
+     * Number of seconds a failed login (bad password, unknown user, expired password) is rejected locally when the same credentials are presented again.
+     * Zero, the default, disables the failure cache.  It is opt-in because a cached failure outlives an unlock or password reset that lets the same
+     * credentials succeed.
+     */
+    public static final String FAILURE_CACHE_TTL = "realm.failure.cache.ttl";
+    public static final int FAILURE_CACHE_TTL_DEFAULT = 0;
+    /** Maximum number of failed logins held by the failure cache. */
+    public static final String FAILURE_CACHE_SIZE = "realm.failure.cache.size";
+    public static final int FAILURE_CACHE_SIZE_DEFAULT = 10000;
+    /**
+     * Number of seconds every login of a user locked by password policy is rejected locally, zero disables.  Only applies when the failure cache is
+     * enabled by {@link #FAILURE_CACHE_TTL}.
+     */
+    public static final String FAILURE_LOCKOUT_TTL = "realm.failure.lockout.ttl";
+    public static final int FAILURE_LOCKOUT_TTL_DEFAULT = 60;
+    /** Number of seconds over which repeated login failures are aggregated into one log line, zero logs every failure. */
+    public static final String FAILURE_LOG_INTERVAL = "realm.failure.log.interval";
+    public static final int FAILURE_LOG_INTERVAL_DEFAULT = 60;
+
+    /**
+     * Number of seconds the role hierarchy of a contextId, compiled by {@link RoleHierarchy}, is used to compute the roles inherited by a session
+     * before it is read again.  Zero (default) disables the compiled hierarchy, Fortress computes inherited roles on every reload.
+     */
+    public static final String HIERARCHY_TTL = "realm.hierarchy.ttl";
+    public static final int HIERARCHY_TTL_DEFAULT = 0;
+
+    /**
+     * Percentage of the time-to-live of cached principals and authorized role sets, before they expire, in which a read
+     * triggers their revalidation in the background.  Zero disables refresh-ahead.
+     */
+    public static final String REFRESH_WINDOW = "realm.refresh.window";
+    public static final int REFRESH_WINDOW_DEFAULT = 20;
+    /** Percentage of the refresh window by which the refresh of each entry is randomly delayed, so entries are not refreshed in bursts. */
+    public static final String REFRESH_JITTER = "realm.refresh.jitter";
+    public static final int REFRESH_JITTER_DEFAULT = 50;
+    /** Maximum number of background refreshes running at once. */
+    public static final String REFRESH_THREADS = "realm.refresh.threads";
+    public static final int REFRESH_THREADS_DEFAULT = 2;
+    /** Maximum number of background refreshes waiting for a thread, further ones are dropped. */
+    public static final String REFRESH_QUEUE = "realm.refresh.queue";
+    public static final int REFRESH_QUEUE_DEFAULT = 1000;
+
+    /**
+     * Maximum number of roles, users and role assignments, each, kept by the cache of ReviewMgr lookups of one contextId, see
+     * {@link org.apache.directory.fortress.realm.cache.ReviewCache}.  Zero (default) disables the cache.
+     */
+    public static final String REVIEW_CACHE_SIZE = "realm.review.cache.size";
+    public static final int REVIEW_CACHE_SIZE_DEFAULT = 0;
+    /** Number of seconds a ReviewMgr lookup is kept. */
+    public static final String REVIEW_CACHE_TTL = "realm.review.cache.ttl";
+    public static final int REVIEW_CACHE_TTL_DEFAULT = 60;
+
+    /** When true (default), asynchronous calls run on virtual threads if the JVM offers them, see {@link AsyncExecutor}. */
+    public static final String ASYNC_VIRTUAL = "realm.async.virtual";
+    /** Number of platform threads running asynchronous calls when virtual threads are not used. */
+    public static final String ASYNC_THREADS = "realm.async.threads";
+    public static final int ASYNC_THREADS_DEFAULT = 32;
+    /** Maximum number of asynchronous calls running at once per contextId. */
+    public static final String ASYNC_MAX_INFLIGHT = "realm.async.max.inflight";
+    public static final int ASYNC_MAX_INFLIGHT_DEFAULT = 64;
+    /** Maximum number of asynchronous calls waiting per contextId, further ones are rejected. */
+    public static final String ASYNC_MAX_QUEUED = "realm.async.max.queued";
+    public static final int ASYNC_MAX_QUEUED_DEFAULT = 10000;
+
+    /**
+     * Maximum number of lookups of one bulk call, e.g. {@link J2eePolicyMgr#readUsers}, running at once.  Defaults to the size of the
+     * Fortress admin connection pool, {@link #ADMIN_POOL_MAX}, so a batch uses every connection but does not wait for them.
+     */
+    public static final String BULK_THREADS = "realm.bulk.threads";
+    /** Fortress property holding the maximum number of admin connections. */
+    public static final String ADMIN_POOL_MAX = "max.admin.conn";
+    public static final int ADMIN_POOL_MAX_DEFAULT = 10;
+
+    /**
+     * Directory holding the policy snapshot of each contextId, see {@link PolicySnapshots}.  When set, trusted sessions and the authorized roles of
+     * sessions are answered from the snapshot, users it does not hold are looked up in the directory.  Unset (default) disables snapshots.
+     */
+    public static final String SNAPSHOT_DIR = "realm.snapshot.dir";
+    /** When true, this JVM exports the snapshots, false (default) only reads them. */
+    public static final String SNAPSHOT_EXPORT = "realm.snapshot.export";
+    /** Number of seconds between exports.  Readers check for a new snapshot twice as often. */
+    public static final String SNAPSHOT_INTERVAL = "realm.snapshot.interval";
+    public static final int SNAPSHOT_INTERVAL_DEFAULT = 300;
+    /**
+     * Number of seconds a snapshot is used after the export that last confirmed it, default twice the interval.  Older snapshots are ignored
+     * and the directory is asked, so users locked or deleted since are no longer let in, but neither is anyone while the directory is down.
+     */
+    public static final String SNAPSHOT_MAX_AGE = "realm.snapshot.max.age";
+
+    /**
+     * Selects the {@link SessionCodec} used by {@link TcPrincipal#toString()}: 'binary' (default), 'java' or the class name of a custom codec.
+     */
+    public static final String SESSION_CODEC = "realm.session.codec";
+
+    /** Maximum number of decoded sessions kept by {@link J2eePolicyMgr#deserialize(String)}, zero disables the cache. */
+    public static final String SESSION_CACHE_SIZE = "realm.session.cache.size";
+    public static final int SESSION_CACHE_SIZE_DEFAULT = 1000;
+    /** Number of seconds a decoded session is kept. */
+    public static final String SESSION_CACHE_TTL = "realm.session.cache.ttl";
+    public static final int SESSION_CACHE_TTL_DEFAULT = 300;
 }
@@ -19,7 +19,11 @@
  */
 package org.apache.directory.fortress.realm;
 
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 import java.security.Principal;
 
 import org.apache.directory.fortress.core.model.User;
@@ -219,6 +223,19 @@ public interface J2eePolicyMgr
      */
     Session createSession( User user, boolean isTrusted ) throws SecurityException;
 
+    /**
+     * Perform role activations for a user whose identity has already been established, e.g. by Tomcat's SingleSignOn
+     * valve, a restored container session or a client certificate, without checking a password.  Password policies
+     * (e.g. {@link org.apache.directory.fortress.core.model.User#isLocked()}) and temporal constraints are still
+     * evaluated, see {@link #createSession(User, boolean)}.
+     * @param userId maps to {@link org.apache.directory.fortress.core.model.User#userId}.
+     * @param roles  optional list of role names to activate, all authorized roles are activated if null or empty.
+     * @return TcPrincipal which contains the User's RBAC Session data formatted into a java.security.Principal that is used by Tomcat runtime.
+     * @throws org.apache.directory.fortress.core.SecurityException
+     *          in the event of data validation failure, security policy violation or DAO error.
+     */
+    TcPrincipal createTrustedSession( String userId, List<String> roles ) throws SecurityException;
+
     /**
      * Determine if given Role is contained within User's Tomcat Principal object.  This method does not need to hit
      * the ldap server as the User's activated Roles are loaded into {@link TcPrincipal#setContext(java.util.HashMap)}
@@ -231,6 +248,30 @@ public interface J2eePolicyMgr
      */
     boolean hasRole( Principal principal, String roleName ) throws SecurityException;
 
+    /**
+     * Determine if any of the given Roles is contained within User's Tomcat Principal object.  The User's authorized
+     * Roles are looked up once for the whole collection.
+     *
+     * @param principal Contains User's Tomcat RBAC Session data that includes activated Roles.
+     * @param roleNames Collection of names that map to {@link org.apache.directory.fortress.core.model.Role#name}.
+     * @return True if at least one of the Roles is found in TcPrincipal, false otherwise.
+     * @throws org.apache.directory.fortress.core.SecurityException
+     *          data validation failure or system error..
+     */
+    boolean hasAnyRole( Principal principal, Collection<String> roleNames ) throws SecurityException;
+
+    /**
+     * Determine which of the given Roles are contained within User's Tomcat Principal object.  The User's authorized
+     * Roles are looked up once for the whole list.
+     *
+     * @param principal Contains User's Tomcat RBAC Session data that includes activated Roles.
+     * @param roleNames List of names that map to {@link org.apache.directory.fortress.core.model.Role#name}.
+     * @return BitSet where bit i is set if the Role at position i of the list is found in TcPrincipal.
+     * @throws org.apache.directory.fortress.core.SecurityException
+     *          data validation failure or system error..
+     */
+    BitSet hasRoles( Principal principal, List<String> roleNames ) throws SecurityException;
+
     /**
      * Method reads Role entity from the role container in directory.
      *
@@ -287,6 +328,28 @@ public interface J2eePolicyMgr
      */
     List<String> assignedUsers( String roleName, int limit ) throws SecurityException;
 
+    /**
+     * Drop the user from the cache of {@link #readUser(String)} and {@link #searchUsers(String, int)} results, so the
+     * next lookup sees changes made to it.  Does nothing when the cache is disabled, see {@link GlobalIds#REVIEW_CACHE_SIZE}.
+     *
+     * @param userId maps to {@link User#userId} of the user that was added, changed or deleted.
+     */
+    void invalidateUser( String userId );
+
+    /**
+     * Drop the role from the cache of {@link #readRole(String)}, {@link #searchRoles(String, int)} and
+     * {@link #assignedUsers(String, int)} results, so the next lookup sees changes made to it or to its assignments.
+     * Also drops the compiled role hierarchy, see {@link GlobalIds#HIERARCHY_TTL}.  Does nothing when neither is enabled.
+     *
+     * @param roleName maps to {@link Role#name} of the role that was added, changed, deleted or (de)assigned.
+     */
+    void invalidateRole( String roleName );
+
+    /**
+     * Drop every cached lookup result and the compiled role hierarchy, e.g. after bulk changes to users and roles.
+     */
+    void invalidateAll();
+
     /**
      * This function returns the set of roles authorized for a given user. The function is valid if
      * and only if the user is a member of the USERS data set.
@@ -297,6 +360,75 @@ public interface J2eePolicyMgr
      */
     List<String> authorizedRoles( String userId ) throws SecurityException;
 
+    /**
+     * Bulk variant of {@link #authorizedRoles(String)}, e.g. for reconciling entitlements of a whole population.
+     * Lookups run in parallel on the {@link AsyncExecutor}, at most {@link GlobalIds#BULK_THREADS} at a time, and
+     * each result is passed to the handler as soon as it is available, in completion order, on the calling thread.  A
+     * failed lookup does not stop the batch, its error id and message are collected instead.
+     *
+     * @param userIds maps to {@link User#userId} of each user, each is looked up once per occurrence.
+     * @param handler receives each userId with its roles, null when the user has none.  An exception it throws ends the
+     *                batch, lookups still running are left to complete.
+     * @return one entry per failed lookup, also for repeated occurrences of a userId, in completion order; empty if none
+     * failed.
+     * @throws InterruptedException if the calling thread is interrupted while waiting, the batch is abandoned.
+     */
+    List<BulkFailure> authorizedRoles( Collection<String> userIds, BiConsumer<String, List<String>> handler )
+        throws InterruptedException;
+
+    /**
+     * Bulk variant of {@link #readUser(String)}, see {@link #authorizedRoles(Collection, BiConsumer)}.  Users are read
+     * from the directory, never from the cache of lookups.
+     *
+     * @param userIds maps to {@link User#userId} of each user, each is read once per occurrence.
+     * @param handler receives each userId with its User entity.
+     * @return one entry per failed read, also for repeated occurrences of a userId, in completion order; empty if none
+     * failed.
+     * @throws InterruptedException if the calling thread is interrupted while waiting, the batch is abandoned.
+     */
+    List<BulkFailure> readUsers( Collection<String> userIds, BiConsumer<String, User> handler )
+        throws InterruptedException;
+
+    /**
+     * Asynchronous variant of {@link #authenticate(String, String)}, run on the {@link AsyncExecutor} so the calling
+     * thread is not held during the directory round trip.
+     * @param userId   Contains the userid of the user signing on.
+     * @param password Contains the user's password.
+     * @return future completed with true if the authentication succeeds, or exceptionally with the SecurityException.
+     */
+    CompletableFuture<Boolean> authenticateAsync( String userId, String password );
+
+    /**
+     * Asynchronous variant of {@link #createSession(String, String)}, run on the {@link AsyncExecutor}.
+     * @param userId   maps to {@link org.apache.directory.fortress.core.model.User#userId}.
+     * @param password maps to {@link org.apache.directory.fortress.core.model.User#password}.
+     * @return future completed with the TcPrincipal, or exceptionally with the SecurityException.
+     */
+    CompletableFuture<TcPrincipal> createSessionAsync( String userId, String password );
+
+    /**
+     * Asynchronous variant of {@link #hasRole(java.security.Principal, String)}.  Answered on the calling thread when
+     * the principal's authorized roles are current, otherwise run on the {@link AsyncExecutor}.
+     * @param principal Contains User's Tomcat RBAC Session data that includes activated Roles.
+     * @param roleName  Maps to {@link org.apache.directory.fortress.core.model.Role#name}.
+     * @return future completed with true if Role is found in TcPrincipal, or exceptionally with the SecurityException.
+     */
+    CompletableFuture<Boolean> hasRoleAsync( Principal principal, String roleName );
+
+    /**
+     * Asynchronous variant of {@link #readUser(String)}, run on the {@link AsyncExecutor}.
+     * @param userId maps to {@link User#userId} that matches record in the directory.
+     * @return future completed with the User entity, or exceptionally with the SecurityException.
+     */
+    CompletableFuture<User> readUserAsync( String userId );
+
+    /**
+     * Asynchronous variant of {@link #authorizedRoles(String)}, run on the {@link AsyncExecutor}.
+     * @param userId maps to {@link User#userId} matching User entity stored in the directory.
+     * @return future completed with the roles assigned and roles inherited, or exceptionally with the SecurityException.
+     */
+    CompletableFuture<List<String>> authorizedRolesAsync( String userId );
+
     /**
      * This utility method can deserialize java.security.Principal to Fortress RBAC session object.
      *
@@ -313,4 +445,10 @@ public interface J2eePolicyMgr
      * @param contextId maps to sub-tree in DIT, for example ou=contextId, dc=jts, dc = com.
      */
     public void setContextId(String contextId);
+
+    /**
+     * Release the resources held by this instance, e.g. the policy snapshot of its tenant, see
+     * {@link GlobalIds#SNAPSHOT_DIR}.  The instance must not be used afterwards.
+     */
+    void release();
 }
\ No newline at end of file
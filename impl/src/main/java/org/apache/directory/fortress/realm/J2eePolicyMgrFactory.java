@@ -77,7 +77,6 @@ public final class J2eePolicyMgrFactory
         throws SecurityException
     {
         VUtil.assertNotNull( contextId, GlobalErrIds.CONTEXT_NULL, CLS_NM + ".createInstance" );
-        String j2eeClassName = Config.getInstance().getProperty( J2EE_POLICYMGR_IMPLEMENTATION );
         J2eePolicyMgr policyMgr;
 
         if ( StringUtils.isEmpty( j2eeClassName ) )
@@ -86,11 +85,26 @@ public final class J2eePolicyMgrFactory
         }
         else
         {
-            policyMgr = ( J2eePolicyMgr ) ClassUtil.createInstance( J2EE_POLICYMGR_DEFAULT_CLASS );
+            policyMgr = ( J2eePolicyMgr ) ClassUtil.createInstance( j2eeClassName );
         }
 
         policyMgr.setContextId( contextId );
         return policyMgr;
     }
 
+
+    /**
+     * Hand back an instance returned by {@link #createInstance(String)} once it is no longer used, e.g. when the realm
+     * stops, releasing the resources it holds.
+     *
+     * @param policyMgr the instance to release, may be null.
+     */
+    public static void releaseInstance( J2eePolicyMgr policyMgr )
+    {
+        if ( policyMgr != null )
+        {
+            policyMgr.release();
+        }
+    }
+
 }
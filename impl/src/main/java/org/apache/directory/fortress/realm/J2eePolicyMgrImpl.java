@@ -19,18 +19,23 @@
  */
 package org.apache.directory.fortress.realm;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.security.Principal;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiConsumer;
 
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.directory.fortress.core.ReviewMgr;
 import org.apache.directory.fortress.core.ReviewMgrFactory;
 import org.apache.directory.fortress.core.AccessMgr;
@@ -40,7 +45,15 @@ import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.model.User;
 import org.apache.directory.fortress.core.model.Role;
 import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.model.UserRole;
+import org.apache.directory.fortress.core.util.Config;
 import org.apache.directory.fortress.core.util.VUtil;
+import org.apache.directory.fortress.realm.cache.ReviewCache;
+import org.apache.directory.fortress.realm.cache.SessionCache;
+import org.apache.directory.fortress.realm.event.CreateSessionEvent;
+import org.apache.directory.fortress.realm.event.Events;
+import org.apache.directory.fortress.realm.event.HasRoleEvent;
+import org.apache.directory.fortress.realm.event.SessionCodecEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,13 +68,24 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
 {
     private static final String CLS_NM = J2eePolicyMgrImpl.class.getName();
     private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    // The proxy jar, which publishes the realm's metrics, is only on the classpath when running inside Tomcat:
+    private static final boolean METRICS = isPresent( "org.apache.directory.fortress.realm.tomcat.RealmMetrics" );
     private AccessMgr accessMgr;
     private ReviewMgr reviewMgr;
-    private static final String SESSION = "session";
     private String contextId;
+    private final long rolesTtlMillis;
+    private final boolean snapshots = StringUtils.isNotEmpty( Config.getInstance().getProperty( GlobalIds.SNAPSHOT_DIR ) );
+    // Acquired on first use, held until release.  Guarded by this:
+    private PolicySnapshots tenantSnapshots;
+    private boolean released;
+    private final long hierarchyTtlMillis = Config.getInstance().getInt( GlobalIds.HIERARCHY_TTL, GlobalIds.HIERARCHY_TTL_DEFAULT ) * 1000L;
+    // Cleared when the contextId changes, which keeps cached lookups of tenants apart:
+    private final ReviewCache reviewCache = newReviewCache();
 
     J2eePolicyMgrImpl ()
     {
+        rolesTtlMillis = Config.getInstance().getInt( GlobalIds.ROLES_TTL, GlobalIds.ROLES_TTL_DEFAULT ) * 1000L;
+
         try
         {
             accessMgr = AccessMgrFactory.createInstance( );
@@ -74,6 +98,20 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
         }
     }
 
+    /**
+     * Create an instance around managers supplied by the caller, e.g. stand-ins that do not need a directory server.
+     *
+     * @param accessMgr used for authentication and role activation.
+     * @param reviewMgr used for user and role lookups.
+     */
+    public J2eePolicyMgrImpl( AccessMgr accessMgr, ReviewMgr reviewMgr )
+    {
+        this.rolesTtlMillis = Config.getInstance().getInt( GlobalIds.ROLES_TTL, GlobalIds.ROLES_TTL_DEFAULT ) * 1000L;
+        this.accessMgr = accessMgr;
+        this.reviewMgr = reviewMgr;
+        LOG.info( "{} - constructed", CLS_NM );
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -104,7 +142,7 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
     {
         User user = new User( userId, new String ( password ) );
         
-        return createSession( user );
+        return createPrincipal( user, false );
     }
 
     /**
@@ -123,28 +161,87 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
             }
         }
         
-        return createSession( user );
+        return createPrincipal( user, false );
     }
 
     /**
      * {@inheritDoc}
      */
-    private TcPrincipal createSession( User user ) throws SecurityException
+    @Override
+    public TcPrincipal createTrustedSession( String userId, List<String> roles ) throws SecurityException
     {
-        Session session = accessMgr.createSession( user, false );
-        LOG.debug( "{}.createSession userId [{}], successful", CLS_NM, user.getUserId() );
-        HashMap<String, Object> context = new HashMap<String, Object>();
-        context.put( SESSION, session );
+        return createPrincipal( trustedUser( userId, roles ), true );
+    }
 
-        // now serialize the principal:
-        String ser = serialize( session );
+    private static User trustedUser( String userId, List<String> roles )
+    {
+        User user = new User( userId );
 
-        // Store the serialized principal inside the context hashmap
-        // which allows overriden toString to return it later, from within an application thread.
-        // This facilitates assertion of rbac session from the tomcat realm into the web application session.
-        context.put( TcPrincipal.SERIALIZED, ser );
-        
-        return new TcPrincipal( user.getUserId(), context );
+        if ( CollectionUtils.isNotEmpty( roles ) )
+        {
+            for(String role : roles)
+            {
+                user.setRoleName( role );
+            }
+        }
+
+        return user;
+    }
+
+    /**
+     * Create the Fortress session and wrap it, along with the authorized roles, into a principal.
+     */
+    private TcPrincipal createPrincipal( User user, boolean isTrusted ) throws SecurityException
+    {
+        CreateSessionEvent event = CreateSessionEvent.start();
+        // Only set once the principal is complete:
+        Session created = null;
+        int errorId = 0;
+
+        try
+        {
+            Session session = isTrusted ? createSnapshotSession( user ) : null;
+
+            if ( session == null )
+            {
+                session = accessMgr.createSession( user, isTrusted );
+            }
+
+            LOG.debug( "{}.createSession userId [{}], isTrusted [{}], successful", CLS_NM, user.getUserId(), isTrusted );
+            HashMap<String, Object> context = new HashMap<String, Object>();
+            context.put( TcPrincipal.SESSION, session );
+
+            // Compute the authorized roles once, subsequent role checks are answered from this snapshot until it expires:
+            context.put( TcPrincipal.AUTHORIZED_ROLES, new RoleSnapshot( contextId, loader( session ), rolesTtlMillis, true ) );
+
+            if ( CollectionUtils.isNotEmpty( user.getRoles() ) )
+            {
+                ArrayList<String> requested = new ArrayList<String>( user.getRoles().size() );
+
+                for ( UserRole role : user.getRoles() )
+                {
+                    requested.add( role.getName() );
+                }
+
+                context.put( TcPrincipal.REQUESTED_ROLES, requested );
+            }
+
+            // The session is serialized lazily, by TcPrincipal.toString, the first time an application thread asks for it.
+            // This facilitates assertion of rbac session from the tomcat realm into the web application session.
+            TcPrincipal principal = new TcPrincipal( user.getUserId(), context );
+            created = session;
+
+            return principal;
+        }
+        catch ( SecurityException se )
+        {
+            errorId = se.getErrorId();
+            throw se;
+        }
+        finally
+        {
+            commit( event, user.getUserId(), isTrusted, created, errorId );
+        }
     }
 
     /**
@@ -154,8 +251,107 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
     public Session createSession( User user, boolean isTrusted ) throws SecurityException
     {
         LOG.debug( "{}.createSession userId [{}], isTrusted [{}]", CLS_NM, user.getUserId(), isTrusted );
-        
-        return accessMgr.createSession( user, isTrusted );
+        CreateSessionEvent event = CreateSessionEvent.start();
+        Session session = null;
+        int errorId = 0;
+
+        try
+        {
+            session = isTrusted ? createSnapshotSession( user ) : null;
+
+            if ( session == null )
+            {
+                session = accessMgr.createSession( user, isTrusted );
+            }
+
+            return session;
+        }
+        catch ( SecurityException se )
+        {
+            errorId = se.getErrorId();
+            throw se;
+        }
+        finally
+        {
+            commit( event, user.getUserId(), isTrusted, session, errorId );
+        }
+    }
+
+    /**
+     * Create the trusted session from the tenant's policy snapshot, evaluating the temporal constraints as Fortress does.
+     *
+     * @return the session, or null if snapshots are disabled or the snapshot does not hold the user.
+     */
+    private Session createSnapshotSession( User user ) throws SecurityException
+    {
+        PolicySnapshot snapshot = snapshot();
+        Session session = snapshot != null ? snapshot.createSession( user ) : null;
+
+        if ( session != null )
+        {
+            validateConstraints( session );
+        }
+
+        return session;
+    }
+
+    private static void validateConstraints( Session session ) throws SecurityException
+    {
+        // Dynamic Separation of Duty is not checked, tenants that have DSD sets are never exported:
+        VUtil.getInstance().validateConstraints( session, VUtil.ConstraintType.USER, false );
+        VUtil.getInstance().validateConstraints( session, VUtil.ConstraintType.ROLE, false );
+    }
+
+    /**
+     * Return the current policy snapshot of the tenant, only used when enabled by {@link GlobalIds#SNAPSHOT_DIR}.
+     */
+    private PolicySnapshot snapshot()
+    {
+        if ( !snapshots )
+        {
+            return null;
+        }
+
+        PolicySnapshots tenant;
+
+        synchronized ( this )
+        {
+            if ( ( tenantSnapshots == null ) && !released )
+            {
+                tenantSnapshots = PolicySnapshots.acquire( contextId, reviewMgr );
+            }
+
+            tenant = tenantSnapshots;
+        }
+
+        return tenant != null ? tenant.current() : null;
+    }
+
+    /**
+     * Hand back the tenant's policy snapshots, if acquired.
+     */
+    private synchronized void releaseSnapshots()
+    {
+        if ( tenantSnapshots != null )
+        {
+            tenantSnapshots.release();
+            tenantSnapshots = null;
+        }
+    }
+
+    private void commit( CreateSessionEvent event, String userId, boolean isTrusted, Session session, int errorId )
+    {
+        // Nothing is computed unless the event is enabled and over its threshold:
+        if ( ( event != null ) && event.shouldCommit() )
+        {
+            event.userIdHash = Events.hash( userId );
+            event.contextId = contextId;
+            event.trusted = isTrusted;
+            event.success = session != null;
+            event.errorId = errorId;
+            event.roleCount = session != null && session.getRoles() != null ? session.getRoles().size() : 0;
+            event.commit();
+        }
     }
 
     /**
@@ -167,41 +363,261 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
         String fullMethodName = CLS_NM + ".hasRole";
         LOG.debug( "{}.hasRole userId [{}], role [{}]", CLS_NM, principal.getName(), roleName );
 
+        HasRoleEvent event = HasRoleEvent.start();
+        boolean result = false;
+        boolean success = false;
+
+        try
+        {
+            final Session session = getSession( principal, fullMethodName );
+
+            // Does the set of authorized roles contain a name matched to the one passed in?
+            result = getRoleSnapshot( principal, session ).contains( roleName, reloader( principal, session ) );
+            success = true;
+        }
+        finally
+        {
+            commit( event, principal, "hasRole", 1, result ? 1 : 0, success );
+        }
+
+        if ( result )
+        {
+            // Yes, we have a match.
+            LOG.debug( "{} userId [{}], role [{}], successful", fullMethodName, principal.getName(), roleName );
+        }
+        else
+        {
+            // User is not authorized in their Session..
+            LOG.debug( "{} userId [{}], is not authorized role [{}]", fullMethodName, principal.getName(), roleName );
+        }
+        
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasAnyRole( Principal principal, Collection<String> roleNames ) throws SecurityException
+    {
+        String fullMethodName = CLS_NM + ".hasAnyRole";
+        LOG.debug( "{} userId [{}], roles {}", fullMethodName, principal.getName(), roleNames );
+
         // Fail closed
         boolean result = false;
 
+        if ( CollectionUtils.isNotEmpty( roleNames ) )
+        {
+            HasRoleEvent event = HasRoleEvent.start();
+            boolean success = false;
+
+            try
+            {
+                final Session session = getSession( principal, fullMethodName );
+                result = getRoleSnapshot( principal, session ).containsAny( roleNames, reloader( principal, session ) );
+                success = true;
+            }
+            finally
+            {
+                commit( event, principal, "hasAnyRole", roleNames.size(), result ? 1 : 0, success );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BitSet hasRoles( Principal principal, List<String> roleNames ) throws SecurityException
+    {
+        String fullMethodName = CLS_NM + ".hasRoles";
+        LOG.debug( "{} userId [{}], roles {}", fullMethodName, principal.getName(), roleNames );
+
+        // Fail closed
+        BitSet result = new BitSet();
+
+        if ( CollectionUtils.isNotEmpty( roleNames ) )
+        {
+            HasRoleEvent event = HasRoleEvent.start();
+            boolean success = false;
+
+            try
+            {
+                final Session session = getSession( principal, fullMethodName );
+                result = getRoleSnapshot( principal, session ).containsAll( roleNames, reloader( principal, session ) );
+                success = true;
+            }
+            finally
+            {
+                commit( event, principal, "hasRoles", roleNames.size(), result.cardinality(), success );
+            }
+        }
+
+        return result;
+    }
+
+    private void commit( HasRoleEvent event, Principal principal, String method, int roleCount, int grantedCount, boolean success )
+    {
+        // Nothing is computed unless the event is enabled and over its threshold:
+        if ( ( event != null ) && event.shouldCommit() )
+        {
+            event.userIdHash = Events.hash( principal.getName() );
+            event.contextId = contextId;
+            event.method = method;
+            event.roleCount = roleCount;
+            event.grantedCount = grantedCount;
+            event.success = success;
+            event.commit();
+        }
+    }
+
+    /**
+     * Return the Fortress session held in the principal.
+     */
+    private Session getSession( Principal principal, String fullMethodName ) throws SecurityException
+    {
         // Principal must contain a HashMap that contains a Fortress session object.
         HashMap<String, Object> context = ( ( TcPrincipal ) principal ).getContext();
         VUtil.assertNotNull( context, GlobalErrIds.SESS_CTXT_NULL, fullMethodName );
 
         // This Map must contain a Fortress Session:
-        Session session = (Session)context.get( SESSION );
+        Session session = (Session)context.get( TcPrincipal.SESSION );
         VUtil.assertNotNull( session, GlobalErrIds.USER_SESS_NULL, fullMethodName );
 
-        Set<String> authZRoles = accessMgr.authorizedRoles( session );
-        
-        if ( ( authZRoles != null ) && ( authZRoles.size() > 0 ) )
+        return session;
+    }
+
+    /**
+     * Return the snapshot of Roles authorized for the principal.  Principals created without one, e.g. by an earlier
+     * release, get a snapshot computed for this call only.
+     */
+    private RoleSnapshot getRoleSnapshot( Principal principal, Session session ) throws SecurityException
+    {
+        RoleSnapshot snapshot = (RoleSnapshot)( ( TcPrincipal ) principal ).getContext().get( TcPrincipal.AUTHORIZED_ROLES );
+
+        if ( snapshot == null )
         {
-            // Does the set of authorized roles contain a name matched to the one passed in?
-            if ( authZRoles.contains( roleName ) )
+            snapshot = new RoleSnapshot( contextId, loader( session ), rolesTtlMillis );
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Return the loader that reloads the Roles authorized for the principal once its snapshot has expired.  The login
+     * session is never re-read from the directory, so every reload creates a trusted session for the user, with the
+     * Roles requested at login, as the principal cache of the realm does.  Changes to the user's assignments and to the
+     * constraints in the directory are thus seen on the first reload after the snapshot's time-to-live.
+     */
+    private RoleSnapshot.Loader reloader( final Principal principal, final Session session )
+    {
+        return new RoleSnapshot.Loader()
+        {
+            // Loader of the trusted session created by the last reload:
+            private RoleSnapshot.Loader reloaded;
+
+            @Override
+            public Set<String> load() throws SecurityException
             {
-                // Yes, we have a match.
-                LOG.debug( "{} userId [{}], role [{}], successful", fullMethodName, principal.getName(), roleName );
-                result = true;
+                return reload().load();
             }
-            else
+
+            @Override
+            public long validUntil( long now )
             {
-                // User is not authorized in their Session..
-                LOG.debug( "{} userId [{}], is not authorized role [{}]", fullMethodName, principal.getName(), roleName );
+                return reloaded != null ? reloaded.validUntil( now ) : ConstraintWindow.nextChange( session, now );
             }
-        }
-        else
+
+            @Override
+            public BitSet loadIds( RoleDictionary dictionary, boolean validated ) throws SecurityException
+            {
+                // Creating the session just evaluated its constraints:
+                return reload().loadIds( dictionary, true );
+            }
+
+            @SuppressWarnings("unchecked")
+            private RoleSnapshot.Loader reload() throws SecurityException
+            {
+                List<String> requested = ( List<String> ) ( ( TcPrincipal ) principal ).getContext().get( TcPrincipal.REQUESTED_ROLES );
+                reloaded = loader( createSession( trustedUser( session.getUserId(), requested ), true ) );
+
+                return reloaded;
+            }
+        };
+    }
+
+    /**
+     * Return the loader of the Roles authorized for the session as it is, the session is not re-read from the directory.
+     * Used for sessions that were just created and for principals without a snapshot, whose set is computed per call.
+     * Snapshots are reloaded by {@link #reloader(Principal, Session)} instead.
+     */
+    private RoleSnapshot.Loader loader( final Session session )
+    {
+        return new RoleSnapshot.Loader()
         {
-            // User does not have any authorized Roles in their Session..
-            LOG.info( "{} userId [{}], role [{}], has no authorized roles", fullMethodName, principal.getName(), roleName );
-        }
-        
-        return result;
+            @Override
+            public Set<String> load() throws SecurityException
+            {
+                return accessMgr.authorizedRoles( session );
+            }
+
+            @Override
+            public long validUntil( long now )
+            {
+                return ConstraintWindow.nextChange( session, now );
+            }
+
+            @Override
+            public BitSet loadIds( RoleDictionary dictionary, boolean validated ) throws SecurityException
+            {
+                PolicySnapshot snapshot = snapshot();
+
+                if ( ( snapshot != null ) && ( session.getRoles() != null ) )
+                {
+                    if ( !validated )
+                    {
+                        validateConstraints( session );
+                    }
+
+                    BitSet ids = snapshot.authorized( session.getRoles() );
+
+                    if ( ids != null )
+                    {
+                        return ids;
+                    }
+                }
+
+                // Fortress evaluates the constraints again, with no change since the last time only inheritance is left:
+                if ( validated && ( hierarchyTtlMillis > 0 ) && ( session.getRoles() != null ) )
+                {
+                    List<String> activated = new ArrayList<String>( session.getRoles().size() );
+
+                    for ( UserRole role : session.getRoles() )
+                    {
+                        activated.add( role.getName() );
+                    }
+
+                    BitSet ids = hierarchy().authorized( activated, () -> reviewMgr.findRoles( "" ) );
+
+                    if ( ids != null )
+                    {
+                        return ids;
+                    }
+                }
+
+                return RoleSnapshot.Loader.super.loadIds( dictionary, validated );
+            }
+        };
+    }
+
+    /**
+     * Return the compiled role hierarchy of the tenant, only used when enabled by {@link GlobalIds#HIERARCHY_TTL}.
+     */
+    private RoleHierarchy hierarchy()
+    {
+        return RoleHierarchy.getInstance( contextId, hierarchyTtlMillis );
     }
 
     /**
@@ -210,7 +626,12 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
     @Override
     public Role readRole( String roleName ) throws SecurityException
     {
-        return reviewMgr.readRole( new Role( roleName ) );
+        if ( reviewCache == null )
+        {
+            return reviewMgr.readRole( new Role( roleName ) );
+        }
+
+        return reviewCache.readRole( roleName, name -> reviewMgr.readRole( new Role( name ) ) );
     }
 
     /**
@@ -219,7 +640,12 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
     @Override
     public List<String> searchRoles(String searchString, int limit ) throws SecurityException
     {
-        return reviewMgr.findRoles( searchString, limit );
+        if ( reviewCache == null )
+        {
+            return reviewMgr.findRoles( searchString, limit );
+        }
+
+        return reviewCache.searchRoles( searchString, limit, reviewMgr::findRoles );
     }
 
     /**
@@ -228,7 +654,12 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
     @Override
     public User readUser( String userId ) throws SecurityException
     {
-        return reviewMgr.readUser( new User( userId ) );
+        if ( reviewCache == null )
+        {
+            return reviewMgr.readUser( new User( userId ) );
+        }
+
+        return reviewCache.readUser( userId, id -> reviewMgr.readUser( new User( id ) ) );
     }
 
     /**
@@ -237,7 +668,12 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
     @Override
     public List<String> searchUsers(String searchString, int limit ) throws SecurityException
     {
-        return reviewMgr.findUsers( new User( searchString ), limit );
+        if ( reviewCache == null )
+        {
+            return reviewMgr.findUsers( new User( searchString ), limit );
+        }
+
+        return reviewCache.searchUsers( searchString, limit, ( prefix, max ) -> reviewMgr.findUsers( new User( prefix ), max ) );
     }
 
     /**
@@ -246,7 +682,58 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
     @Override
     public List<String> assignedUsers( String roleName, int limit ) throws SecurityException
     {
-        return reviewMgr.assignedUsers( new Role( roleName ), limit );
+        if ( reviewCache == null )
+        {
+            return reviewMgr.assignedUsers( new Role( roleName ), limit );
+        }
+
+        return reviewCache.assignedUsers( roleName, limit, ( name, max ) -> reviewMgr.assignedUsers( new Role( name ), max ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void invalidateUser( String userId )
+    {
+        if ( reviewCache != null )
+        {
+            reviewCache.invalidateUser( userId );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void invalidateRole( String roleName )
+    {
+        if ( reviewCache != null )
+        {
+            reviewCache.invalidateRole( roleName );
+        }
+
+        if ( hierarchyTtlMillis > 0 )
+        {
+            hierarchy().invalidate();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void invalidateAll()
+    {
+        if ( reviewCache != null )
+        {
+            reviewCache.clear();
+        }
+
+        if ( hierarchyTtlMillis > 0 )
+        {
+            hierarchy().invalidate();
+        }
     }
 
     /**
@@ -259,7 +746,24 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
         // This will check temporal constraints on User and Roles.
         Session session = createSession( new User( userId ), true );
         // Get the Set of authorized Roles.
-        Set<String> authZRoleSet = accessMgr.authorizedRoles( session );
+        Set<String> authZRoleSet = null;
+        PolicySnapshot snapshot = snapshot();
+        BitSet ids = snapshot != null && session.getRoles() != null ? snapshot.authorized( session.getRoles() ) : null;
+
+        if ( ids != null )
+        {
+            RoleDictionary dictionary = RoleDictionary.getInstance( contextId );
+            authZRoleSet = new HashSet<String>();
+
+            for ( int id = ids.nextSetBit( 0 ); id >= 0; id = ids.nextSetBit( id + 1 ) )
+            {
+                authZRoleSet.add( dictionary.name( id ) );
+            }
+        }
+        else
+        {
+            authZRoleSet = accessMgr.authorizedRoles( session );
+        }
         
         // If User has authorized roles.
         if ( ( authZRoleSet != null ) && ( authZRoleSet.size() > 0 ) )
@@ -272,32 +776,156 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
     }
 
     /**
-     * Utility to write any object into a Base64 string.  Used by this class to serialize {@link TcPrincipal} object to be returned by its toString method..
+     * {@inheritDoc}
      */
-    private String serialize( Object obj ) throws SecurityException
+    @Override
+    public List<BulkFailure> authorizedRoles( Collection<String> userIds, BiConsumer<String, List<String>> handler )
+        throws InterruptedException
     {
-        String szRetVal = null;
-        
-        if ( obj != null )
+        return fanOut( userIds, this::authorizedRoles, handler );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<BulkFailure> readUsers( Collection<String> userIds, BiConsumer<String, User> handler )
+        throws InterruptedException
+    {
+        return fanOut( userIds, userId -> reviewMgr.readUser( new User( userId ) ), handler );
+    }
+
+    /**
+     * Run the lookup for every userId on the {@link AsyncExecutor}, keeping a fixed number in flight, and hand the
+     * results to the handler on the calling thread as they complete.  Memory stays bounded by that number however long
+     * the batch, as nothing but the failures is retained.
+     */
+    private <T> List<BulkFailure> fanOut( Collection<String> userIds, Lookup<T> lookup,
+        BiConsumer<String, ? super T> handler ) throws InterruptedException
+    {
+        Config cfg = Config.getInstance();
+        int parallelism = Math.max( 1, cfg.getInt( GlobalIds.BULK_THREADS,
+            cfg.getInt( GlobalIds.ADMIN_POOL_MAX, GlobalIds.ADMIN_POOL_MAX_DEFAULT ) ) );
+        AsyncExecutor executor = AsyncExecutor.getInstance();
+        BlockingQueue<Completion<T>> completed = new LinkedBlockingQueue<Completion<T>>();
+        List<BulkFailure> failures = new ArrayList<BulkFailure>();
+        Iterator<String> pending = userIds.iterator();
+        int inFlight = 0;
+
+        while ( pending.hasNext() || ( inFlight > 0 ) )
         {
+            while ( pending.hasNext() && ( inFlight < parallelism ) )
+            {
+                String userId = pending.next();
+                executor.submit( contextId, () -> lookup.lookup( userId ) ).whenComplete(
+                    ( result, error ) -> completed.add( new Completion<T>( userId, result, error ) ) );
+                inFlight++;
+            }
+
+            Completion<T> completion = completed.take();
+            inFlight--;
+
+            if ( completion.error == null )
+            {
+                handler.accept( completion.userId, completion.result );
+            }
+            else
+            {
+                failures.add( new BulkFailure( completion.userId, completion.error ) );
+            }
+        }
+
+        return failures;
+    }
+
+    /**
+     * One lookup of a bulk call.
+     */
+    private interface Lookup<T>
+    {
+        T lookup( String userId ) throws SecurityException;
+    }
+
+    /**
+     * Outcome of one lookup of a bulk call.
+     */
+    private static final class Completion<T>
+    {
+        private final String userId;
+        private final T result;
+        private final Throwable error;
+
+        private Completion( String userId, T result, Throwable error )
+        {
+            this.userId = userId;
+            this.result = result;
+            this.error = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Boolean> authenticateAsync( String userId, String password )
+    {
+        return AsyncExecutor.getInstance().submit( contextId, () -> authenticate( userId, password ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<TcPrincipal> createSessionAsync( String userId, String password )
+    {
+        return AsyncExecutor.getInstance().submit( contextId, () -> createSession( userId, password ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Boolean> hasRoleAsync( Principal principal, String roleName )
+    {
+        RoleSnapshot snapshot = principal instanceof TcPrincipal && ( ( TcPrincipal ) principal ).getContext() != null
+            ? ( RoleSnapshot ) ( ( TcPrincipal ) principal ).getContext().get( TcPrincipal.AUTHORIZED_ROLES ) : null;
+
+        if ( ( snapshot != null ) && !snapshot.isExpired() )
+        {
+            // Answered from memory, not worth a thread hop:
+            CompletableFuture<Boolean> future = new CompletableFuture<Boolean>();
+
             try
             {
-                ByteArrayOutputStream bo = new ByteArrayOutputStream();
-                ObjectOutputStream so = new ObjectOutputStream( bo );
-                so.writeObject( obj );
-                so.flush();
-                
-                // This encoding induces a bijection between byte[] and String (unlike UTF-8)
-                szRetVal = bo.toString( "ISO-8859-1" );
+                future.complete( hasRole( principal, roleName ) );
             }
-            catch ( IOException ioe )
+            catch ( SecurityException se )
             {
-                String error = "serialize caught IOException: " + ioe;
-                throw new SecurityException( org.apache.directory.fortress.realm.GlobalIds.CONTEXT_SERIALIZATION_FAILED, error, ioe );
+                future.completeExceptionally( se );
             }
+
+            return future;
         }
-        
-        return szRetVal;
+
+        return AsyncExecutor.getInstance().submit( contextId, () -> hasRole( principal, roleName ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<User> readUserAsync( String userId )
+    {
+        return AsyncExecutor.getInstance().submit( contextId, () -> readUser( userId ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<String>> authorizedRolesAsync( String userId )
+    {
+        return AsyncExecutor.getInstance().submit( contextId, () -> authorizedRoles( userId ) );
     }
 
     /**
@@ -305,28 +933,67 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
      */
     public Session deserialize( String str ) throws SecurityException
     {
-        // deserialize the object
+        if ( METRICS )
+        {
+            return MetricsSupport.deserialize( this, contextId, str );
+        }
+
+        return decode( str );
+    }
+
+    /**
+     * Decode a session, from the cache if possible.
+     */
+    Session decode( String str ) throws SecurityException
+    {
+        SessionCodecEvent event = SessionCodecEvent.start();
+        SessionCodec codec = SessionCodecFactory.getInstance();
+        SessionCache cache = SessionCache.getInstance();
+        Session session = null;
+
         try
         {
-            // This encoding induces a bijection between byte[] and String (unlike UTF-8)
-            byte b[] = str.getBytes("ISO-8859-1");
-            ByteArrayInputStream bi = new ByteArrayInputStream(b);
-            ObjectInputStream si = new ObjectInputStream(bi);
-            return Session.class.cast(si.readObject());
+            session = cache != null ? cache.decode( str, codec ) : codec.decode( str );
         }
-        catch (java.io.UnsupportedEncodingException e)
+        finally
         {
-            throw new SecurityException( org.apache.directory.fortress.realm.GlobalIds.CONTEXT_DESERIALIZATION_FAILED_UNSUPPORTED_ENCODING, "deserialize caught UnsupportedEncodingException:" + e, e );
+            if ( ( event != null ) && event.shouldCommit() )
+            {
+                event.operation = SessionCodecEvent.DECODE;
+                event.codec = codec.getClass().getSimpleName();
+                event.userIdHash = session != null ? Events.hash( session.getUserId() ) : null;
+                event.size = str != null ? str.length() : 0;
+                event.success = session != null;
+                event.commit();
+            }
         }
-        catch (IOException e)
+
+        return session;
+    }
+
+    private static ReviewCache newReviewCache()
+    {
+        Config cfg = Config.getInstance();
+        int size = cfg.getInt( GlobalIds.REVIEW_CACHE_SIZE, GlobalIds.REVIEW_CACHE_SIZE_DEFAULT );
+
+        if ( size <= 0 )
+        {
+            return null;
+        }
+
+        return new ReviewCache( size, cfg.getInt( GlobalIds.REVIEW_CACHE_TTL, GlobalIds.REVIEW_CACHE_TTL_DEFAULT ) * 1000L );
+    }
+
+    private static boolean isPresent( String className )
+    {
+        try
         {
-            LOG.warn( "deserialize caught IOException:" + e);
-            throw new SecurityException( org.apache.directory.fortress.realm.GlobalIds.CONTEXT_DESERIALIZATION_FAILED_IO, "deserialize caught IOException:" + e, e );
+            Class.forName( className, false, J2eePolicyMgrImpl.class.getClassLoader() );
+            return true;
         }
-        catch (ClassNotFoundException e)
+        catch ( ClassNotFoundException | LinkageError e )
         {
-            LOG.warn( "deserialize caught ClassNotFoundException:" + e);
-            throw new SecurityException( org.apache.directory.fortress.realm.GlobalIds.CONTEXT_DESERIALIZATION_FAILED_CLASS_NOT_FOUND, "deserialize caught ClassNotFoundException:" + e, e );
+            return false;
         }
     }
 
@@ -339,5 +1006,28 @@ public class J2eePolicyMgrImpl implements J2eePolicyMgr
         this.contextId = contextId;
         accessMgr.setContextId( contextId );
         reviewMgr.setContextId( contextId );
+
+        if ( reviewCache != null )
+        {
+            reviewCache.clear();
+        }
+
+        // The snapshots of the new tenant are acquired when first needed:
+        releaseSnapshots();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void release()
+    {
+        synchronized ( this )
+        {
+            released = true;
+        }
+
+        releaseSnapshots();
+        LOG.info( "{} - released", CLS_NM );
     }
 }
@@ -0,0 +1,66 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm;
+
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.realm.tomcat.RealmMetrics;
+
+/**
+ * Records the operations of {@link J2eePolicyMgrImpl} with the metrics published by the Tomcat proxy.  Kept apart from
+ * the policy manager so that it is only loaded, together with the proxy classes it refers to, when the proxy is present.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class MetricsSupport
+{
+    private MetricsSupport()
+    {
+    }
+
+
+    /**
+     * Decode a session, timing the call if a realm of the tenant publishes metrics.
+     */
+    static Session deserialize( J2eePolicyMgrImpl mgr, String contextId, String str ) throws SecurityException
+    {
+        RealmMetrics metrics = RealmMetrics.lookup( contextId );
+
+        if ( metrics == null )
+        {
+            return mgr.decode( str );
+        }
+
+        RealmMetrics.Operation op = metrics.deserialize();
+        long start = op.begin();
+        Session session = null;
+
+        try
+        {
+            session = mgr.decode( str );
+        }
+        finally
+        {
+            op.end( start, session != null );
+        }
+
+        return session;
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import org.apache.directory.fortress.core.model.Constraint;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserRole;
+
+/**
+ * Read only view of a policy snapshot file: the users of a tenant with their role assignments and constraints, and
+ * the transitive closure of every role in the hierarchy, as exported by {@link PolicySnapshots}.  The file is memory
+ * mapped, except on the exporting JVM, which must be able to replace it.  Only the role names are read when it is
+ * opened, a lookup binary searches the user index in place and decodes the record of that user alone, so the users
+ * are never copied onto the heap.
+ * <p>
+ * A snapshot answers what the directory answered when it was exported.  Constraints are stored, not evaluated, the
+ * caller evaluates them like Fortress does for sessions it creates.
+ * <p>
+ * This class is thread safe, the mapped buffer is only read with absolute gets.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class PolicySnapshot
+{
+    private static final int NULL = PolicySnapshotWriter.NULL;
+    private static final int CONSTRAINT_SIZE = 8 * 4;
+    private static final int USER_FIELDS = 8;
+
+    private final ByteBuffer buffer;
+    private final long generation;
+    private final int checksum;
+    private final int strings;
+    private final int body;
+    private final int roleCount;
+    private final int roleTable;
+    private final int userCount;
+    private final int userIndex;
+
+    /** Snapshot role id by normalized name */
+    private final Map<String, Integer> roleIds;
+
+    /** Id in the tenant's dictionary of each snapshot role id */
+    private final int[] dictionaryIds;
+
+
+    private PolicySnapshot( ByteBuffer buffer, String contextId ) throws IOException
+    {
+        if ( ( buffer.capacity() < PolicySnapshotWriter.HEADER_SIZE ) || ( buffer.getInt( 0 ) != PolicySnapshotWriter.MAGIC ) )
+        {
+            throw new IOException( "not a policy snapshot" );
+        }
+
+        if ( buffer.getInt( 4 ) != PolicySnapshotWriter.VERSION )
+        {
+            throw new IOException( "unsupported policy snapshot version [" + buffer.getInt( 4 ) + "]" );
+        }
+
+        this.buffer = buffer;
+        this.generation = buffer.getLong( 8 );
+        this.checksum = buffer.getInt( 16 );
+        this.strings = buffer.getInt( 20 );
+        this.body = buffer.getInt( 24 );
+        this.roleCount = buffer.getInt( 28 );
+        this.roleTable = body + buffer.getInt( 32 );
+        this.userCount = buffer.getInt( 36 );
+        this.userIndex = body + buffer.getInt( 40 );
+
+        CRC32 crc = new CRC32();
+        ByteBuffer content = buffer.duplicate();
+        content.position( strings );
+        crc.update( content );
+
+        if ( ( int ) crc.getValue() != checksum )
+        {
+            throw new IOException( "policy snapshot is corrupt" );
+        }
+
+        // Role names are few compared to users, resolving them once keeps lookups free of string decoding:
+        RoleDictionary dictionary = RoleDictionary.getInstance( contextId );
+        this.roleIds = new HashMap<String, Integer>( roleCount * 2 );
+        this.dictionaryIds = new int[roleCount];
+
+        for ( int id = 0; id < roleCount; id++ )
+        {
+            String name = string( buffer.getInt( roleTable + id * 8 ) );
+            roleIds.put( PolicySnapshotWriter.normalize( name ), id );
+            dictionaryIds[id] = dictionary.intern( name );
+        }
+    }
+
+
+    /**
+     * Map a snapshot file.
+     *
+     * @param file      contains the snapshot.
+     * @param contextId contains the tenant id, may be null.
+     * @return the snapshot.
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    public static PolicySnapshot open( Path file, String contextId ) throws IOException
+    {
+        // The mapping stays valid once the channel is closed:
+        try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            return new PolicySnapshot( channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ), contextId );
+        }
+    }
+
+
+    /**
+     * Read a snapshot file onto the heap, for the JVM that replaces it: on Windows a file cannot be replaced while it is
+     * mapped.
+     *
+     * @param file      contains the snapshot.
+     * @param contextId contains the tenant id, may be null.
+     * @return the snapshot.
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    public static PolicySnapshot read( Path file, String contextId ) throws IOException
+    {
+        return new PolicySnapshot( ByteBuffer.wrap( Files.readAllBytes( file ) ), contextId );
+    }
+
+
+    /**
+     * Build the session Fortress would create for a trusted user, before constraints are evaluated.
+     *
+     * @param user contains the userId and, optionally, the names of the roles to activate.
+     * @return the session holding the user's constraints and the requested or all assigned roles, or null if the
+     * snapshot does not know the user.
+     */
+    public Session createSession( User user )
+    {
+        int record = find( user.getUserId() );
+
+        if ( record < 0 )
+        {
+            return null;
+        }
+
+        int pos = body + record;
+        User sessionUser = new User( string( buffer.getInt( pos ) ) );
+        sessionUser.setInternalId( string( buffer.getInt( pos + 4 ) ) );
+        sessionUser.setDn( string( buffer.getInt( pos + 8 ) ) );
+        sessionUser.setOu( string( buffer.getInt( pos + 12 ) ) );
+        sessionUser.setCn( string( buffer.getInt( pos + 16 ) ) );
+        sessionUser.setSn( string( buffer.getInt( pos + 20 ) ) );
+        sessionUser.setDisplayName( string( buffer.getInt( pos + 24 ) ) );
+        sessionUser.setDescription( string( buffer.getInt( pos + 28 ) ) );
+        pos += USER_FIELDS * 4;
+        constraint( pos, sessionUser );
+        pos += CONSTRAINT_SIZE;
+
+        Session session = new Session( sessionUser, UUID.randomUUID().toString() );
+        session.setLastAccess();
+        Set<String> requested = requested( user );
+        int count = buffer.getInt( pos );
+        pos += 4;
+
+        for ( int i = 0; i < count; i++, pos += 4 + CONSTRAINT_SIZE )
+        {
+            String roleName = string( buffer.getInt( roleTable + buffer.getInt( pos ) * 8 ) );
+
+            // Like Fortress, only the requested roles are activated if any are:
+            if ( ( requested == null ) || requested.contains( PolicySnapshotWriter.normalize( roleName ) ) )
+            {
+                UserRole role = new UserRole( sessionUser.getUserId(), roleName );
+                constraint( pos + 4, role );
+                session.setRole( role );
+            }
+        }
+
+        return session;
+    }
+
+
+    /**
+     * Return the roles authorized by the activated roles, i.e. the roles themselves and the roles they inherit.
+     *
+     * @param roles contains the activated roles.
+     * @return ids in the tenant's {@link RoleDictionary}, or null if a role is not part of the snapshot.
+     */
+    public BitSet authorized( Collection<UserRole> roles )
+    {
+        BitSet result = new BitSet();
+
+        for ( UserRole role : roles )
+        {
+            Integer id = roleIds.get( PolicySnapshotWriter.normalize( role.getName() ) );
+
+            if ( id == null )
+            {
+                return null;
+            }
+
+            int closure = body + buffer.getInt( roleTable + id * 8 + 4 );
+            int words = buffer.getInt( closure );
+
+            for ( int w = 0; w < words; w++ )
+            {
+                long word = buffer.getLong( closure + 4 + w * 8 );
+
+                while ( word != 0 )
+                {
+                    int bit = Long.numberOfTrailingZeros( word );
+                    result.set( dictionaryIds[w * 64 + bit] );
+                    word &= word - 1;
+                }
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * @return version of the snapshot, the time it was exported at in milliseconds since the epoch.
+     */
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+
+    /**
+     * @return checksum of the content, equal for snapshots of the same policy.
+     */
+    public int getChecksum()
+    {
+        return checksum;
+    }
+
+
+    /**
+     * @return number of users held.
+     */
+    public int getUserCount()
+    {
+        return userCount;
+    }
+
+
+    /**
+     * @return number of roles held.
+     */
+    public int getRoleCount()
+    {
+        return roleCount;
+    }
+
+
+    /**
+     * Binary search the user index, comparing the UTF-8 bytes of the key with the mapped bytes in place.
+     *
+     * @return offset of the user record relative to the body, or -1.
+     */
+    private int find( String userId )
+    {
+        if ( userId == null )
+        {
+            return -1;
+        }
+
+        byte[] key = PolicySnapshotWriter.normalize( userId ).getBytes( StandardCharsets.UTF_8 );
+        int low = 0;
+        int high = userCount - 1;
+
+        while ( low <= high )
+        {
+            int mid = ( low + high ) >>> 1;
+            int entry = userIndex + mid * 8;
+            int cmp = compare( strings + buffer.getInt( entry ), key );
+
+            if ( cmp < 0 )
+            {
+                low = mid + 1;
+            }
+            else if ( cmp > 0 )
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return buffer.getInt( entry + 4 );
+            }
+        }
+
+        return -1;
+    }
+
+
+    private int compare( int pos, byte[] key )
+    {
+        int length = buffer.getInt( pos );
+        int common = Math.min( length, key.length );
+
+        for ( int i = 0; i < common; i++ )
+        {
+            int cmp = Integer.compare( buffer.get( pos + 4 + i ) & 0xff, key[i] & 0xff );
+
+            if ( cmp != 0 )
+            {
+                return cmp;
+            }
+        }
+
+        return Integer.compare( length, key.length );
+    }
+
+
+    private void constraint( int pos, Constraint constraint )
+    {
+        constraint.setBeginTime( string( buffer.getInt( pos ) ) );
+        constraint.setEndTime( string( buffer.getInt( pos + 4 ) ) );
+        constraint.setBeginDate( string( buffer.getInt( pos + 8 ) ) );
+        constraint.setEndDate( string( buffer.getInt( pos + 12 ) ) );
+        constraint.setBeginLockDate( string( buffer.getInt( pos + 16 ) ) );
+        constraint.setEndLockDate( string( buffer.getInt( pos + 20 ) ) );
+        constraint.setDayMask( string( buffer.getInt( pos + 24 ) ) );
+        int timeout = buffer.getInt( pos + 28 );
+
+        if ( timeout != NULL )
+        {
+            constraint.setTimeout( timeout );
+        }
+    }
+
+
+    private String string( int ref )
+    {
+        if ( ref == NULL )
+        {
+            return null;
+        }
+
+        int pos = strings + ref;
+        byte[] utf8 = new byte[buffer.getInt( pos )];
+        ByteBuffer view = buffer.duplicate();
+        view.position( pos + 4 );
+        view.get( utf8 );
+
+        return new String( utf8, StandardCharsets.UTF_8 );
+    }
+
+
+    private static Set<String> requested( User user )
+    {
+        if ( ( user.getRoles() == null ) || user.getRoles().isEmpty() )
+        {
+            return null;
+        }
+
+        Set<String> names = new HashSet<String>();
+
+        for ( UserRole role : user.getRoles() )
+        {
+            names.add( PolicySnapshotWriter.normalize( role.getName() ) );
+        }
+
+        return names;
+    }
+}
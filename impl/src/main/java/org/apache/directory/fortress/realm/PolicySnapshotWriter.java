@@ -0,0 +1,327 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.directory.fortress.core.model.Constraint;
+import org.apache.directory.fortress.core.model.Role;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserRole;
+
+/**
+ * Writes the file read by {@link PolicySnapshot}.  All numbers are big endian, references are int offsets, -1 for null.
+ * <pre>
+ * header   int magic, int version, long generation, int crc of strings and body,
+ *          int strings offset, int body offset, int role count, int role table, int user count, int user index,
+ *          int reserved
+ * strings  int length, UTF-8 bytes; each distinct string once, references are relative to the strings offset
+ * body     references are relative to the body offset
+ *   closure    int word count, long words; the bitset of snapshot role ids inherited by a role, itself included
+ *   role table role count times: int name, int closure
+ *   user       int userId, int internalId, int dn, int ou, int cn, int sn, int displayName, int description,
+ *              constraint, int role count, role count times: int role id, constraint
+ *   constraint int beginTime, int endTime, int beginDate, int endDate, int beginLockDate, int endLockDate,
+ *              int dayMask, int timeout (-1 for none)
+ *   user index user count times: int lower case userId, int user; sorted by the UTF-8 bytes of the userId
+ * </pre>
+ * Locked users are left out, they are looked up in the directory, which rejects them.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class PolicySnapshotWriter
+{
+    static final int MAGIC = 0x46525053;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 48;
+    static final int NULL = -1;
+
+    private final Strings strings = new Strings();
+    private final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+    private final DataOutputStream body = new DataOutputStream( bodyBytes );
+    private final Map<String, Integer> roleIds = new HashMap<String, Integer>();
+    private final List<String> roleNames = new ArrayList<String>();
+
+
+    private PolicySnapshotWriter()
+    {
+    }
+
+
+    /**
+     * Write the snapshot of the roles and users.
+     *
+     * @param file       file to write, replaced if it exists.
+     * @param generation version of the snapshot, e.g. the time it was exported at.
+     * @param roles      every role of the tenant, with parents.
+     * @param users      every user of the tenant, with role assignments.
+     * @return crc of the content, equal for snapshots of the same policy.
+     * @throws IOException if the file cannot be written.
+     */
+    static int write( Path file, long generation, List<Role> roles, List<User> users ) throws IOException
+    {
+        PolicySnapshotWriter writer = new PolicySnapshotWriter();
+        int roleTable = writer.writeRoles( roles, users );
+        List<Key> keys = writer.writeUsers( users );
+        int userIndex = writer.writeIndex( keys );
+        writer.body.flush();
+
+        byte[] stringBytes = writer.strings.bytes.toByteArray();
+        byte[] bodyBytes = writer.bodyBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update( stringBytes );
+        crc.update( bodyBytes );
+        int checksum = ( int ) crc.getValue();
+
+        ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+        header.putInt( MAGIC );
+        header.putInt( VERSION );
+        header.putLong( generation );
+        header.putInt( checksum );
+        header.putInt( HEADER_SIZE );
+        header.putInt( HEADER_SIZE + stringBytes.length );
+        header.putInt( writer.roleNames.size() );
+        header.putInt( roleTable );
+        header.putInt( keys.size() );
+        header.putInt( userIndex );
+
+        try ( OutputStream out = Files.newOutputStream( file ) )
+        {
+            out.write( header.array() );
+            out.write( stringBytes );
+            out.write( bodyBytes );
+        }
+
+        return checksum;
+    }
+
+
+    private int writeRoles( List<Role> roles, List<User> users ) throws IOException
+    {
+        Map<Integer, int[]> parents = new HashMap<Integer, int[]>();
+
+        for ( Role role : roles )
+        {
+            int[] ids = new int[role.getParents() == null ? 0 : role.getParents().size()];
+            int i = 0;
+
+            if ( role.getParents() != null )
+            {
+                for ( String parent : role.getParents() )
+                {
+                    ids[i++] = roleId( parent );
+                }
+            }
+
+            parents.put( roleId( role.getName() ), ids );
+        }
+
+        for ( User user : users )
+        {
+            if ( user.getRoles() != null )
+            {
+                for ( UserRole role : user.getRoles() )
+                {
+                    roleId( role.getName() );
+                }
+            }
+        }
+
+        // Assigned roles that are missing from the roles read, e.g. deleted since, inherit nothing:
+        BitSet[] closures = RoleHierarchy.close( roleNames.size(), parents );
+        int[] closureRefs = new int[roleNames.size()];
+
+        for ( int id = 0; id < closures.length; id++ )
+        {
+            BitSet closure = closures[id];
+
+            if ( closure == null )
+            {
+                closure = new BitSet();
+                closure.set( id );
+            }
+
+            long[] words = closure.toLongArray();
+            closureRefs[id] = body.size();
+            body.writeInt( words.length );
+
+            for ( long word : words )
+            {
+                body.writeLong( word );
+            }
+        }
+
+        int roleTable = body.size();
+
+        for ( int id = 0; id < roleNames.size(); id++ )
+        {
+            body.writeInt( strings.ref( roleNames.get( id ) ) );
+            body.writeInt( closureRefs[id] );
+        }
+
+        return roleTable;
+    }
+
+
+    private List<Key> writeUsers( List<User> users ) throws IOException
+    {
+        List<Key> keys = new ArrayList<Key>( users.size() );
+
+        for ( User user : users )
+        {
+            if ( user.isLocked() || ( user.getUserId() == null ) )
+            {
+                continue;
+            }
+
+            String key = normalize( user.getUserId() );
+            keys.add( new Key( key, strings.ref( key ), body.size() ) );
+            body.writeInt( strings.ref( user.getUserId() ) );
+            body.writeInt( strings.ref( user.getInternalId() ) );
+            body.writeInt( strings.ref( user.getDn() ) );
+            body.writeInt( strings.ref( user.getOu() ) );
+            body.writeInt( strings.ref( user.getCn() ) );
+            body.writeInt( strings.ref( user.getSn() ) );
+            body.writeInt( strings.ref( user.getDisplayName() ) );
+            body.writeInt( strings.ref( user.getDescription() ) );
+            writeConstraint( user );
+
+            List<UserRole> roles = user.getRoles() != null ? user.getRoles() : new ArrayList<UserRole>();
+            body.writeInt( roles.size() );
+
+            for ( UserRole role : roles )
+            {
+                body.writeInt( roleIds.get( normalize( role.getName() ) ) );
+                writeConstraint( role );
+            }
+        }
+
+        return keys;
+    }
+
+
+    private void writeConstraint( Constraint constraint ) throws IOException
+    {
+        body.writeInt( strings.ref( constraint.getBeginTime() ) );
+        body.writeInt( strings.ref( constraint.getEndTime() ) );
+        body.writeInt( strings.ref( constraint.getBeginDate() ) );
+        body.writeInt( strings.ref( constraint.getEndDate() ) );
+        body.writeInt( strings.ref( constraint.getBeginLockDate() ) );
+        body.writeInt( strings.ref( constraint.getEndLockDate() ) );
+        body.writeInt( strings.ref( constraint.getDayMask() ) );
+        body.writeInt( constraint.getTimeout() != null ? constraint.getTimeout() : NULL );
+    }
+
+
+    private int writeIndex( List<Key> keys ) throws IOException
+    {
+        keys.sort( ( a, b ) -> Arrays.compareUnsigned( a.bytes, b.bytes ) );
+        int index = body.size();
+
+        for ( Key key : keys )
+        {
+            body.writeInt( key.ref );
+            body.writeInt( key.record );
+        }
+
+        return index;
+    }
+
+
+    private int roleId( String roleName )
+    {
+        return roleIds.computeIfAbsent( normalize( roleName ), k -> {
+            roleNames.add( roleName );
+            return roleNames.size() - 1;
+        } );
+    }
+
+
+    static String normalize( String name )
+    {
+        // Fortress userIds and role names match case insensitively:
+        return name.toLowerCase( Locale.ROOT );
+    }
+
+
+    /**
+     * A user's entry in the index.
+     */
+    private static final class Key
+    {
+        private final byte[] bytes;
+        private final int ref;
+        private final int record;
+
+        private Key( String key, int ref, int record )
+        {
+            this.bytes = key.getBytes( StandardCharsets.UTF_8 );
+            this.ref = ref;
+            this.record = record;
+        }
+    }
+
+
+    /**
+     * The string area, every distinct string is written once.  Constraint values in particular repeat for most users.
+     */
+    private static final class Strings
+    {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream( bytes );
+        private final Map<String, Integer> refs = new HashMap<String, Integer>();
+
+        private int ref( String value ) throws IOException
+        {
+            if ( value == null )
+            {
+                return NULL;
+            }
+
+            Integer ref = refs.get( value );
+
+            if ( ref == null )
+            {
+                byte[] utf8 = value.getBytes( StandardCharsets.UTF_8 );
+                ref = out.size();
+                out.writeInt( utf8.length );
+                out.write( utf8 );
+                refs.put( value, ref );
+            }
+
+            return ref;
+        }
+    }
+}
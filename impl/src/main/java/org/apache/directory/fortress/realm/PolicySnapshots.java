@@ -0,0 +1,377 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.directory.fortress.core.ReviewMgr;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.Role;
+import org.apache.directory.fortress.core.model.SDSet;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the current {@link PolicySnapshot} of each tenant (contextId), so trusted sessions and role checks can be
+ * answered while the directory is slow or down.  The snapshot of a tenant is the file {@code <contextId>.policy} in
+ * the {@link GlobalIds#SNAPSHOT_DIR} directory, which is typically shared by the nodes of a cluster.
+ * <p>
+ * When {@link GlobalIds#SNAPSHOT_EXPORT} is true, this JVM exports the users, their role assignments and the role
+ * hierarchy through the ReviewMgr every {@link GlobalIds#SNAPSHOT_INTERVAL} seconds.  The new file is written next to
+ * the current one and moved over it atomically, and only if its content changed, so readers never see a partial file.
+ * Otherwise only the modification time of the file is set to the time of the export, which tells the readers the
+ * snapshot is still current.  The exporting JVM keeps its copy on the heap rather than mapping the file it replaces.
+ * <p>
+ * Every other JVM checks the file twice per interval and maps it again when it was replaced; requests keep using the
+ * previous snapshot until then.  A snapshot not confirmed by an export for {@link GlobalIds#SNAPSHOT_MAX_AGE} seconds
+ * is no longer used, see {@link #current()}.
+ * <p>
+ * Fortress checks Dynamic Separation of Duty sets against the directory, so tenants that have any are not exported.
+ * <p>
+ * The snapshots of a tenant are reference counted, the last {@link #release()} stops its export or checks, and the
+ * thread running them once no tenant is left, so a stopped realm does not keep its class loader alive.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class PolicySnapshots
+{
+    private static final String CLS_NM = PolicySnapshots.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String SUFFIX = ".policy";
+
+    // Snapshots of the tenants in use, keyed by contextId.  Guarded by itself:
+    private static final Map<String, PolicySnapshots> SNAPSHOTS = new HashMap<String, PolicySnapshots>();
+
+    // Runs the exports and checks while a tenant is in use.  Guarded by SNAPSHOTS:
+    private static ScheduledThreadPoolExecutor executor;
+
+    private final String key;
+    private final String contextId;
+    private final Path file;
+    private final boolean export;
+    private final long maxAgeMillis;
+    private volatile PolicySnapshot current;
+
+    // Time of the export that last confirmed the current snapshot:
+    private volatile long verifiedAt;
+    private volatile boolean released;
+    private FileTime lastModified;
+
+    // Guarded by SNAPSHOTS:
+    private int references;
+    private ScheduledFuture<?> task;
+
+
+    private PolicySnapshots( String key, String contextId, Path file, boolean export, long maxAgeMillis )
+    {
+        this.key = key;
+        this.contextId = contextId;
+        this.file = file;
+        this.export = export;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+
+    /**
+     * Return the snapshots of a tenant, loading the current one and scheduling the periodic export or check on first
+     * use.  Every call must be paired with a {@link #release()}.
+     *
+     * @param contextId contains the tenant id, may be null for the default tenant.
+     * @param reviewMgr reads the policy of the tenant when this JVM exports it.
+     * @return the tenant's snapshots, or null if {@link GlobalIds#SNAPSHOT_DIR} is not set.
+     */
+    public static PolicySnapshots acquire( String contextId, ReviewMgr reviewMgr )
+    {
+        Config cfg = Config.getInstance();
+        String dir = cfg.getProperty( GlobalIds.SNAPSHOT_DIR );
+
+        if ( StringUtils.isEmpty( dir ) )
+        {
+            return null;
+        }
+
+        String key = StringUtils.isEmpty( contextId ) ? org.apache.directory.fortress.core.GlobalIds.HOME : contextId;
+
+        synchronized ( SNAPSHOTS )
+        {
+            PolicySnapshots snapshots = SNAPSHOTS.get( key );
+
+            if ( snapshots == null )
+            {
+                int interval = Math.max( 1, cfg.getInt( GlobalIds.SNAPSHOT_INTERVAL, GlobalIds.SNAPSHOT_INTERVAL_DEFAULT ) );
+                int maxAge = cfg.getInt( GlobalIds.SNAPSHOT_MAX_AGE, 2 * interval );
+                snapshots = new PolicySnapshots( key, contextId, Paths.get( dir, key + SUFFIX ),
+                    cfg.getBoolean( GlobalIds.SNAPSHOT_EXPORT, false ), maxAge * 1000L );
+                snapshots.start( reviewMgr, interval );
+                SNAPSHOTS.put( key, snapshots );
+            }
+
+            snapshots.references++;
+
+            return snapshots;
+        }
+    }
+
+
+    /**
+     * Hand back the snapshots returned by {@link #acquire(String, ReviewMgr)}.  The last release stops the tenant's
+     * export or checks.
+     */
+    public void release()
+    {
+        synchronized ( SNAPSHOTS )
+        {
+            if ( --references > 0 )
+            {
+                return;
+            }
+
+            task.cancel( false );
+
+            synchronized ( this )
+            {
+                // An export that is running completes, but no longer replaces the file:
+                released = true;
+                current = null;
+            }
+
+            SNAPSHOTS.remove( key );
+
+            if ( SNAPSHOTS.isEmpty() )
+            {
+                executor.shutdown();
+                executor = null;
+            }
+        }
+
+        LOG.info( "{}.release [{}]", CLS_NM, file );
+    }
+
+
+    /**
+     * @return the current snapshot, or null if none was exported yet or it was last confirmed by an export longer than
+     * {@link GlobalIds#SNAPSHOT_MAX_AGE} seconds ago.
+     */
+    public PolicySnapshot current()
+    {
+        PolicySnapshot snapshot = current;
+
+        if ( ( snapshot != null ) && ( System.currentTimeMillis() - verifiedAt > maxAgeMillis ) )
+        {
+            return null;
+        }
+
+        return snapshot;
+    }
+
+
+    /**
+     * Schedule the export or the checks of the file.  Called while holding the lock on SNAPSHOTS.
+     */
+    private void start( final ReviewMgr reviewMgr, int intervalSeconds )
+    {
+        if ( executor == null )
+        {
+            executor = newExecutor();
+        }
+
+        reload();
+
+        if ( export )
+        {
+            task = executor.scheduleWithFixedDelay( () -> export( reviewMgr ), 0, intervalSeconds, TimeUnit.SECONDS );
+            LOG.info( "{} exporting [{}] every [{}] seconds", CLS_NM, file, intervalSeconds );
+        }
+        else
+        {
+            // Checking twice per interval keeps the snapshot within twice the interval of the export that confirmed it:
+            long period = Math.max( 500L, intervalSeconds * 500L );
+            task = executor.scheduleWithFixedDelay( this::reload, period, period, TimeUnit.MILLISECONDS );
+            LOG.info( "{} reading [{}] every [{}] ms", CLS_NM, file, period );
+        }
+    }
+
+
+    /**
+     * Map the file again if it was replaced since it was last read, or note the time of the export that confirmed it.
+     */
+    private synchronized void reload()
+    {
+        if ( released )
+        {
+            return;
+        }
+
+        try
+        {
+            FileTime modified = Files.getLastModifiedTime( file );
+            PolicySnapshot snapshot = current;
+
+            if ( ( snapshot == null ) || !modified.equals( lastModified ) )
+            {
+                if ( ( snapshot == null ) || !isSame( snapshot ) )
+                {
+                    snapshot = export ? PolicySnapshot.read( file, contextId ) : PolicySnapshot.open( file, contextId );
+                    current = snapshot;
+                    LOG.info( "{}.reload [{}] generation [{}], users [{}], roles [{}]", CLS_NM, file,
+                        snapshot.getGeneration(), snapshot.getUserCount(), snapshot.getRoleCount() );
+                }
+
+                lastModified = modified;
+                verifiedAt = modified.toMillis();
+            }
+
+            if ( System.currentTimeMillis() - verifiedAt > maxAgeMillis )
+            {
+                LOG.warn( "{}.reload [{}] not confirmed by an export since [{}], not used", CLS_NM, file, modified );
+            }
+        }
+        catch ( NoSuchFileException nsfe )
+        {
+            LOG.debug( "{}.reload [{}] not exported yet", CLS_NM, file );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            // Keep answering from the previous snapshot, if any:
+            LOG.warn( "{}.reload [{}] caught Exception={}", CLS_NM, file, e.toString() );
+        }
+    }
+
+
+    /**
+     * Compare the header of the file with the snapshot, so a file only touched by an export is not mapped again.
+     */
+    private boolean isSame( PolicySnapshot snapshot ) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate( PolicySnapshotWriter.HEADER_SIZE );
+
+        try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            while ( header.hasRemaining() && ( channel.read( header ) >= 0 ) )
+            {
+                // read the header fully
+            }
+        }
+
+        return !header.hasRemaining() && ( header.getLong( 8 ) == snapshot.getGeneration() )
+            && ( header.getInt( 16 ) == snapshot.getChecksum() );
+    }
+
+
+    private void export( ReviewMgr reviewMgr )
+    {
+        try
+        {
+            SDSet dsd = new SDSet();
+            dsd.setName( "" );
+
+            if ( !reviewMgr.dsdSets( dsd ).isEmpty() )
+            {
+                LOG.warn( "{}.export contextId [{}] has Dynamic Separation of Duty sets, not exported", CLS_NM, contextId );
+                return;
+            }
+
+            long generation = System.currentTimeMillis();
+            List<Role> roles = reviewMgr.findRoles( "" );
+            List<User> users = reviewMgr.findUsers( new User( "" ) );
+            Files.createDirectories( file.toAbsolutePath().getParent() );
+            Path tmp = Files.createTempFile( file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp" );
+
+            try
+            {
+                int checksum = PolicySnapshotWriter.write( tmp, generation, roles, users );
+                PolicySnapshot snapshot = current;
+                // Readers take the modification time for the time the snapshot was last confirmed:
+                FileTime exported = FileTime.fromMillis( generation );
+
+                synchronized ( this )
+                {
+                    if ( released )
+                    {
+                        return;
+                    }
+
+                    if ( ( snapshot != null ) && ( snapshot.getChecksum() == checksum ) && Files.exists( file ) )
+                    {
+                        Files.setLastModifiedTime( file, exported );
+                        LOG.debug( "{}.export [{}] unchanged", CLS_NM, file );
+                    }
+                    else
+                    {
+                        snapshot = PolicySnapshot.read( tmp, contextId );
+                        Files.setLastModifiedTime( tmp, exported );
+                        Files.move( tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+                        current = snapshot;
+                        LOG.info( "{}.export [{}] users [{}], roles [{}] in [{}] ms", CLS_NM, file, users.size(),
+                            roles.size(), System.currentTimeMillis() - generation );
+                    }
+
+                    lastModified = exported;
+                    verifiedAt = generation;
+                }
+            }
+            finally
+            {
+                Files.deleteIfExists( tmp );
+            }
+        }
+        catch ( SecurityException | IOException | RuntimeException e )
+        {
+            // Thrown out of a scheduled task, an exception would cancel every later export:
+            LOG.warn( "{}.export [{}] caught Exception={}", CLS_NM, file, e.toString() );
+        }
+    }
+
+
+    private static ScheduledThreadPoolExecutor newExecutor()
+    {
+        ScheduledThreadPoolExecutor created = new ScheduledThreadPoolExecutor( 1, runnable -> {
+            Thread thread = new Thread( runnable, "FortressRealmSnapshot" );
+            thread.setDaemon( true );
+            // Never pin the class loader of the web application whose request happened to start the thread:
+            thread.setContextClassLoader( PolicySnapshots.class.getClassLoader() );
+
+            return thread;
+        } );
+        created.setRemoveOnCancelPolicy( true );
+
+        return created;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns the role names of one tenant (contextId) to dense, non-negative ints so that authorized roles can be held
+ * as bitsets and checked without hashing strings.  Names are normalized once, following Fortress's case insensitive
+ * role name semantics, so 'Role1' and 'ROLE1' share the same id.
+ * <p>
+ * Ids are only meaningful inside the JVM that assigned them and are never reused.  Lookups are lock free, only the
+ * assignment of a new id is synchronized.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class RoleDictionary
+{
+    /** Returned by {@link #lookup(String)} for names that have never been interned */
+    public static final int UNKNOWN = -1;
+
+    /** Key used for sessions that are not scoped to a tenant */
+    private static final String DEFAULT_CONTEXT = "";
+
+    private static final ConcurrentMap<String, RoleDictionary> DICTIONARIES = new ConcurrentHashMap<>();
+
+    /** Normalized name to id */
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /** Exact spellings seen so far to id, lets lookups skip normalization.  Only holds spellings of interned names */
+    private final ConcurrentMap<String, Integer> spellings = new ConcurrentHashMap<>();
+
+    /** Name of each id, as first seen.  Replaced as a whole when it grows */
+    private volatile String[] names = new String[16];
+
+
+    private RoleDictionary()
+    {
+    }
+
+
+    /**
+     * Return the dictionary of a tenant, creating it on first use.
+     *
+     * @param contextId contains the tenant id, may be null for the default tenant.
+     * @return the tenant's dictionary.  Never null.
+     */
+    public static RoleDictionary getInstance( String contextId )
+    {
+        return DICTIONARIES.computeIfAbsent( contextId == null ? DEFAULT_CONTEXT : contextId, k -> new RoleDictionary() );
+    }
+
+
+    /**
+     * Return the id of a role name, assigning a new one if the name has not been seen before.
+     *
+     * @param roleName contains the role name, must not be null.
+     * @return id of the role.
+     */
+    public int intern( String roleName )
+    {
+        Integer id = spellings.get( roleName );
+
+        if ( id != null )
+        {
+            return id;
+        }
+
+        String key = normalize( roleName );
+        id = ids.get( key );
+
+        if ( id != null )
+        {
+            spellings.put( roleName, id );
+            return id;
+        }
+
+        synchronized ( this )
+        {
+            id = ids.get( key );
+
+            if ( id == null )
+            {
+                id = ids.size();
+                String[] current = names;
+
+                if ( id == current.length )
+                {
+                    current = Arrays.copyOf( current, current.length * 2 );
+                }
+
+                // Publish the name before the id so readers holding the id always find it:
+                current[id] = roleName;
+                names = current;
+                ids.put( key, id );
+            }
+
+            spellings.put( roleName, id );
+            return id;
+        }
+    }
+
+
+    /**
+     * Return the id of a role name without assigning one.  Names that were never interned cannot be held by any
+     * principal, so callers can treat {@link #UNKNOWN} as not authorized.
+     *
+     * @param roleName contains the role name, may be null.
+     * @return id of the role or {@link #UNKNOWN}.
+     */
+    public int lookup( String roleName )
+    {
+        if ( roleName == null )
+        {
+            return UNKNOWN;
+        }
+
+        Integer id = spellings.get( roleName );
+
+        if ( id == null )
+        {
+            id = ids.get( normalize( roleName ) );
+
+            if ( id == null )
+            {
+                return UNKNOWN;
+            }
+
+            spellings.put( roleName, id );
+        }
+
+        return id;
+    }
+
+
+    /**
+     * Return the role name of an id.
+     *
+     * @param id as returned by {@link #intern(String)}.
+     * @return the role name as first interned.
+     */
+    public String name( int id )
+    {
+        return names[id];
+    }
+
+
+    /**
+     * @return number of role names interned so far.
+     */
+    public int size()
+    {
+        return ids.size();
+    }
+
+
+    private static String normalize( String roleName )
+    {
+        return roleName.toLowerCase( Locale.ROOT );
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.Role;
+import org.apache.directory.fortress.realm.cache.Refresher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiled form of the role hierarchy of one tenant (contextId).  Each role is given the bitset of its transitive
+ * closure, i.e. the ids in the tenant's {@link RoleDictionary} of the role and of every role it inherits through its
+ * parents, so the roles authorized by a set of activated roles are the OR of their closures, without walking the
+ * hierarchy.
+ * <p>
+ * The hierarchy is read from the directory when first needed and compiled again once it is older than its
+ * time-to-live, shortly before in the background when the {@link Refresher} is enabled, or after
+ * {@link #invalidate()}.  A compiled hierarchy is replaced as a whole, readers see either the old or the new one.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class RoleHierarchy
+{
+    private static final String CLS_NM = RoleHierarchy.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+
+    /** Key used for hierarchies that are not scoped to a tenant */
+    private static final String DEFAULT_CONTEXT = "";
+
+    private static final ConcurrentMap<String, RoleHierarchy> HIERARCHIES = new ConcurrentHashMap<>();
+
+    private final RoleDictionary dictionary;
+    private final long ttlMillis;
+
+    /** The current compiled hierarchy, null until first needed or after invalidation */
+    private volatile Compiled compiled;
+
+
+    /**
+     * Reads the roles of the tenant, with their parents, from the directory.
+     */
+    public interface Source
+    {
+        /**
+         * Read every role.
+         *
+         * @return the roles, with {@link Role#getParents()} set.
+         * @throws SecurityException in the event of system error.
+         */
+        List<Role> roles() throws SecurityException;
+    }
+
+
+    private RoleHierarchy( String contextId, long ttlMillis )
+    {
+        this.dictionary = RoleDictionary.getInstance( contextId );
+        this.ttlMillis = ttlMillis;
+    }
+
+
+    /**
+     * Return the hierarchy of a tenant, creating it on first use.
+     *
+     * @param contextId contains the tenant id, may be null for the default tenant.
+     * @param ttlMillis number of milliseconds a compiled hierarchy is used, only applied when the hierarchy is created.
+     * @return the tenant's hierarchy.  Never null.
+     */
+    public static RoleHierarchy getInstance( String contextId, long ttlMillis )
+    {
+        return HIERARCHIES.computeIfAbsent( contextId == null ? DEFAULT_CONTEXT : contextId,
+            k -> new RoleHierarchy( contextId, ttlMillis ) );
+    }
+
+
+    /**
+     * Return the roles authorized by the activated roles, compiling the hierarchy first if needed.
+     *
+     * @param roleNames contains the names of the activated roles.
+     * @param source    reads the roles when the hierarchy is compiled.
+     * @return ids in the tenant's {@link RoleDictionary} of the activated and inherited roles, or null if one of the
+     * activated roles is not part of the compiled hierarchy, e.g. because it was added since.
+     * @throws SecurityException if the hierarchy cannot be read.
+     */
+    public BitSet authorized( Collection<String> roleNames, Source source ) throws SecurityException
+    {
+        BitSet[] closures = current( source ).closures;
+        BitSet result = new BitSet();
+
+        for ( String roleName : roleNames )
+        {
+            int id = dictionary.lookup( roleName );
+
+            if ( ( id == RoleDictionary.UNKNOWN ) || ( id >= closures.length ) || ( closures[id] == null ) )
+            {
+                return null;
+            }
+
+            result.or( closures[id] );
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Drop the compiled hierarchy, e.g. after roles or their inheritance were changed, the next caller compiles it again.
+     */
+    public void invalidate()
+    {
+        compiled = null;
+    }
+
+
+    private Compiled current( Source source ) throws SecurityException
+    {
+        Compiled current = compiled;
+        long now = System.currentTimeMillis();
+
+        if ( ( current != null ) && ( now < current.expiresAt ) )
+        {
+            if ( now >= current.refreshAt )
+            {
+                refreshAhead( current, source );
+            }
+
+            return current;
+        }
+
+        synchronized ( this )
+        {
+            // Another thread may have compiled while we waited on the lock:
+            current = compiled;
+
+            if ( ( current != null ) && ( System.currentTimeMillis() < current.expiresAt ) )
+            {
+                return current;
+            }
+
+            current = compile( source.roles() );
+            compiled = current;
+
+            return current;
+        }
+    }
+
+
+    /**
+     * Compile the hierarchy in the background, readers keep using the current one until the new one is swapped in.
+     */
+    private void refreshAhead( final Compiled stale, final Source source )
+    {
+        Refresher refresher = Refresher.getInstance();
+
+        if ( refresher != null )
+        {
+            refresher.submit( this, () -> {
+                Compiled fresh = compile( source.roles() );
+
+                synchronized ( this )
+                {
+                    // Unless it was compiled in the foreground, or invalidated, in the meantime:
+                    if ( compiled == stale )
+                    {
+                        compiled = fresh;
+                    }
+                }
+            } );
+        }
+    }
+
+
+    private Compiled compile( List<Role> roles )
+    {
+        long start = System.currentTimeMillis();
+        Map<Integer, int[]> parents = new HashMap<Integer, int[]>();
+
+        for ( Role role : roles )
+        {
+            Set<String> names = role.getParents();
+            int[] ids = new int[names == null ? 0 : names.size()];
+            int i = 0;
+
+            if ( names != null )
+            {
+                for ( String name : names )
+                {
+                    ids[i++] = dictionary.intern( name );
+                }
+            }
+
+            parents.put( dictionary.intern( role.getName() ), ids );
+        }
+
+        BitSet[] closures = close( dictionary.size(), parents );
+        long now = System.currentTimeMillis();
+        LOG.debug( "{}.compile [{}] roles in [{}] ms", CLS_NM, parents.size(), now - start );
+
+        return new Compiled( closures, now, ttlMillis );
+    }
+
+
+    /**
+     * Compute the closure of every role, parents first, with an explicit stack so deep hierarchies cannot overflow the
+     * thread's stack.  Fortress does not allow cycles, should one be found anyway it is cut where it was entered.
+     */
+    static BitSet[] close( int size, Map<Integer, int[]> parents )
+    {
+        final byte open = 1;
+        final byte closed = 2;
+        BitSet[] closures = new BitSet[size];
+        byte[] state = new byte[size];
+        Deque<Integer> stack = new ArrayDeque<Integer>();
+
+        for ( Integer root : parents.keySet() )
+        {
+            stack.push( root );
+
+            while ( !stack.isEmpty() )
+            {
+                int id = stack.peek();
+
+                if ( state[id] == closed )
+                {
+                    stack.pop();
+                }
+                else if ( state[id] == open )
+                {
+                    // Every parent is closed by now, or on the stack below because of a cycle:
+                    stack.pop();
+                    BitSet closure = new BitSet();
+                    closure.set( id );
+
+                    for ( int parent : ids( parents, id ) )
+                    {
+                        if ( closures[parent] != null )
+                        {
+                            closure.or( closures[parent] );
+                        }
+                    }
+
+                    closures[id] = closure;
+                    state[id] = closed;
+                }
+                else
+                {
+                    state[id] = open;
+
+                    for ( int parent : ids( parents, id ) )
+                    {
+                        if ( state[parent] == 0 )
+                        {
+                            stack.push( parent );
+                        }
+                    }
+                }
+            }
+        }
+
+        return closures;
+    }
+
+
+    private static int[] ids( Map<Integer, int[]> parents, int id )
+    {
+        int[] ids = parents.get( id );
+
+        // Parents that are not roles themselves have no parents:
+        return ids == null ? new int[0] : ids;
+    }
+
+
+    /**
+     * Immutable pairing of the closures, by role id, with the instants they expire and may be refreshed.
+     */
+    private static final class Compiled
+    {
+        private final BitSet[] closures;
+        private final long expiresAt;
+        private final long refreshAt;
+
+        private Compiled( BitSet[] closures, long now, long ttlMillis )
+        {
+            Refresher refresher = Refresher.getInstance();
+            this.closures = closures;
+            this.expiresAt = now + ttlMillis;
+            this.refreshAt = refresher != null ? refresher.refreshAt( expiresAt, ttlMillis ) : Long.MAX_VALUE;
+        }
+    }
+}
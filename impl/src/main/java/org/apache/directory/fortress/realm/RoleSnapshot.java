@@ -0,0 +1,484 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.realm.cache.Refresher;
+
+/**
+ * Holds an immutable snapshot of the roles authorized for a {@link TcPrincipal}.  The snapshot is loaded once when the
+ * session is created and stored inside the principal's context so that role checks do not have to walk the role
+ * hierarchy on every call.  Once the configured time-to-live has elapsed, or the loader reports that temporal
+ * constraints may have changed the set, see {@link Loader#validUntil(long)}, the next caller reloads it.  A snapshot
+ * that is read shortly before it expires is reloaded in the background by the {@link Refresher} instead, so callers of
+ * an active principal do not wait on the directory.
+ * <p>
+ * Role names are interned in the tenant's {@link RoleDictionary} and the snapshot itself is a bitset of role ids, so
+ * checks are answered with int lookups and the snapshot costs a few bytes per role.  When serialized, the role names
+ * are written instead of the ids, which are only valid inside the JVM that assigned them.
+ * <p>
+ * This class is thread safe.  Readers see either the old or the new snapshot, never a partially built one, and
+ * only one thread at a time performs the reload for a given principal.  With a time-to-live of zero the snapshot is
+ * bypassed, every check calls the loader without locking.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class RoleSnapshot implements Serializable
+{
+    /** Default serialVersionUID */
+    private static final long serialVersionUID = 2L;
+
+    /** Tenant whose dictionary the role ids belong to, may be null */
+    private final String contextId;
+
+    /** Time-to-live of a snapshot, in milliseconds.  Zero or less means always reload. */
+    private final long ttlMillis;
+
+    private final transient RoleDictionary dictionary;
+
+    /** The current snapshot, replaced as a whole on every reload */
+    private transient volatile Entry entry;
+
+
+    /**
+     * Callback used to compute the authorized roles when the snapshot is missing or expired.
+     */
+    public interface Loader
+    {
+        /**
+         * Compute the current set of authorized roles.
+         *
+         * @return Set of role names, may be null or empty.
+         * @throws SecurityException in the event of constraint violation or system error.
+         */
+        Set<String> load() throws SecurityException;
+
+
+        /**
+         * Return the instant until which the set returned by the last {@link #load()} cannot change by itself, e.g.
+         * because of a temporal constraint, see {@link ConstraintWindow}.
+         *
+         * @param now current time, in milliseconds since the epoch.
+         * @return instant in milliseconds since the epoch, {@link Long#MAX_VALUE} if only the time-to-live applies.
+         */
+        default long validUntil( long now )
+        {
+            return Long.MAX_VALUE;
+        }
+
+
+        /**
+         * Compute the current set of authorized roles as ids of the tenant's dictionary.  By default the names
+         * returned by {@link #load()} are interned.
+         *
+         * @param dictionary contains the role ids of the tenant.
+         * @param validated  true if no temporal constraint can have changed since the activated roles were last
+         *                   evaluated, so only their inheritance has to be computed.
+         * @return ids of the role names.  Never null.
+         * @throws SecurityException in the event of constraint violation or system error.
+         */
+        default BitSet loadIds( RoleDictionary dictionary, boolean validated ) throws SecurityException
+        {
+            return intern( dictionary, load() );
+        }
+    }
+
+
+    /**
+     * Create a snapshot around a set of roles that was just computed.
+     *
+     * @param contextId contains the tenant id, may be null.
+     * @param roles     contains the authorized roles, may be null.
+     * @param ttlMillis number of milliseconds the set is to be trusted before it is reloaded.
+     */
+    public RoleSnapshot( String contextId, Set<String> roles, long ttlMillis )
+    {
+        this( contextId, roles, ttlMillis, Long.MAX_VALUE );
+    }
+
+
+    /**
+     * Create a snapshot by loading the roles now, from a session whose constraints were not just evaluated.
+     *
+     * @param contextId contains the tenant id, may be null.
+     * @param loader    computes the roles, now and on every reload.
+     * @param ttlMillis number of milliseconds the set is to be trusted before it is reloaded.
+     * @throws SecurityException if the roles cannot be loaded.
+     */
+    public RoleSnapshot( String contextId, Loader loader, long ttlMillis ) throws SecurityException
+    {
+        this( contextId, loader, ttlMillis, false );
+    }
+
+
+    /**
+     * Create a snapshot by loading the roles now.
+     *
+     * @param contextId contains the tenant id, may be null.
+     * @param loader    computes the roles, now and on every reload.
+     * @param ttlMillis number of milliseconds the set is to be trusted before it is reloaded.
+     * @param validated true if the constraints of the session were just evaluated, e.g. by creating it.
+     * @throws SecurityException if the roles cannot be loaded.
+     */
+    public RoleSnapshot( String contextId, Loader loader, long ttlMillis, boolean validated ) throws SecurityException
+    {
+        this.contextId = contextId;
+        this.ttlMillis = ttlMillis;
+        this.dictionary = RoleDictionary.getInstance( contextId );
+        this.entry = load( loader, validated );
+    }
+
+
+    private RoleSnapshot( String contextId, Set<String> roles, long ttlMillis, long validUntil )
+    {
+        this.contextId = contextId;
+        this.ttlMillis = ttlMillis;
+        this.dictionary = RoleDictionary.getInstance( contextId );
+        this.entry = new Entry( intern( dictionary, roles ), ttlMillis, validUntil );
+    }
+
+
+    /**
+     * Return the authorized roles, reloading them with the supplied loader if the snapshot has expired.
+     *
+     * @param loader computes a fresh set of roles when needed.
+     * @return immutable, case insensitive Set of role names.  Never null.
+     * @throws SecurityException if the reload fails.
+     */
+    public Set<String> getRoles( Loader loader ) throws SecurityException
+    {
+        return toNames( current( loader ).bits );
+    }
+
+
+    /**
+     * Determine if the role is authorized, reloading the snapshot with the supplied loader if it has expired.
+     *
+     * @param roleName contains the role name, matched case insensitively.
+     * @param loader   computes a fresh set of roles when needed.
+     * @return true if the role is authorized.
+     * @throws SecurityException if the reload fails.
+     */
+    public boolean contains( String roleName, Loader loader ) throws SecurityException
+    {
+        Entry current = current( loader );
+        int id = dictionary.lookup( roleName );
+
+        return id != RoleDictionary.UNKNOWN && current.bits.get( id );
+    }
+
+
+    /**
+     * Determine if any of the roles is authorized, reloading the snapshot with the supplied loader if it has expired.
+     *
+     * @param roleNames contains the role names, matched case insensitively.
+     * @param loader    computes a fresh set of roles when needed.
+     * @return true if at least one of the roles is authorized.
+     * @throws SecurityException if the reload fails.
+     */
+    public boolean containsAny( Collection<String> roleNames, Loader loader ) throws SecurityException
+    {
+        Entry current = current( loader );
+
+        for ( String roleName : roleNames )
+        {
+            int id = dictionary.lookup( roleName );
+
+            if ( id != RoleDictionary.UNKNOWN && current.bits.get( id ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Determine which of the roles are authorized, reloading the snapshot with the supplied loader if it has expired.
+     *
+     * @param roleNames contains the role names, matched case insensitively.
+     * @param loader    computes a fresh set of roles when needed.
+     * @return BitSet where bit i is set if the role at position i of the list is authorized.
+     * @throws SecurityException if the reload fails.
+     */
+    public BitSet containsAll( List<String> roleNames, Loader loader ) throws SecurityException
+    {
+        Entry current = current( loader );
+        BitSet result = new BitSet( roleNames.size() );
+        int i = 0;
+
+        for ( String roleName : roleNames )
+        {
+            int id = dictionary.lookup( roleName );
+
+            if ( id != RoleDictionary.UNKNOWN && current.bits.get( id ) )
+            {
+                result.set( i );
+            }
+
+            i++;
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Return the roles held by this snapshot without checking for expiration.
+     *
+     * @return immutable, case insensitive Set of role names.  Never null.
+     */
+    public Set<String> peek()
+    {
+        return toNames( entry.bits );
+    }
+
+
+    /**
+     * Return the number of roles held by this snapshot without checking for expiration.
+     *
+     * @return role count.
+     */
+    public int size()
+    {
+        return entry.bits.cardinality();
+    }
+
+
+    /**
+     * Determine if the snapshot has to be reloaded before it can answer, i.e. if a role check would call the loader.
+     *
+     * @return true if expired.
+     */
+    public boolean isExpired()
+    {
+        return System.currentTimeMillis() >= entry.expiresAt;
+    }
+
+
+    /**
+     * Determine if both snapshots currently hold the same roles, without checking for expiration.
+     *
+     * @param other the snapshot to compare with, must belong to the same tenant.
+     * @return true if the role ids are equal.
+     */
+    public boolean hasSameRoles( RoleSnapshot other )
+    {
+        return dictionary == other.dictionary && entry.bits.equals( other.entry.bits );
+    }
+
+
+    private Entry current( Loader loader ) throws SecurityException
+    {
+        Entry current = entry;
+        long now = System.currentTimeMillis();
+
+        if ( ttlMillis <= 0 )
+        {
+            // Nothing to share between callers, each one loads its own set, without waiting on the others:
+            current = load( loader, now < current.validUntil );
+            entry = current;
+
+            return current;
+        }
+
+        if ( now < current.expiresAt )
+        {
+            if ( now >= current.refreshAt )
+            {
+                refreshAhead( current, loader );
+            }
+
+            return current;
+        }
+
+        synchronized ( this )
+        {
+            // Another thread may have reloaded while we waited on the lock:
+            current = entry;
+
+            if ( System.currentTimeMillis() < current.expiresAt )
+            {
+                return current;
+            }
+
+            // Expired by its time-to-live rather than by a constraint, the activated roles still hold:
+            current = load( loader, System.currentTimeMillis() < current.validUntil );
+            entry = current;
+
+            return current;
+        }
+    }
+
+
+    private Entry load( Loader loader, boolean validated ) throws SecurityException
+    {
+        BitSet ids = loader.loadIds( dictionary, validated );
+
+        // Asked after loading, which may have dropped roles whose constraints no longer hold:
+        return new Entry( ids, ttlMillis, loader.validUntil( System.currentTimeMillis() ) );
+    }
+
+
+    private static BitSet intern( RoleDictionary dictionary, Set<String> roles )
+    {
+        BitSet ids = new BitSet();
+
+        if ( roles != null )
+        {
+            for ( String role : roles )
+            {
+                ids.set( dictionary.intern( role ) );
+            }
+        }
+
+        return ids;
+    }
+
+
+    /**
+     * Reload the snapshot in the background, readers keep using the current one until the new one is swapped in.
+     */
+    private void refreshAhead( final Entry stale, final Loader loader )
+    {
+        Refresher refresher = Refresher.getInstance();
+
+        if ( refresher != null )
+        {
+            refresher.submit( this, () -> {
+                Entry fresh = load( loader, System.currentTimeMillis() < stale.validUntil );
+
+                synchronized ( this )
+                {
+                    // Unless a caller already reloaded it in the foreground:
+                    if ( entry == stale )
+                    {
+                        entry = fresh;
+                    }
+                }
+            } );
+        }
+    }
+
+
+    private Set<String> toNames( BitSet bits )
+    {
+        // Fortress role names are case insensitive, keep the same semantics here:
+        Set<String> names = new TreeSet<String>( String.CASE_INSENSITIVE_ORDER );
+
+        for ( int id = bits.nextSetBit( 0 ); id >= 0; id = bits.nextSetBit( id + 1 ) )
+        {
+            names.add( dictionary.name( id ) );
+        }
+
+        return Collections.unmodifiableSet( names );
+    }
+
+
+    /**
+     * Serialize the role names rather than the ids, which are local to this JVM.
+     */
+    private Object writeReplace()
+    {
+        return new SerializedForm( contextId, peek(), ttlMillis, entry.validUntil );
+    }
+
+
+    private void readObject( ObjectInputStream in ) throws InvalidObjectException
+    {
+        throw new InvalidObjectException( "SerializedForm required" );
+    }
+
+
+    /**
+     * Portable form of a snapshot, resolved back into a snapshot against the local dictionary when read.
+     */
+    private static final class SerializedForm implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+        private final String contextId;
+        private final TreeSet<String> roles;
+        private final long ttlMillis;
+        // Zero when written by an earlier release, which reloads the snapshot on first use:
+        private final long validUntil;
+
+        private SerializedForm( String contextId, Set<String> roles, long ttlMillis, long validUntil )
+        {
+            this.contextId = contextId;
+            this.roles = new TreeSet<String>( roles );
+            this.ttlMillis = ttlMillis;
+            this.validUntil = validUntil;
+        }
+
+        private Object readResolve()
+        {
+            return new RoleSnapshot( contextId, roles, ttlMillis, validUntil );
+        }
+    }
+
+
+    /**
+     * Immutable pairing of a role id bitset, the instant it stops being trusted and the instant it may be refreshed.
+     */
+    private static final class Entry
+    {
+        private final BitSet bits;
+        private final long expiresAt;
+        private final long refreshAt;
+        private final long validUntil;
+
+        private Entry( BitSet ids, long ttlMillis, long validUntil )
+        {
+            this.bits = ids;
+            this.validUntil = validUntil;
+            long expiresAfterTtl = System.currentTimeMillis() + ttlMillis;
+
+            if ( ( ttlMillis > 0 ) && ( validUntil < expiresAfterTtl ) )
+            {
+                // A constraint changes first.  Reloading ahead of it would return the same set, so reload right at it:
+                this.expiresAt = validUntil;
+                this.refreshAt = Long.MAX_VALUE;
+            }
+            else if ( ttlMillis > 0 )
+            {
+                Refresher refresher = Refresher.getInstance();
+                this.expiresAt = expiresAfterTtl;
+                this.refreshAt = refresher != null ? refresher.refreshAt( expiresAt, ttlMillis ) : Long.MAX_VALUE;
+            }
+            else
+            {
+                // Always reloaded in the foreground:
+                this.expiresAt = Long.MIN_VALUE;
+                this.refreshAt = Long.MAX_VALUE;
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm;
+
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.Session;
+
+/**
+ * Converts Fortress RBAC sessions to and from the String returned by {@link TcPrincipal#toString()}, which is how the
+ * realm hands a session to the web application.  Implementations must be thread safe.
+ * <p>
+ * The implementation in use is chosen by {@link SessionCodecFactory}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface SessionCodec
+{
+    /**
+     * Convert a session into its String form.
+     *
+     * @param session contains the Fortress RBAC session.
+     * @return String containing the encoded session, or null if session is null.
+     * @throws SecurityException in the event the session cannot be encoded.
+     */
+    String encode( Session session ) throws SecurityException;
+
+
+    /**
+     * Rebuild a session from the String created by {@link #encode(Session)}.
+     *
+     * @param str contains the encoded session.
+     * @return the Fortress RBAC session.
+     * @throws SecurityException in the event the String is not a valid encoded session.
+     */
+    Session decode( String str ) throws SecurityException;
+}
@@ -0,0 +1,109 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.directory.fortress.core.CfgException;
+import org.apache.directory.fortress.core.util.ClassUtil;
+import org.apache.directory.fortress.core.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Returns the {@link SessionCodec} used to hand sessions from the realm to web applications.
+ * <p/>
+ * The default implementation is {@link BinarySessionCodec} but can be changed by adding the {@link GlobalIds#SESSION_CODEC}
+ * config property.  Its value may be {@code binary}, {@code java} or the name of a class implementing {@link SessionCodec}.
+ * <p/>
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class SessionCodecFactory
+{
+    // disallow construction
+    private SessionCodecFactory()
+    {
+    }
+
+    private static final String BINARY = "binary";
+    private static final String JAVA = "java";
+    private static final String CLS_NM = SessionCodecFactory.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static volatile SessionCodec codec;
+
+
+    /**
+     * Return the configured codec.  It is created on first use and shared by all callers.
+     *
+     * @return instance of {@link SessionCodec}.
+     */
+    public static SessionCodec getInstance()
+    {
+        SessionCodec current = codec;
+
+        if ( current == null )
+        {
+            synchronized ( SessionCodecFactory.class )
+            {
+                current = codec;
+
+                if ( current == null )
+                {
+                    current = createInstance( Config.getInstance().getProperty( GlobalIds.SESSION_CODEC ) );
+                    codec = current;
+                }
+            }
+        }
+
+        return current;
+    }
+
+
+    private static SessionCodec createInstance( String name )
+    {
+        SessionCodec instance;
+
+        if ( StringUtils.isEmpty( name ) || BINARY.equalsIgnoreCase( name ) )
+        {
+            instance = new BinarySessionCodec();
+        }
+        else if ( JAVA.equalsIgnoreCase( name ) )
+        {
+            instance = new JavaSessionCodec();
+        }
+        else
+        {
+            try
+            {
+                instance = ( SessionCodec ) ClassUtil.createInstance( name );
+            }
+            catch ( CfgException ce )
+            {
+                String error = CLS_NM + ".createInstance could not create session codec [" + name + "]";
+                LOG.error( error );
+                throw new IllegalStateException( error, ce );
+            }
+        }
+
+        LOG.info( "{} session codec: {}", CLS_NM, instance.getClass().getName() );
+
+        return instance;
+    }
+}
@@ -23,6 +23,13 @@ import java.io.Serializable;
 import java.security.Principal;
 import java.util.HashMap;
 
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.realm.event.Events;
+import org.apache.directory.fortress.realm.event.SessionCodecEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * Contains the Fortress RBAC session that has been created on behalf of an end user who has
  * signed onto Tomcat system.  The session contains the User's active roles and other security attributes.
@@ -33,9 +40,19 @@ public class TcPrincipal implements Principal, Serializable
 {
     /** Default serialVersionUID */
     private static final long serialVersionUID = 1L;
-    
+    private static final Logger LOG = LoggerFactory.getLogger( TcPrincipal.class.getName() );
+
+    /** The key when we store the Fortress Session into the context */
+    public static final String SESSION = "session";
+
     /** The key when we store a serialiazed version of a Session into the context */
     public static final String SERIALIZED = "SERIALIZED";
+
+    /** The key when we store the {@link RoleSnapshot} of authorized roles into the context */
+    public static final String AUTHORIZED_ROLES = "AUTHORIZED_ROLES";
+
+    /** The key when we store the names of the roles requested at login, used to reload the authorized roles */
+    public static final String REQUESTED_ROLES = "REQUESTED_ROLES";
     
     /** The context storing the session */
     private HashMap<String, Object> context;
@@ -43,6 +60,9 @@ public class TcPrincipal implements Principal, Serializable
     /** The userId */
     private String name;
 
+    /** The serialized session, computed on first call to toString */
+    private transient volatile Serialized serialized;
+
 
     /**
      * Constructor for the TcPrincipal object.  Accepts a HashMap which
@@ -93,11 +113,15 @@ public class TcPrincipal implements Principal, Serializable
     public final void setContext( HashMap<String, Object> context )
     {
         this.context = context;
+
+        // Free the copy of the old session:
+        this.serialized = null;
     }
 
 
     /**
-     * This method returns a string containing the serialized instance of this object.
+     * This method returns a string containing the serialized instance of this object.  The session is serialized on
+     * the first call and the result is kept for as long as the context holds the same session.
      *
      * @return Return this object in serialized format.
      */
@@ -109,10 +133,67 @@ public class TcPrincipal implements Principal, Serializable
         if ( context != null )
         {
             ser = (String)context.get( SERIALIZED );
+
+            if ( ser == null )
+            {
+                ser = serialize( ( Session ) context.get( SESSION ) );
+            }
         }
         
         return ser;
     }
+
+
+    private String serialize( Session session )
+    {
+        if ( session == null )
+        {
+            return null;
+        }
+
+        Serialized current = serialized;
+
+        if ( ( current == null ) || ( current.session != session ) )
+        {
+            synchronized ( this )
+            {
+                current = serialized;
+
+                if ( ( current == null ) || ( current.session != session ) )
+                {
+                    SessionCodecEvent event = SessionCodecEvent.start();
+                    SessionCodec codec = SessionCodecFactory.getInstance();
+                    String value = null;
+
+                    try
+                    {
+                        value = codec.encode( session );
+                        current = new Serialized( session, value );
+                        serialized = current;
+                    }
+                    catch ( SecurityException se )
+                    {
+                        LOG.warn( "{}.toString userId [{}] caught SecurityException={}", TcPrincipal.class.getName(), name, se );
+                        return null;
+                    }
+                    finally
+                    {
+                        if ( ( event != null ) && event.shouldCommit() )
+                        {
+                            event.operation = SessionCodecEvent.ENCODE;
+                            event.codec = codec.getClass().getSimpleName();
+                            event.userIdHash = Events.hash( name );
+                            event.size = value != null ? value.length() : 0;
+                            event.success = value != null;
+                            event.commit();
+                        }
+                    }
+                }
+            }
+        }
+
+        return current.value;
+    }
     
 
     /**
@@ -158,5 +239,22 @@ public class TcPrincipal implements Principal, Serializable
     {
         return name.hashCode();
     }
+
+
+    /**
+     * Pairs the serialized form with the session instance it was computed from, so a session replaced in the
+     * context is never answered with a stale copy.
+     */
+    private static final class Serialized
+    {
+        private final Session session;
+        private final String value;
+
+        private Serialized( Session session, String value )
+        {
+            this.session = session;
+            this.value = value;
+        }
+    }
 }
 
@@ -0,0 +1,158 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.apache.directory.fortress.realm.TcPrincipal;
+
+/**
+ * Remembers principals of users whose credentials were recently verified against the directory, so repeated logins
+ * with the same userId and password (e.g. BASIC authentication, which logs in on every request) can be answered
+ * without another bind.
+ * <p>
+ * Passwords are never held in memory.  Each entry stores a PBKDF2 hash of the password, salted with a random value
+ * generated when the cache is created plus the userId, and a presented password only matches when its hash does.
+ * Only successful logins may be added; failures must never be put here.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CredentialCache
+{
+    private static final String HASH_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_LENGTH = 16;
+    private static final int KEY_LENGTH = 256;
+    private final StripedLruCache<String, Entry> cache;
+    private final byte[] salt = new byte[SALT_LENGTH];
+    private final int iterations;
+
+
+    /**
+     * Create a new, empty credential cache.
+     *
+     * @param maxSize    maximum number of users held.
+     * @param ttlMillis  number of milliseconds a verified credential is trusted.
+     * @param iterations number of PBKDF2 iterations applied to each password.
+     */
+    public CredentialCache( int maxSize, long ttlMillis, int iterations )
+    {
+        this.cache = new StripedLruCache<String, Entry>( maxSize, ttlMillis );
+        this.iterations = iterations;
+        new SecureRandom().nextBytes( salt );
+    }
+
+
+    /**
+     * Return the principal cached for the user if the password matches the one that was verified.
+     *
+     * @param userId   contains the userId presented by the client.
+     * @param password contains the password presented by the client.
+     * @return principal, or null if the user is not cached, has expired, or the password differs.
+     */
+    public TcPrincipal get( String userId, String password )
+    {
+        Entry entry = cache.get( userId );
+
+        if ( ( entry == null ) || !MessageDigest.isEqual( entry.hash, hash( userId, password ) ) )
+        {
+            return null;
+        }
+
+        return entry.principal;
+    }
+
+
+    /**
+     * Remember the principal of a login that has been verified by the directory.
+     *
+     * @param userId    contains the userId that was authenticated.
+     * @param password  contains the password that was verified.
+     * @param principal the principal created for the login.
+     */
+    public void put( String userId, String password, TcPrincipal principal )
+    {
+        cache.put( userId, new Entry( hash( userId, password ), principal ) );
+    }
+
+
+    /**
+     * Forget the user, e.g. after a failed login or a password change.
+     *
+     * @param userId contains the userId to drop.
+     */
+    public void remove( String userId )
+    {
+        cache.remove( userId );
+    }
+
+
+    /**
+     * @return the underlying cache, for statistics.
+     */
+    public StripedLruCache<String, ?> getCache()
+    {
+        return cache;
+    }
+
+
+    private byte[] hash( String userId, String password )
+    {
+        byte[] user = userId.getBytes( StandardCharsets.UTF_8 );
+        byte[] userSalt = new byte[salt.length + user.length];
+        System.arraycopy( salt, 0, userSalt, 0, salt.length );
+        System.arraycopy( user, 0, userSalt, salt.length, user.length );
+
+        try
+        {
+            KeySpec spec = new PBEKeySpec( password.toCharArray(), userSalt, iterations, KEY_LENGTH );
+            return SecretKeyFactory.getInstance( HASH_ALGORITHM ).generateSecret( spec ).getEncoded();
+        }
+        catch ( GeneralSecurityException e )
+        {
+            // PBKDF2WithHmacSHA256 is required on every Java platform.
+            throw new IllegalStateException( CredentialCache.class.getName() + " hash caught GeneralSecurityException=" + e, e );
+        }
+    }
+
+
+    /**
+     * The verified password hash together with the principal it produced.
+     */
+    private static final class Entry
+    {
+        private final byte[] hash;
+        private final TcPrincipal principal;
+
+        private Entry( byte[] hash, TcPrincipal principal )
+        {
+            this.hash = hash;
+            this.principal = principal;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.cache;
+
+import org.apache.directory.fortress.core.GlobalErrIds;
+
+/**
+ * Remembers recently failed logins so that a client retrying a stale password, or a burst of guesses, is rejected
+ * locally instead of costing a bind against the directory on every attempt.
+ * <p>
+ * Two kinds of failure are held:
+ * <ul>
+ *   <li>credential failures (bad password, unknown user, expired or reset password) are keyed by userId and credential
+ *   digest, so only the exact same attempt is rejected and the user can still log in with the right password.</li>
+ *   <li>lockouts reported by the Fortress password policy are keyed by userId alone and reject every attempt for that
+ *   user, so the directory does not see the rest of an attack on an account that is already locked.</li>
+ * </ul>
+ * System errors, e.g. a directory outage, are never cached.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class FailureCache
+{
+    private final StripedLruCache<String, Integer> credentials;
+    private final StripedLruCache<String, Integer> lockouts;
+    private final long lockoutTtlMillis;
+
+
+    /**
+     * Create a new, empty failure cache.
+     *
+     * @param maxSize          maximum number of failures of each kind held.
+     * @param ttlMillis        number of milliseconds a failed credential is rejected locally.
+     * @param lockoutTtlMillis number of milliseconds a locked user is rejected locally, zero or less disables.
+     */
+    public FailureCache( int maxSize, long ttlMillis, long lockoutTtlMillis )
+    {
+        this.credentials = new StripedLruCache<String, Integer>( maxSize, ttlMillis );
+        this.lockouts = new StripedLruCache<String, Integer>( maxSize, lockoutTtlMillis );
+        this.lockoutTtlMillis = lockoutTtlMillis;
+    }
+
+
+    /**
+     * Return the error of a recent failure that matches this attempt.
+     *
+     * @param userId        contains the userId presented by the client.
+     * @param credentialKey identifies the credential presented, must not contain the password itself.
+     * @return the Fortress error id of the failure, or null if the attempt must go to the directory.
+     */
+    public Integer get( String userId, String credentialKey )
+    {
+        Integer errorId = lockouts.get( userId );
+
+        if ( errorId == null )
+        {
+            errorId = credentials.get( credentialKey );
+        }
+
+        return errorId;
+    }
+
+
+    /**
+     * Record a failed login.  Failures that are not caused by the credentials or the account are ignored.
+     *
+     * @param userId        contains the userId presented by the client.
+     * @param credentialKey identifies the credential presented, must not contain the password itself.
+     * @param errorId       Fortress error id of the failure.
+     */
+    public void put( String userId, String credentialKey, int errorId )
+    {
+        if ( isLockout( errorId ) )
+        {
+            if ( lockoutTtlMillis > 0 )
+            {
+                lockouts.put( userId, errorId );
+            }
+        }
+        else if ( isCredentialFailure( errorId ) )
+        {
+            credentials.put( credentialKey, errorId );
+        }
+    }
+
+
+    /**
+     * Forget the lockout of a user, e.g. after an administrator unlocked the account.
+     *
+     * @param userId contains the userId to drop.
+     */
+    public void remove( String userId )
+    {
+        lockouts.remove( userId );
+    }
+
+
+    /**
+     * @return the cache of failed credentials, for statistics.
+     */
+    public StripedLruCache<String, ?> getCredentials()
+    {
+        return credentials;
+    }
+
+
+    /**
+     * @return the cache of locked users, for statistics.
+     */
+    public StripedLruCache<String, ?> getLockouts()
+    {
+        return lockouts;
+    }
+
+
+    /**
+     * Determine if the error means the account is locked, by the password policy or by a constraint.
+     *
+     * @param errorId Fortress error id.
+     * @return true for lockout errors.
+     */
+    public static boolean isLockout( int errorId )
+    {
+        return errorId == GlobalErrIds.USER_PW_LOCKED || errorId == GlobalErrIds.USER_LOCKED_BY_CONST;
+    }
+
+
+    /**
+     * Determine if the error is caused by the credentials presented, i.e. the same attempt is bound to fail again.
+     *
+     * @param errorId Fortress error id.
+     * @return true for credential errors.
+     */
+    public static boolean isCredentialFailure( int errorId )
+    {
+        switch ( errorId )
+        {
+            case GlobalErrIds.USER_NOT_FOUND:
+            case GlobalErrIds.USER_PW_INVLD:
+            case GlobalErrIds.USER_PW_RESET:
+            case GlobalErrIds.USER_PW_EXPIRED:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.cache;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.realm.GlobalIds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Revalidates cached values shortly before they expire, on a small pool of background threads, so requests keep being
+ * answered from memory instead of waiting on the directory when an entry of an active user times out.
+ * <p>
+ * Each entry is given a refresh instant inside the last {@link GlobalIds#REFRESH_WINDOW} percent of its time-to-live.
+ * The instant is moved towards expiration by a random part of the window, see {@link GlobalIds#REFRESH_JITTER}, so
+ * entries created together are not refreshed together.  The first read past that instant submits the refresh, every
+ * read keeps getting the current value until the owner swaps in the refreshed one.  Entries that are not read are
+ * never refreshed and simply expire.
+ * <p>
+ * At most one refresh per key is pending at any time.  When the pool and its queue are full, refreshes are dropped and
+ * the entry is reloaded on expiration as it would be without this class.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class Refresher
+{
+    private static final String CLS_NM = Refresher.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static volatile Refresher instance;
+    private final ThreadPoolExecutor executor;
+    private final Set<Object> pending = ConcurrentHashMap.newKeySet();
+    private final int windowPercent;
+    private final int jitterPercent;
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+
+    /**
+     * The work that revalidates one entry and swaps in the result.
+     */
+    public interface Task
+    {
+        /**
+         * Reload the value and replace the cached one.
+         *
+         * @throws SecurityException if the value can no longer be loaded.
+         */
+        void refresh() throws SecurityException;
+    }
+
+
+    /**
+     * Create a new refresher.
+     *
+     * @param threads       maximum number of refreshes running at once.
+     * @param queueSize     maximum number of refreshes waiting for a thread.
+     * @param windowPercent part of the time-to-live, before expiration, in which entries are refreshed.
+     * @param jitterPercent part of the window by which the refresh instant of each entry is randomly delayed.
+     */
+    public Refresher( int threads, int queueSize, int windowPercent, int jitterPercent )
+    {
+        final AtomicInteger counter = new AtomicInteger();
+        final ClassLoader loader = Refresher.class.getClassLoader();
+        this.windowPercent = Math.min( windowPercent, 100 );
+        this.jitterPercent = Math.max( 0, Math.min( jitterPercent, 100 ) );
+        this.executor = new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>( queueSize ), runnable -> {
+                Thread thread = new Thread( runnable, "FortressRealmRefresh-" + counter.incrementAndGet() );
+                thread.setDaemon( true );
+                // Never pin the class loader of the web application whose request happened to start the thread:
+                thread.setContextClassLoader( loader );
+
+                return thread;
+            } );
+        // Idle threads go away, so nothing is left running once the realm is no longer used:
+        executor.allowCoreThreadTimeOut( true );
+    }
+
+
+    /**
+     * Return the refresher shared by all caches in this JVM, configured from the {@link GlobalIds#REFRESH_WINDOW},
+     * {@link GlobalIds#REFRESH_JITTER}, {@link GlobalIds#REFRESH_THREADS} and {@link GlobalIds#REFRESH_QUEUE}
+     * properties.
+     *
+     * @return the shared refresher, or null if disabled by a window of zero.
+     */
+    public static Refresher getInstance()
+    {
+        Refresher current = instance;
+
+        if ( current == null )
+        {
+            synchronized ( Refresher.class )
+            {
+                current = instance;
+
+                if ( current == null )
+                {
+                    Config cfg = Config.getInstance();
+                    int window = cfg.getInt( GlobalIds.REFRESH_WINDOW, GlobalIds.REFRESH_WINDOW_DEFAULT );
+
+                    // A disabled refresher is represented by an instance with no executor so the lookup happens only once:
+                    if ( window > 0 )
+                    {
+                        int jitter = cfg.getInt( GlobalIds.REFRESH_JITTER, GlobalIds.REFRESH_JITTER_DEFAULT );
+                        int threads = Math.max( 1, cfg.getInt( GlobalIds.REFRESH_THREADS, GlobalIds.REFRESH_THREADS_DEFAULT ) );
+                        int queue = Math.max( 1, cfg.getInt( GlobalIds.REFRESH_QUEUE, GlobalIds.REFRESH_QUEUE_DEFAULT ) );
+                        current = new Refresher( threads, queue, window, jitter );
+                        LOG.info( "{} refresh-ahead enabled, window [{}%], jitter [{}%], threads [{}], queue [{}]", CLS_NM, window, jitter, threads, queue );
+                    }
+                    else
+                    {
+                        current = new Refresher();
+                    }
+
+                    instance = current;
+                }
+            }
+        }
+
+        return current.executor == null ? null : current;
+    }
+
+
+    private Refresher()
+    {
+        this.executor = null;
+        this.windowPercent = 0;
+        this.jitterPercent = 0;
+    }
+
+
+    /**
+     * Compute the instant after which a read of an entry should trigger its refresh.
+     *
+     * @param expiresAt instant the entry expires, in milliseconds since the epoch.
+     * @param ttlMillis time-to-live the entry was created with.
+     * @return instant to refresh from, or {@link Long#MAX_VALUE} if the entry is never to be refreshed.
+     */
+    public long refreshAt( long expiresAt, long ttlMillis )
+    {
+        long window = ttlMillis * windowPercent / 100;
+
+        if ( window <= 0 )
+        {
+            return Long.MAX_VALUE;
+        }
+
+        long jitter = window * jitterPercent / 100;
+
+        return expiresAt - window + ( jitter > 0 ? ThreadLocalRandom.current().nextLong( jitter + 1 ) : 0 );
+    }
+
+
+    /**
+     * Run the refresh of an entry in the background, unless one is already pending for the same key.
+     *
+     * @param key  identifies the entry, e.g. the cache key or the object holding the value.
+     * @param task reloads and swaps the value.
+     * @return true if the refresh was submitted.
+     */
+    public boolean submit( Object key, Task task )
+    {
+        if ( !pending.add( key ) )
+        {
+            return false;
+        }
+
+        try
+        {
+            executor.execute( () -> run( key, task ) );
+
+            return true;
+        }
+        catch ( RejectedExecutionException ree )
+        {
+            // Saturated, the entry is reloaded in the foreground once it expires:
+            pending.remove( key );
+            rejections.increment();
+
+            return false;
+        }
+    }
+
+
+    private void run( Object key, Task task )
+    {
+        try
+        {
+            task.refresh();
+            refreshes.increment();
+        }
+        catch ( SecurityException | RuntimeException e )
+        {
+            failures.increment();
+            LOG.debug( "{}.refresh caught Exception={}", CLS_NM, e.toString() );
+        }
+        finally
+        {
+            pending.remove( key );
+        }
+    }
+
+
+    /**
+     * @return number of refreshes that completed.
+     */
+    public long getRefreshes()
+    {
+        return refreshes.sum();
+    }
+
+
+    /**
+     * @return number of refreshes that failed.
+     */
+    public long getFailures()
+    {
+        return failures.sum();
+    }
+
+
+    /**
+     * @return number of refreshes dropped because the pool was saturated.
+     */
+    public long getRejections()
+    {
+        return rejections.sum();
+    }
+}
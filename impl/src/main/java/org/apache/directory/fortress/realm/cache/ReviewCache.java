@@ -0,0 +1,498 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.Role;
+import org.apache.directory.fortress.core.model.User;
+
+/**
+ * Remembers the results of the {@link org.apache.directory.fortress.core.ReviewMgr} lookups made through
+ * {@link org.apache.directory.fortress.realm.J2eePolicyMgr}, for one tenant, so that screens calling them on every
+ * keystroke do not cost a search against the directory each time.
+ * <ul>
+ *   <li>roles and users read by name, and the users assigned to a role, are held in expiring LRU caches.</li>
+ *   <li>role and user name searches, which are prefix searches, are answered from a sorted index of names.  Once a
+ *   search for a prefix returned fewer names than its limit, the result is complete, so the index holds every name with
+ *   that prefix and answers every longer prefix too until it expires.  Each complete search replaces the names of its
+ *   prefix, which keeps the index current one prefix at a time rather than by reloading it as a whole.</li>
+ * </ul>
+ * Results are at most the configured time-to-live old.  Applications that change users or roles should call
+ * {@link #invalidateUser(String)}, {@link #invalidateRole(String)} or {@link #clear()} to see their changes at once.
+ * A name search that was already running when one of them was called still returns its result, but does not update
+ * the index.
+ * Every caller receives its own copy of a cached entity.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ReviewCache
+{
+    private final StripedLruCache<String, Role> roles;
+    private final StripedLruCache<String, User> users;
+    private final StripedLruCache<String, Assigned> assigned;
+    private final NameIndex roleNames;
+    private final NameIndex userNames;
+
+
+    /**
+     * A lookup by name.
+     *
+     * @param <T> type of the result.
+     */
+    public interface Reader<T>
+    {
+        /**
+         * Ask the directory.
+         *
+         * @param name contains the name to look up.
+         * @return the result.
+         * @throws SecurityException if not found or in the event of system error.
+         */
+        T read( String name ) throws SecurityException;
+    }
+
+
+    /**
+     * A search returning a list of names.
+     */
+    public interface Search
+    {
+        /**
+         * Ask the directory.
+         *
+         * @param value contains the prefix or name searched for.
+         * @param limit maximum number of names returned.
+         * @return the names found.
+         * @throws SecurityException in the event of system error.
+         */
+        List<String> search( String value, int limit ) throws SecurityException;
+    }
+
+
+    /**
+     * Create a new, empty cache.
+     *
+     * @param maxSize   maximum number of entries held by each cache and maximum number of names held by each index.
+     * @param ttlMillis number of milliseconds a result is kept.
+     */
+    public ReviewCache( int maxSize, long ttlMillis )
+    {
+        this.roles = new StripedLruCache<String, Role>( maxSize, ttlMillis );
+        this.users = new StripedLruCache<String, User>( maxSize, ttlMillis );
+        this.assigned = new StripedLruCache<String, Assigned>( maxSize, ttlMillis );
+        this.roleNames = new NameIndex( maxSize, ttlMillis );
+        this.userNames = new NameIndex( maxSize, ttlMillis );
+    }
+
+
+    /**
+     * Return the role, reading it only if it is not cached.
+     *
+     * @param roleName contains the name of the role.
+     * @param reader   reads the role on a cache miss.
+     * @return a private copy of the role.
+     * @throws SecurityException if the role is not found or in the event of system error.
+     */
+    public Role readRole( String roleName, Reader<Role> reader ) throws SecurityException
+    {
+        String key = key( roleName );
+        Role role = roles.get( key );
+
+        if ( role == null )
+        {
+            role = reader.read( roleName );
+
+            if ( role == null )
+            {
+                return null;
+            }
+
+            roles.put( key, role );
+        }
+
+        // Role has no copier of its own, and is read far less often than users:
+        return SerializationUtils.clone( role );
+    }
+
+
+    /**
+     * Return the user, reading it only if it is not cached.
+     *
+     * @param userId contains the userId.
+     * @param reader reads the user on a cache miss.
+     * @return a private copy of the user.
+     * @throws SecurityException if the user is not found or in the event of system error.
+     */
+    public User readUser( String userId, Reader<User> reader ) throws SecurityException
+    {
+        String key = key( userId );
+        User user = users.get( key );
+
+        if ( user == null )
+        {
+            user = reader.read( userId );
+
+            if ( user == null )
+            {
+                return null;
+            }
+
+            users.put( key, user );
+        }
+
+        return SessionCopier.copy( user );
+    }
+
+
+    /**
+     * Return the names of roles starting with the prefix, from the index if it holds every one of them.
+     *
+     * @param prefix contains the leading characters of the role names.
+     * @param limit  maximum number of names returned.
+     * @param search searches the directory when the index cannot answer.
+     * @return the names found.
+     * @throws SecurityException in the event of system error.
+     */
+    public List<String> searchRoles( String prefix, int limit, Search search ) throws SecurityException
+    {
+        return roleNames.search( prefix, limit, search );
+    }
+
+
+    /**
+     * Return the userIds starting with the prefix, from the index if it holds every one of them.
+     *
+     * @param prefix contains the leading characters of the userIds.
+     * @param limit  maximum number of userIds returned.
+     * @param search searches the directory when the index cannot answer.
+     * @return the userIds found.
+     * @throws SecurityException in the event of system error.
+     */
+    public List<String> searchUsers( String prefix, int limit, Search search ) throws SecurityException
+    {
+        return userNames.search( prefix, limit, search );
+    }
+
+
+    /**
+     * Return the users assigned to the role, searching only if no result at least as large as the limit is cached.
+     *
+     * @param roleName contains the name of the role.
+     * @param limit    maximum number of userIds returned.
+     * @param search   searches the directory on a cache miss.
+     * @return the userIds found.
+     * @throws SecurityException in the event of system error.
+     */
+    public List<String> assignedUsers( String roleName, int limit, Search search ) throws SecurityException
+    {
+        String key = key( roleName );
+        int max = max( limit );
+        Assigned entry = assigned.get( key );
+
+        if ( ( entry == null ) || !entry.answers( max ) )
+        {
+            List<String> userIds = search.search( roleName, limit );
+            entry = new Assigned( max, userIds != null ? new ArrayList<String>( userIds ) : null );
+            assigned.put( key, entry );
+        }
+
+        return entry.get( max );
+    }
+
+
+    /**
+     * Forget the user, e.g. after it was added, changed or deleted.
+     *
+     * @param userId contains the userId.
+     */
+    public void invalidateUser( String userId )
+    {
+        users.remove( key( userId ) );
+        userNames.invalidate( userId );
+    }
+
+
+    /**
+     * Forget the role and its assigned users, e.g. after it was added, changed or deleted or its assignments changed.
+     *
+     * @param roleName contains the name of the role.
+     */
+    public void invalidateRole( String roleName )
+    {
+        roles.remove( key( roleName ) );
+        assigned.remove( key( roleName ) );
+        roleNames.invalidate( roleName );
+    }
+
+
+    /**
+     * Forget everything, e.g. after bulk changes.
+     */
+    public void clear()
+    {
+        roles.clear();
+        users.clear();
+        assigned.clear();
+        roleNames.clear();
+        userNames.clear();
+    }
+
+
+    private static String key( String name )
+    {
+        // Fortress names match case insensitively:
+        return name == null ? "" : name.toLowerCase( Locale.ROOT );
+    }
+
+
+    private static int max( int limit )
+    {
+        return limit > 0 ? limit : Integer.MAX_VALUE;
+    }
+
+
+    /**
+     * The users assigned to a role, as returned for a limit.
+     */
+    private static final class Assigned
+    {
+        private final int limit;
+        private final List<String> userIds;
+
+        private Assigned( int limit, List<String> userIds )
+        {
+            this.limit = limit;
+            this.userIds = userIds;
+        }
+
+        private boolean answers( int max )
+        {
+            // Either everything was returned, or at least as much as asked for:
+            return ( userIds == null ) || ( userIds.size() < limit ) || ( max <= limit );
+        }
+
+        private List<String> get( int max )
+        {
+            if ( userIds == null )
+            {
+                return null;
+            }
+
+            return new ArrayList<String>( userIds.subList( 0, Math.min( max, userIds.size() ) ) );
+        }
+    }
+
+
+    /**
+     * Sorted, case insensitive set of names together with the prefixes for which it holds every name.  Guarded by
+     * its own monitor, every operation is an in-memory walk of a small range.
+     */
+    private static final class NameIndex
+    {
+        private final TreeSet<String> names = new TreeSet<String>( String.CASE_INSENSITIVE_ORDER );
+        // Complete prefixes and the instant they expire:
+        private final TreeMap<String, Long> complete = new TreeMap<String, Long>( String.CASE_INSENSITIVE_ORDER );
+        private final int maxSize;
+        private final long ttlMillis;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        // Incremented by every invalidation, a search that began before the latest one may have missed its change:
+        private long generation;
+
+        private NameIndex( int maxSize, long ttlMillis )
+        {
+            this.maxSize = maxSize;
+            this.ttlMillis = ttlMillis;
+        }
+
+        private List<String> search( String prefix, int limit, Search search ) throws SecurityException
+        {
+            if ( prefix == null )
+            {
+                return search.search( null, limit );
+            }
+
+            int max = max( limit );
+            long started;
+
+            synchronized ( this )
+            {
+                if ( isComplete( prefix ) )
+                {
+                    hits.increment();
+                    return collect( prefix, max );
+                }
+
+                started = generation;
+            }
+
+            misses.increment();
+            List<String> result = search.search( prefix, limit );
+
+            // Fewer than asked for means there are no others:
+            if ( ( result != null ) && ( result.size() < max ) )
+            {
+                synchronized ( this )
+                {
+                    // Unless names were invalidated while the search ran, its result may predate their change:
+                    if ( generation == started )
+                    {
+                        replace( prefix, result );
+                    }
+                }
+            }
+
+            return result;
+        }
+
+        private boolean isComplete( String prefix )
+        {
+            long now = System.currentTimeMillis();
+
+            // A prefix is complete if it, or any shorter prefix of it, was searched completely:
+            for ( int i = 0; i <= prefix.length(); i++ )
+            {
+                Long expiresAt = complete.get( prefix.substring( 0, i ) );
+
+                if ( ( expiresAt != null ) && ( expiresAt > now ) )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private List<String> collect( String prefix, int max )
+        {
+            List<String> result = new ArrayList<String>();
+
+            for ( String name : names.tailSet( prefix, true ) )
+            {
+                if ( ( result.size() >= max ) || !startsWith( name, prefix ) )
+                {
+                    break;
+                }
+
+                result.add( name );
+            }
+
+            return result;
+        }
+
+        private void replace( String prefix, List<String> result )
+        {
+            removeRange( prefix );
+
+            // Longer prefixes are covered by this one from now on:
+            for ( Iterator<String> it = complete.tailMap( prefix, true ).keySet().iterator(); it.hasNext(); )
+            {
+                if ( !startsWith( it.next(), prefix ) )
+                {
+                    break;
+                }
+
+                it.remove();
+            }
+
+            if ( names.size() + result.size() > maxSize )
+            {
+                // Rather than tracking the use of every prefix, start over:
+                names.clear();
+                complete.clear();
+            }
+
+            names.addAll( result );
+            complete.put( prefix, System.currentTimeMillis() + ttlMillis );
+        }
+
+        private void removeRange( String prefix )
+        {
+            for ( Iterator<String> it = names.tailSet( prefix, true ).iterator(); it.hasNext(); )
+            {
+                if ( !startsWith( it.next(), prefix ) )
+                {
+                    break;
+                }
+
+                it.remove();
+            }
+        }
+
+        private synchronized void invalidate( String name )
+        {
+            if ( name == null )
+            {
+                return;
+            }
+
+            generation++;
+            names.remove( name );
+
+            // Every complete prefix of the name may now be missing it, or still list it:
+            for ( int i = 0; i <= name.length(); i++ )
+            {
+                complete.remove( name.substring( 0, i ) );
+            }
+        }
+
+        private synchronized void clear()
+        {
+            generation++;
+            names.clear();
+            complete.clear();
+        }
+
+        private static boolean startsWith( String name, String prefix )
+        {
+            return name.regionMatches( true, 0, prefix, 0, prefix.length() );
+        }
+    }
+
+
+    /**
+     * @return number of lookups and searches answered from memory.
+     */
+    public long getHits()
+    {
+        return roles.getHits() + users.getHits() + assigned.getHits() + roleNames.hits.sum() + userNames.hits.sum();
+    }
+
+
+    /**
+     * @return number of lookups and searches that went to the directory.
+     */
+    public long getMisses()
+    {
+        return roles.getMisses() + users.getMisses() + assigned.getMisses() + roleNames.misses.sum() + userNames.misses.sum();
+    }
+}
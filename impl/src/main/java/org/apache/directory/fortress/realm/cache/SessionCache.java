@@ -0,0 +1,175 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.realm.GlobalIds;
+import org.apache.directory.fortress.realm.SessionCodec;
+
+/**
+ * Remembers sessions that were recently decoded from the String returned by
+ * {@link org.apache.directory.fortress.realm.TcPrincipal#toString()}.  Web applications typically deserialize the
+ * same principal on every request for the whole lifetime of a login, so repeated calls are answered from here.
+ * <p>
+ * Entries are keyed by the SHA-256 digest of the encoded String, which is collision resistant so one user's String can
+ * never resolve to another user's session.  Every caller receives its own deep copy of the cached session and cannot
+ * change what other callers see.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SessionCache
+{
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static volatile SessionCache instance;
+    private final StripedLruCache<ByteBuffer, Session> cache;
+
+
+    /**
+     * Create a new, empty cache.
+     *
+     * @param maxSize   maximum number of sessions held.
+     * @param ttlMillis number of milliseconds a decoded session is kept.
+     */
+    public SessionCache( int maxSize, long ttlMillis )
+    {
+        this.cache = new StripedLruCache<ByteBuffer, Session>( maxSize, ttlMillis );
+    }
+
+
+    /**
+     * Return the cache shared by all policy managers in this JVM, sized from the {@link GlobalIds#SESSION_CACHE_SIZE}
+     * and {@link GlobalIds#SESSION_CACHE_TTL} properties.
+     *
+     * @return the shared cache, or null if disabled by a size of zero.
+     */
+    public static SessionCache getInstance()
+    {
+        SessionCache current = instance;
+
+        if ( current == null )
+        {
+            synchronized ( SessionCache.class )
+            {
+                current = instance;
+
+                if ( current == null )
+                {
+                    int size = Config.getInstance().getInt( GlobalIds.SESSION_CACHE_SIZE, GlobalIds.SESSION_CACHE_SIZE_DEFAULT );
+                    int ttl = Config.getInstance().getInt( GlobalIds.SESSION_CACHE_TTL, GlobalIds.SESSION_CACHE_TTL_DEFAULT );
+
+                    // A disabled cache is represented by an instance with no backing store so the lookup happens only once:
+                    current = size > 0 ? new SessionCache( size, ttl * 1000L ) : new SessionCache();
+                    instance = current;
+                }
+            }
+        }
+
+        return current.cache == null ? null : current;
+    }
+
+
+    private SessionCache()
+    {
+        this.cache = null;
+    }
+
+
+    /**
+     * Return the session encoded in the String, decoding it with the codec only if it is not cached.
+     *
+     * @param str   contains the encoded session.
+     * @param codec used to decode the session on a cache miss.
+     * @return a private copy of the session.
+     * @throws SecurityException if the String cannot be decoded.
+     */
+    public Session decode( String str, SessionCodec codec ) throws SecurityException
+    {
+        ByteBuffer key = digest( str );
+        Session session = cache.get( key );
+
+        if ( session == null )
+        {
+            session = codec.decode( str );
+            cache.put( key, session );
+        }
+
+        return SessionCopier.copy( session );
+    }
+
+
+    /**
+     * @return number of calls answered from the cache.
+     */
+    public long getHits()
+    {
+        return cache.getHits();
+    }
+
+
+    /**
+     * @return number of calls that had to decode.
+     */
+    public long getMisses()
+    {
+        return cache.getMisses();
+    }
+
+
+    /**
+     * @return number of sessions currently held.
+     */
+    public int size()
+    {
+        return cache.size();
+    }
+
+
+    /**
+     * Remove all cached sessions.
+     */
+    public void clear()
+    {
+        cache.clear();
+    }
+
+
+    private static ByteBuffer digest( String str )
+    {
+        try
+        {
+            // This encoding induces a bijection between byte[] and String (unlike UTF-8)
+            return ByteBuffer.wrap( MessageDigest.getInstance( DIGEST_ALGORITHM ).digest( str.getBytes( StandardCharsets.ISO_8859_1 ) ) );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            // SHA-256 is required on every Java platform.
+            throw new IllegalStateException( SessionCache.class.getName() + " digest caught NoSuchAlgorithmException=" + e, e );
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.directory.fortress.core.model.Address;
+import org.apache.directory.fortress.core.model.Constraint;
+import org.apache.directory.fortress.core.model.Props;
+import org.apache.directory.fortress.core.model.RoleConstraint;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserAdminRole;
+import org.apache.directory.fortress.core.model.UserRole;
+import org.apache.directory.fortress.core.model.Warning;
+
+/**
+ * Makes deep copies of Fortress sessions so that a cached session can be handed to many callers without any of them
+ * being able to change what the others see.  The user, its roles, admin roles, constraints, properties, address and
+ * the session warnings are all copied.  Group sessions share the group, which the realm never changes.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class SessionCopier
+{
+    // disallow construction
+    private SessionCopier()
+    {
+    }
+
+
+    /**
+     * Copy a session.
+     *
+     * @param src contains the session to copy.
+     * @return a new session that shares no mutable state with the source.
+     */
+    static Session copy( Session src )
+    {
+        Session session = new Session( ( User ) null, src.getSessionId() );
+
+        // Carries the scalar fields, incl. last access and timeout, but shares user and warnings:
+        session.copy( src );
+        session.setUser( copy( src.getUser() ) );
+
+        if ( src.getWarnings() != null )
+        {
+            List<Warning> warnings = new ArrayList<Warning>( src.getWarnings().size() );
+
+            for ( Warning warning : src.getWarnings() )
+            {
+                warnings.add( new Warning( warning.getId(), warning.getMsg(), warning.getType(), warning.getName() ) );
+            }
+
+            session.setWarnings( warnings );
+        }
+
+        return session;
+    }
+
+
+    static User copy( User src )
+    {
+        if ( src == null )
+        {
+            return null;
+        }
+
+        User user = new User();
+        user.setUserId( src.getUserId() );
+        user.setPassword( src.getPassword() );
+        user.setInternalId( src.getInternalId() );
+        user.setPwPolicy( src.getPwPolicy() );
+        user.setCn( src.getCn() );
+        user.setSn( src.getSn() );
+        user.setDn( src.getDn() );
+        user.setOu( src.getOu() );
+        user.setDisplayName( src.getDisplayName() );
+        user.setDescription( src.getDescription() );
+        user.setName( src.getName() );
+        user.setEmployeeType( src.getEmployeeType() );
+        user.setTitle( src.getTitle() );
+        copyConstraint( src, user );
+        user.setReset( src.isReset() );
+        user.setLocked( src.isLocked() );
+        user.setSystem( src.isSystem() );
+        user.setUidNumber( src.getUidNumber() );
+        user.setGidNumber( src.getGidNumber() );
+        user.setHomeDirectory( src.getHomeDirectory() );
+        user.setLoginShell( src.getLoginShell() );
+        user.setGecos( src.getGecos() );
+        user.setPhones( copy( src.getPhones() ) );
+        user.setMobiles( copy( src.getMobiles() ) );
+        user.setEmails( copy( src.getEmails() ) );
+        user.setJpegPhoto( src.getJpegPhoto() == null ? null : src.getJpegPhoto().clone() );
+
+        if ( src.getProps() != null )
+        {
+            Props props = new Props();
+
+            for ( Props.Entry srcEntry : src.getProps().getEntry() )
+            {
+                Props.Entry entry = new Props.Entry();
+                entry.setKey( srcEntry.getKey() );
+                entry.setValue( srcEntry.getValue() );
+                props.getEntry().add( entry );
+            }
+
+            user.setProps( props );
+        }
+
+        if ( src.getAddress() != null )
+        {
+            Address srcAddress = src.getAddress();
+            Address address = new Address();
+            address.setAddresses( copy( srcAddress.getAddresses() ) );
+            address.setCity( srcAddress.getCity() );
+            address.setState( srcAddress.getState() );
+            address.setCountry( srcAddress.getCountry() );
+            address.setPostalCode( srcAddress.getPostalCode() );
+            address.setPostOfficeBox( srcAddress.getPostOfficeBox() );
+            address.setBuilding( srcAddress.getBuilding() );
+            address.setDepartmentNumber( srcAddress.getDepartmentNumber() );
+            address.setRoomNumber( srcAddress.getRoomNumber() );
+            user.setAddress( address );
+        }
+
+        List<UserRole> roles = new ArrayList<UserRole>( src.getRoles().size() );
+
+        for ( UserRole srcRole : src.getRoles() )
+        {
+            UserRole role = new UserRole();
+            copyRole( srcRole, role );
+            roles.add( role );
+        }
+
+        user.setRoles( roles );
+
+        List<UserAdminRole> adminRoles = new ArrayList<UserAdminRole>( src.getAdminRoles().size() );
+
+        for ( UserAdminRole srcRole : src.getAdminRoles() )
+        {
+            UserAdminRole role = new UserAdminRole();
+            copyRole( srcRole, role );
+            role.setOsPSet( copy( srcRole.getOsPSet() ) );
+            role.setOsUSet( copy( srcRole.getOsUSet() ) );
+            role.setBeginRange( srcRole.getBeginRange() );
+            role.setEndRange( srcRole.getEndRange() );
+            role.setBeginInclusive( srcRole.isBeginInclusive() );
+            role.setEndInclusive( srcRole.isEndInclusive() );
+            adminRoles.add( role );
+        }
+
+        user.setAdminRoles( adminRoles );
+
+        return user;
+    }
+
+
+    private static void copyRole( UserRole src, UserRole role )
+    {
+        role.setUserId( src.getUserId() );
+        role.setName( src.getName() );
+        role.setGroupRole( src.isGroupRole() );
+        copyConstraint( src, role );
+        role.setParents( copy( src.getParents() ) );
+
+        List<RoleConstraint> constraints = new ArrayList<RoleConstraint>( src.getRoleConstraints().size() );
+
+        for ( RoleConstraint srcConstraint : src.getRoleConstraints() )
+        {
+            RoleConstraint constraint = new RoleConstraint();
+            constraint.setId( srcConstraint.getId() );
+            constraint.setType( srcConstraint.getType() );
+            constraint.setValue( srcConstraint.getValue() );
+            constraint.setKey( srcConstraint.getKey() );
+            constraint.setTypeName( srcConstraint.getTypeName() );
+            constraints.add( constraint );
+        }
+
+        role.setRoleConstraints( constraints );
+    }
+
+
+    private static void copyConstraint( Constraint src, Constraint constraint )
+    {
+        if ( src.getTimeout() != null )
+        {
+            constraint.setTimeout( src.getTimeout() );
+        }
+
+        constraint.setBeginTime( src.getBeginTime() );
+        constraint.setEndTime( src.getEndTime() );
+        constraint.setBeginDate( src.getBeginDate() );
+        constraint.setEndDate( src.getEndDate() );
+        constraint.setBeginLockDate( src.getBeginLockDate() );
+        constraint.setEndLockDate( src.getEndLockDate() );
+        constraint.setDayMask( src.getDayMask() );
+    }
+
+
+    private static List<String> copy( List<String> src )
+    {
+        return src == null ? null : new ArrayList<String>( src );
+    }
+
+
+    private static Set<String> copy( Set<String> src )
+    {
+        if ( src == null )
+        {
+            return null;
+        }
+
+        Set<String> set = new TreeSet<String>( String.CASE_INSENSITIVE_ORDER );
+        set.addAll( src );
+
+        return set;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.realm.GlobalIds;
+
+/**
+ * Coalesces concurrent identical calls so that only one of them does the work.  The first thread to arrive for a key
+ * runs the call, every other thread that arrives for the same key while it is running waits for and shares its result.
+ * Once the call completes the key is forgotten, so nothing is cached beyond the lifetime of the call.
+ * <p>
+ * A failure is delivered to every waiting caller as its own {@link SecurityException} carrying the original error id,
+ * with the original failure as the cause.
+ * <p>
+ * This class is thread safe.
+ *
+ * @param <K> type of the key, must identify the call completely (e.g. userId and credential).
+ * @param <V> type of the result.
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SingleFlight<K, V>
+{
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<K, CompletableFuture<V>>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder joins = new LongAdder();
+
+
+    /**
+     * The work to be coalesced.
+     *
+     * @param <V> type of the result.
+     */
+    public interface Call<V>
+    {
+        /**
+         * Do the work.
+         *
+         * @return the result, may be null.
+         * @throws SecurityException in the event of failure.
+         */
+        V call() throws SecurityException;
+    }
+
+
+    /**
+     * Run the call, or wait for the identical call already in flight.
+     *
+     * @param key  identifies the call.
+     * @param call the work to run if no identical call is in flight.
+     * @return the result of the call.
+     * @throws SecurityException if the call failed.
+     */
+    public V execute( K key, Call<V> call ) throws SecurityException
+    {
+        CompletableFuture<V> mine = new CompletableFuture<V>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent( key, mine );
+
+        if ( existing != null )
+        {
+            joins.increment();
+            return await( existing );
+        }
+
+        calls.increment();
+        V result;
+
+        try
+        {
+            result = call.call();
+        }
+        catch ( SecurityException | RuntimeException | Error e )
+        {
+            inFlight.remove( key, mine );
+            mine.completeExceptionally( e );
+            throw e;
+        }
+
+        // Forget the key before completing, a caller arriving after the call must not be handed its finished result:
+        inFlight.remove( key, mine );
+        mine.complete( result );
+
+        return result;
+    }
+
+
+    /**
+     * @return number of calls that were actually run.
+     */
+    public long getCalls()
+    {
+        return calls.sum();
+    }
+
+
+    /**
+     * @return number of callers that shared the result of a call run by another thread.
+     */
+    public long getJoins()
+    {
+        return joins.sum();
+    }
+
+
+    private V await( CompletableFuture<V> future ) throws SecurityException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+            throw new SecurityException( GlobalIds.SESSION_INITIALIZATION_FAILED, "await interrupted", ie );
+        }
+        catch ( ExecutionException ee )
+        {
+            Throwable cause = ee.getCause();
+
+            if ( cause instanceof SecurityException )
+            {
+                SecurityException se = ( SecurityException ) cause;
+                throw new SecurityException( se.getErrorId(), se.getMessage(), se );
+            }
+            else if ( cause instanceof Error )
+            {
+                throw ( Error ) cause;
+            }
+
+            throw new IllegalStateException( cause.getMessage(), cause );
+        }
+    }
+}
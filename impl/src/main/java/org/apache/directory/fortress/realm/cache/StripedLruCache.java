@@ -0,0 +1,393 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.cache;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.directory.fortress.core.SecurityException;
+
+/**
+ * A bounded, expiring, least-recently-used cache that is split into independently locked stripes.  Each key is hashed
+ * onto one stripe so threads working on different keys rarely contend for the same lock, which lets the cache scale
+ * across cores.  Each stripe evicts its own least recently used entry once it holds its share of the maximum size.
+ * <p>
+ * Values read through {@link #get(Object, Loader)} are revalidated by the {@link Refresher} shortly before they expire.
+ * <p>
+ * This class is thread safe.
+ *
+ * @param <K> type of the key.
+ * @param <V> type of the cached value.
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class StripedLruCache<K, V>
+{
+    private final Stripe<K, V>[] stripes;
+    private final int mask;
+    private final long ttlMillis;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+
+    /**
+     * Callback used to revalidate an entry in the background.
+     *
+     * @param <K> type of the key.
+     * @param <V> type of the cached value.
+     */
+    public interface Loader<K, V>
+    {
+        /**
+         * Compute the current value for the key.
+         *
+         * @param key the key of the entry being refreshed.
+         * @return the value, or null if the entry is to be dropped.
+         * @throws SecurityException if the value can no longer be loaded, the entry is then dropped.
+         */
+        V load( K key ) throws SecurityException;
+    }
+
+
+    /**
+     * Create a cache sized for the number of processors on this machine.
+     *
+     * @param maxSize   maximum number of entries held across all stripes.
+     * @param ttlMillis number of milliseconds an entry lives after it was put.
+     */
+    public StripedLruCache( int maxSize, long ttlMillis )
+    {
+        this( maxSize, ttlMillis, Runtime.getRuntime().availableProcessors() * 4 );
+    }
+
+
+    /**
+     * Create a cache with an explicit stripe count.
+     *
+     * @param maxSize     maximum number of entries held across all stripes.
+     * @param ttlMillis   number of milliseconds an entry lives after it was put.
+     * @param concurrency expected number of concurrently updating threads, rounded up to a power of two.
+     */
+    @SuppressWarnings("unchecked")
+    public StripedLruCache( int maxSize, long ttlMillis, int concurrency )
+    {
+        if ( maxSize <= 0 )
+        {
+            throw new IllegalArgumentException( StripedLruCache.class.getName() + " maxSize must be positive" );
+        }
+
+        // Never create more stripes than entries:
+        int count = 1;
+
+        while ( ( count < concurrency ) && ( count < maxSize ) )
+        {
+            count <<= 1;
+        }
+
+        int perStripe = ( maxSize + count - 1 ) / count;
+        stripes = ( Stripe<K, V>[] ) new Stripe<?, ?>[count];
+
+        for ( int i = 0; i < count; i++ )
+        {
+            stripes[i] = new Stripe<K, V>( perStripe );
+        }
+
+        this.mask = count - 1;
+        this.ttlMillis = ttlMillis;
+    }
+
+
+    /**
+     * Return the value cached for a key.
+     *
+     * @param key the key to look up.
+     * @return the cached value or null if absent or expired.
+     */
+    public V get( K key )
+    {
+        Stripe<K, V> stripe = stripeFor( key );
+        Entry<V> entry;
+
+        synchronized ( stripe )
+        {
+            entry = stripe.get( key );
+
+            if ( ( entry != null ) && ( entry.expiresAt <= System.currentTimeMillis() ) )
+            {
+                stripe.remove( key );
+                entry = null;
+            }
+        }
+
+        if ( entry == null )
+        {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry.value;
+    }
+
+
+    /**
+     * Return the value cached for a key.  If the entry is close to expiring it is reloaded in the background, callers
+     * keep getting the current value until the reloaded one replaces it.
+     *
+     * @param key    the key to look up.
+     * @param loader revalidates the entry, on a background thread.
+     * @return the cached value or null if absent or expired.
+     */
+    public V get( K key, Loader<K, V> loader )
+    {
+        Stripe<K, V> stripe = stripeFor( key );
+        Entry<V> entry;
+
+        synchronized ( stripe )
+        {
+            entry = stripe.get( key );
+
+            if ( ( entry != null ) && ( entry.expiresAt <= System.currentTimeMillis() ) )
+            {
+                stripe.remove( key );
+                entry = null;
+            }
+        }
+
+        if ( entry == null )
+        {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+
+        if ( entry.refreshAt <= System.currentTimeMillis() )
+        {
+            Refresher refresher = Refresher.getInstance();
+
+            if ( refresher != null )
+            {
+                final Entry<V> stale = entry;
+                refresher.submit( new AbstractMap.SimpleImmutableEntry<Object, K>( this, key ), () -> refresh( key, stale, loader ) );
+            }
+        }
+
+        return entry.value;
+    }
+
+
+    private void refresh( K key, Entry<V> stale, Loader<K, V> loader ) throws SecurityException
+    {
+        V value = null;
+
+        try
+        {
+            value = loader.load( key );
+        }
+        finally
+        {
+            Stripe<K, V> stripe = stripeFor( key );
+
+            synchronized ( stripe )
+            {
+                // Leave alone an entry that was replaced or removed in the meantime:
+                if ( stripe.get( key ) == stale )
+                {
+                    if ( value != null )
+                    {
+                        stripe.put( key, newEntry( value, ttlMillis ) );
+                    }
+                    else
+                    {
+                        stripe.remove( key );
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Add or replace the value cached for a key.  The least recently used entry of the stripe is evicted if the stripe
+     * is full.
+     *
+     * @param key   the key to store the value under.
+     * @param value the value, must not be null.
+     */
+    public void put( K key, V value )
+    {
+        put( key, value, ttlMillis );
+    }
+
+
+    /**
+     * Add or replace the value cached for a key, overriding the cache wide time-to-live.
+     *
+     * @param key       the key to store the value under.
+     * @param value     the value, must not be null.
+     * @param ttlMillis number of milliseconds this entry lives.
+     */
+    public void put( K key, V value, long ttlMillis )
+    {
+        Entry<V> entry = newEntry( value, ttlMillis );
+        Stripe<K, V> stripe = stripeFor( key );
+
+        synchronized ( stripe )
+        {
+            stripe.put( key, entry );
+        }
+    }
+
+
+    /**
+     * Remove the value cached for a key.
+     *
+     * @param key the key to remove.
+     * @return the value that was removed, or null.
+     */
+    public V remove( K key )
+    {
+        Stripe<K, V> stripe = stripeFor( key );
+        Entry<V> entry;
+
+        synchronized ( stripe )
+        {
+            entry = stripe.remove( key );
+        }
+
+        return entry == null ? null : entry.value;
+    }
+
+
+    /**
+     * Remove all entries.
+     */
+    public void clear()
+    {
+        for ( Stripe<K, V> stripe : stripes )
+        {
+            synchronized ( stripe )
+            {
+                stripe.clear();
+            }
+        }
+    }
+
+
+    /**
+     * Return the number of entries currently held, including ones that have expired but not yet been purged.
+     *
+     * @return entry count.
+     */
+    public int size()
+    {
+        int size = 0;
+
+        for ( Stripe<K, V> stripe : stripes )
+        {
+            synchronized ( stripe )
+            {
+                size += stripe.size();
+            }
+        }
+
+        return size;
+    }
+
+
+    /**
+     * @return number of lookups that returned a value.
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+
+    /**
+     * @return number of lookups that found nothing usable.
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+
+    private static <V> Entry<V> newEntry( V value, long ttlMillis )
+    {
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        Refresher refresher = Refresher.getInstance();
+
+        return new Entry<V>( value, expiresAt, refresher != null ? refresher.refreshAt( expiresAt, ttlMillis ) : Long.MAX_VALUE );
+    }
+
+
+    private Stripe<K, V> stripeFor( Object key )
+    {
+        int h = key.hashCode();
+
+        // Spread the high bits so keys with similar hashcodes land on different stripes:
+        h ^= ( h >>> 16 );
+
+        return stripes[h & mask];
+    }
+
+
+    /**
+     * Value holder that remembers when it expires, and from when it may be refreshed.
+     */
+    private static final class Entry<V>
+    {
+        private final V value;
+        private final long expiresAt;
+        private final long refreshAt;
+
+        private Entry( V value, long expiresAt, long refreshAt )
+        {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+        }
+    }
+
+
+    /**
+     * One access ordered segment of the cache.  Callers must hold the stripe's monitor.
+     */
+    private static final class Stripe<K, V> extends LinkedHashMap<K, Entry<V>>
+    {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        private Stripe( int capacity )
+        {
+            super( 16, 0.75f, true );
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<K, Entry<V>> eldest )
+        {
+            return size() > capacity;
+        }
+    }
+}
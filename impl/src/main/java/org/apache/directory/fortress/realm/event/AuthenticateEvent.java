@@ -0,0 +1,87 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for every password login handled by {@link org.apache.directory.fortress.realm.tomcat.TcAccessMgrImpl}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Name( "org.apache.directory.fortress.realm.Authenticate" )
+@Label( "Realm Authenticate" )
+@Category( { Events.CATEGORY, "Realm" } )
+@Description( "Password login through the Fortress Tomcat realm" )
+@StackTrace( false )
+public class AuthenticateEvent extends Event
+{
+    /** Answered from the credential cache */
+    public static final String CACHED = "CACHED";
+    /** Verified by the directory */
+    public static final String SUCCESS = "SUCCESS";
+    /** Rejected from the failure cache without asking the directory */
+    public static final String REJECTED = "REJECTED";
+    /** Refused by the directory */
+    public static final String FAILED = "FAILED";
+
+    @Label( "User Id Hash" )
+    @Description( "Salted hash of the userId, stable for the life of the JVM" )
+    public String userIdHash;
+
+    @Label( "Context Id" )
+    public String contextId;
+
+    @Label( "Outcome" )
+    @Description( "CACHED, SUCCESS, REJECTED or FAILED" )
+    public String outcome;
+
+    @Label( "Error Id" )
+    @Description( "Fortress error id of a failed login, 0 otherwise" )
+    public int errorId;
+
+    @Label( "Role Count" )
+    @Description( "Number of roles authorized for the principal" )
+    public int roleCount;
+
+
+    /**
+     * Create and begin the event for a login, if a recording is running.
+     *
+     * @return the begun event, or null if nothing is recording.
+     */
+    public static AuthenticateEvent start()
+    {
+        if ( !Events.isRecording() )
+        {
+            return null;
+        }
+
+        AuthenticateEvent event = new AuthenticateEvent();
+        event.begin();
+
+        return event;
+    }
+}
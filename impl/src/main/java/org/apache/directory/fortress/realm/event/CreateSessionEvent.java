@@ -0,0 +1,82 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for every Fortress session created by {@link org.apache.directory.fortress.realm.J2eePolicyMgrImpl}, i.e. for
+ * every trip to the directory made on behalf of a login.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Name( "org.apache.directory.fortress.realm.CreateSession" )
+@Label( "Realm Create Session" )
+@Category( { Events.CATEGORY, "Realm" } )
+@Description( "Fortress session created against the directory" )
+@StackTrace( false )
+public class CreateSessionEvent extends Event
+{
+    @Label( "User Id Hash" )
+    @Description( "Salted hash of the userId, stable for the life of the JVM" )
+    public String userIdHash;
+
+    @Label( "Context Id" )
+    public String contextId;
+
+    @Label( "Trusted" )
+    @Description( "True if the session was created without checking a password" )
+    public boolean trusted;
+
+    @Label( "Success" )
+    public boolean success;
+
+    @Label( "Error Id" )
+    @Description( "Fortress error id of a failed attempt, 0 otherwise" )
+    public int errorId;
+
+    @Label( "Role Count" )
+    @Description( "Number of roles activated in the session" )
+    public int roleCount;
+
+
+    /**
+     * Create and begin the event for a session creation, if a recording is running.
+     *
+     * @return the begun event, or null if nothing is recording.
+     */
+    public static CreateSessionEvent start()
+    {
+        if ( !Events.isRecording() )
+        {
+            return null;
+        }
+
+        CreateSessionEvent event = new CreateSessionEvent();
+        event.begin();
+
+        return event;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.event;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import org.apache.directory.fortress.realm.RoleSnapshot;
+import org.apache.directory.fortress.realm.TcPrincipal;
+
+/**
+ * Helpers shared by the realm's events.  Events are only created while a recording is running, see
+ * {@link #isRecording()}, and their fields are only filled in once the event is known to be committed, so none of this
+ * work is done otherwise.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class Events
+{
+    /** Category all realm events are listed under */
+    static final String CATEGORY = "Apache Fortress";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final byte[] SALT = new byte[16];
+    private static volatile boolean recording;
+
+    static
+    {
+        new SecureRandom().nextBytes( SALT );
+
+        try
+        {
+            FlightRecorder.addListener( new FlightRecorderListener()
+            {
+                @Override
+                public void recorderInitialized( FlightRecorder recorder )
+                {
+                    update( recorder );
+                }
+
+                @Override
+                public void recordingStateChanged( Recording changed )
+                {
+                    update( FlightRecorder.getFlightRecorder() );
+                }
+            } );
+        }
+        catch ( java.lang.SecurityException se )
+        {
+            // Not allowed to watch the recorder, always create the events and let them decide:
+            recording = true;
+        }
+    }
+
+
+    private Events()
+    {
+    }
+
+
+    /**
+     * Determine if a flight recording is running.  An event that is not enabled is only discarded once it is
+     * committed, and the JIT does not reliably remove its allocation, so callers create events only while this is
+     * true, making them free otherwise.
+     *
+     * @return true if at least one recording is running.
+     */
+    public static boolean isRecording()
+    {
+        return recording;
+    }
+
+
+    private static void update( FlightRecorder recorder )
+    {
+        boolean running = false;
+
+        for ( Recording r : recorder.getRecordings() )
+        {
+            running |= r.getState() == RecordingState.RUNNING;
+        }
+
+        recording = running;
+    }
+
+
+    /**
+     * Return a pseudonym of a userId that is stable for the life of the JVM, so events of one user can be grouped
+     * without the recording revealing who the user is.
+     *
+     * @param userId contains the userId, may be null.
+     * @return 16 hex digits of a salted SHA-256 digest of the userId, or null.
+     */
+    public static String hash( String userId )
+    {
+        if ( userId == null )
+        {
+            return null;
+        }
+
+        try
+        {
+            MessageDigest md = MessageDigest.getInstance( "SHA-256" );
+            md.update( SALT );
+            byte[] digest = md.digest( userId.getBytes( StandardCharsets.UTF_8 ) );
+            char[] chars = new char[16];
+
+            for ( int i = 0; i < 8; i++ )
+            {
+                chars[i * 2] = HEX[( digest[i] >> 4 ) & 0xf];
+                chars[i * 2 + 1] = HEX[digest[i] & 0xf];
+            }
+
+            return new String( chars );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            // SHA-256 is required on every Java platform.
+            throw new IllegalStateException( Events.class.getName() + ".hash caught NoSuchAlgorithmException=" + e, e );
+        }
+    }
+
+
+    /**
+     * Return the number of roles authorized for a principal.
+     *
+     * @param principal the principal, may be null.
+     * @return number of roles in the principal's snapshot, 0 if there is none.
+     */
+    public static int roleCount( TcPrincipal principal )
+    {
+        HashMap<String, Object> context = principal != null ? principal.getContext() : null;
+        Object snapshot = context != null ? context.get( TcPrincipal.AUTHORIZED_ROLES ) : null;
+
+        return snapshot instanceof RoleSnapshot ? ( ( RoleSnapshot ) snapshot ).size() : 0;
+    }
+}
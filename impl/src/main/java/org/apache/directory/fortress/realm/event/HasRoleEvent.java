@@ -0,0 +1,86 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Emitted for role checks made by {@link org.apache.directory.fortress.realm.J2eePolicyMgrImpl}.  Role checks are
+ * frequent and normally answered from memory, so by default only those slower than 10 ms, e.g. because the snapshot of
+ * authorized roles was reloaded, are recorded.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Name( "org.apache.directory.fortress.realm.HasRole" )
+@Label( "Realm Role Check" )
+@Category( { Events.CATEGORY, "Realm" } )
+@Description( "Check of one or more roles against a principal" )
+@StackTrace( false )
+@Threshold( "10 ms" )
+public class HasRoleEvent extends Event
+{
+    @Label( "User Id Hash" )
+    @Description( "Salted hash of the userId, stable for the life of the JVM" )
+    public String userIdHash;
+
+    @Label( "Context Id" )
+    public String contextId;
+
+    @Label( "Method" )
+    @Description( "hasRole, hasAnyRole or hasRoles" )
+    public String method;
+
+    @Label( "Role Count" )
+    @Description( "Number of roles checked" )
+    public int roleCount;
+
+    @Label( "Granted Count" )
+    @Description( "Number of the checked roles that are authorized, at most 1 for hasAnyRole" )
+    public int grantedCount;
+
+    @Label( "Success" )
+    @Description( "False if the check failed with an error" )
+    public boolean success;
+
+
+    /**
+     * Create and begin the event for a role check, if a recording is running.
+     *
+     * @return the begun event, or null if nothing is recording.
+     */
+    public static HasRoleEvent start()
+    {
+        if ( !Events.isRecording() )
+        {
+            return null;
+        }
+
+        HasRoleEvent event = new HasRoleEvent();
+        event.begin();
+
+        return event;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted when a Fortress session is serialized by {@link org.apache.directory.fortress.realm.TcPrincipal#toString()}
+ * or deserialized by {@link org.apache.directory.fortress.realm.J2eePolicyMgrImpl#deserialize(String)}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Name( "org.apache.directory.fortress.realm.SessionCodec" )
+@Label( "Realm Session Codec" )
+@Category( { Events.CATEGORY, "Realm" } )
+@Description( "Serialization or deserialization of a Fortress session" )
+@StackTrace( false )
+public class SessionCodecEvent extends Event
+{
+    /** Session to String */
+    public static final String ENCODE = "ENCODE";
+    /** String to session */
+    public static final String DECODE = "DECODE";
+
+    @Label( "Operation" )
+    @Description( "ENCODE or DECODE" )
+    public String operation;
+
+    @Label( "Codec" )
+    public String codec;
+
+    @Label( "User Id Hash" )
+    @Description( "Salted hash of the userId, stable for the life of the JVM" )
+    public String userIdHash;
+
+    @Label( "Serialized Size" )
+    @Description( "Length of the serialized form, one byte per character" )
+    @DataAmount
+    public long size;
+
+    @Label( "Success" )
+    public boolean success;
+
+
+    /**
+     * Create and begin the event for a serialization or deserialization, if a recording is running.
+     *
+     * @return the begun event, or null if nothing is recording.
+     */
+    public static SessionCodecEvent start()
+    {
+        if ( !Events.isRecording() )
+        {
+            return null;
+        }
+
+        SessionCodecEvent event = new SessionCodecEvent();
+        event.begin();
+
+        return event;
+    }
+}
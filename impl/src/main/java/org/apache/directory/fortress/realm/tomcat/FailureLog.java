@@ -0,0 +1,158 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.tomcat;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+
+/**
+ * Rate limits the logging of failed logins.  Within each interval the first failure of a user is logged at WARN,
+ * without a stack trace, and further failures are only counted.  A single summary line for the counted failures is
+ * logged with the first failure of a later interval, so a burst of attempts produces a bounded amount of log output.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class FailureLog
+{
+    /** Upper bound on the users remembered per interval, failures of further users are only counted */
+    private static final int MAX_USERS = 1000;
+    private final Logger log;
+    private final String name;
+    private final long intervalMillis;
+    private volatile Window window;
+
+
+    /**
+     * @param log            logger to write to.
+     * @param name           prefix of every message, e.g. the calling class name.
+     * @param intervalMillis length of the interval, zero or less logs every failure.
+     */
+    FailureLog( Logger log, String name, long intervalMillis )
+    {
+        this.log = log;
+        this.name = name;
+        this.intervalMillis = intervalMillis;
+        this.window = new Window( System.currentTimeMillis() + intervalMillis );
+    }
+
+
+    /**
+     * Record a failed login.
+     *
+     * @param userId  contains the userId presented by the client.
+     * @param errorId Fortress error id of the failure.
+     * @param e       the failure, or null if the login was rejected locally.
+     */
+    void failed( String userId, int errorId, Exception e )
+    {
+        if ( intervalMillis <= 0 )
+        {
+            log.warn( "{}.authenticate userId <{}> failed, errorId <{}>", name, userId, errorId, e );
+            return;
+        }
+
+        Window current = current();
+
+        if ( e == null )
+        {
+            current.local.increment();
+        }
+
+        if ( current.isFirst( userId ) )
+        {
+            log.warn( "{}.authenticate userId <{}> failed, errorId <{}>, {}", name, userId, errorId,
+                e == null ? "rejected locally" : e.getMessage() );
+
+            if ( e != null )
+            {
+                log.debug( "{}.authenticate userId <{}> caught", name, userId, e );
+            }
+        }
+        else
+        {
+            current.suppressed.increment();
+        }
+    }
+
+
+    private Window current()
+    {
+        Window current = window;
+        long now = System.currentTimeMillis();
+
+        if ( now < current.endsAt )
+        {
+            return current;
+        }
+
+        synchronized ( this )
+        {
+            current = window;
+
+            if ( now >= current.endsAt )
+            {
+                report( current );
+                current = new Window( now + intervalMillis );
+                window = current;
+            }
+
+            return current;
+        }
+    }
+
+
+    private void report( Window expired )
+    {
+        long suppressed = expired.suppressed.sum();
+
+        if ( suppressed > 0 )
+        {
+            log.warn( "{}.authenticate {} further failed logins of {} users not logged in the last {} seconds, {} rejected locally",
+                name, suppressed, expired.users.size(), intervalMillis / 1000, expired.local.sum() );
+        }
+    }
+
+
+    /**
+     * Failures of one interval.
+     */
+    private static final class Window
+    {
+        private final long endsAt;
+        private final Set<String> users = ConcurrentHashMap.newKeySet();
+        private final LongAdder suppressed = new LongAdder();
+        private final LongAdder local = new LongAdder();
+
+        private Window( long endsAt )
+        {
+            this.endsAt = endsAt;
+        }
+
+        private boolean isFirst( String userId )
+        {
+            return users.size() < MAX_USERS && users.add( String.valueOf( userId ) );
+        }
+    }
+}
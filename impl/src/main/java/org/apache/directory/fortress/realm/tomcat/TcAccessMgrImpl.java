@@ -22,15 +22,33 @@ package org.apache.directory.fortress.realm.tomcat;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.realm.AsyncExecutor;
+import org.apache.directory.fortress.realm.GlobalIds;
 import org.apache.directory.fortress.realm.J2eePolicyMgr;
 import org.apache.directory.fortress.realm.J2eePolicyMgrFactory;
 import org.apache.directory.fortress.realm.TcPrincipal;
+import org.apache.directory.fortress.realm.cache.CredentialCache;
+import org.apache.directory.fortress.realm.cache.FailureCache;
+import org.apache.directory.fortress.realm.cache.SessionCache;
+import org.apache.directory.fortress.realm.cache.SingleFlight;
+import org.apache.directory.fortress.realm.cache.StripedLruCache;
+import org.apache.directory.fortress.realm.event.AuthenticateEvent;
+import org.apache.directory.fortress.realm.event.Events;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
+import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This class runs on a URL classloader and provides Fortress runtime security services for the Tomcat container.
@@ -48,6 +66,18 @@ public class TcAccessMgrImpl implements TcAccessMgr
     // If this field gets set, use for all subsequent calls to authenticate:
     private List<String> defaultRoles;
     private String contextId;
+    // Only set when 'realm.credential.cache.enabled' is true:
+    private CredentialCache credentialCache;
+    // Only set when 'realm.failure.cache.ttl' is positive:
+    private FailureCache failureCache;
+    private FailureLog failureLog;
+    // Only set when 'realm.principal.cache.size' is positive:
+    private StripedLruCache<String, TcPrincipal> principalCache;
+    private final SingleFlight<String, TcPrincipal> logins = new SingleFlight<String, TcPrincipal>();
+    private final SingleFlight<String, TcPrincipal> trustedLogins = new SingleFlight<String, TcPrincipal>();
+    private final byte[] flightSalt = new byte[16];
+    // Set by setContextId when the proxy has published metrics for the tenant:
+    private volatile RealmMetrics metrics;
 
     /**
      * Constructor for the TcAccessMgrImpl object
@@ -57,6 +87,10 @@ public class TcAccessMgrImpl implements TcAccessMgr
         try
         {
             j2eeMgr = J2eePolicyMgrFactory.createInstance( );
+            initCredentialCache();
+            initFailureCache();
+            initPrincipalCache();
+            new SecureRandom().nextBytes( flightSalt );
             LOG.info( "{} constructor <{}>", CLS_NM, incrementCtr() );
         }
         catch ( SecurityException se )
@@ -73,6 +107,51 @@ public class TcAccessMgrImpl implements TcAccessMgr
         return count++;
     }
 
+    private void initCredentialCache()
+    {
+        Config cfg = Config.getInstance();
+
+        if ( cfg.getBoolean( GlobalIds.CREDENTIAL_CACHE_ENABLED, false ) )
+        {
+            int ttl = cfg.getInt( GlobalIds.CREDENTIAL_CACHE_TTL, GlobalIds.CREDENTIAL_CACHE_TTL_DEFAULT );
+            int size = cfg.getInt( GlobalIds.CREDENTIAL_CACHE_SIZE, GlobalIds.CREDENTIAL_CACHE_SIZE_DEFAULT );
+            int iterations = cfg.getInt( GlobalIds.CREDENTIAL_CACHE_ITERATIONS, GlobalIds.CREDENTIAL_CACHE_ITERATIONS_DEFAULT );
+            credentialCache = new CredentialCache( size, ttl * 1000L, iterations );
+            LOG.info( "{} credential cache enabled, ttl [{}], size [{}]", CLS_NM, ttl, size );
+        }
+    }
+
+
+    private void initFailureCache()
+    {
+        Config cfg = Config.getInstance();
+        int ttl = cfg.getInt( GlobalIds.FAILURE_CACHE_TTL, GlobalIds.FAILURE_CACHE_TTL_DEFAULT );
+        int interval = cfg.getInt( GlobalIds.FAILURE_LOG_INTERVAL, GlobalIds.FAILURE_LOG_INTERVAL_DEFAULT );
+        failureLog = new FailureLog( LOG, CLS_NM, interval * 1000L );
+
+        if ( ttl > 0 )
+        {
+            int size = cfg.getInt( GlobalIds.FAILURE_CACHE_SIZE, GlobalIds.FAILURE_CACHE_SIZE_DEFAULT );
+            int lockoutTtl = cfg.getInt( GlobalIds.FAILURE_LOCKOUT_TTL, GlobalIds.FAILURE_LOCKOUT_TTL_DEFAULT );
+            failureCache = new FailureCache( size, ttl * 1000L, lockoutTtl * 1000L );
+            LOG.info( "{} failure cache enabled, ttl [{}], lockout ttl [{}], size [{}]", CLS_NM, ttl, lockoutTtl, size );
+        }
+    }
+
+
+    private void initPrincipalCache()
+    {
+        Config cfg = Config.getInstance();
+        int size = cfg.getInt( GlobalIds.PRINCIPAL_CACHE_SIZE, GlobalIds.PRINCIPAL_CACHE_SIZE_DEFAULT );
+
+        if ( size > 0 )
+        {
+            int ttl = cfg.getInt( GlobalIds.PRINCIPAL_CACHE_TTL, GlobalIds.PRINCIPAL_CACHE_TTL_DEFAULT );
+            principalCache = new StripedLruCache<String, TcPrincipal>( size, ttl * 1000L );
+            LOG.info( "{} principal cache enabled, ttl [{}], size [{}]", CLS_NM, ttl, size );
+        }
+    }
+
 
     /**
      * {@inheritDoc}
@@ -80,29 +159,241 @@ public class TcAccessMgrImpl implements TcAccessMgr
     @Override
     public Principal authenticate( String userId, String password )
     {
+        AuthenticateEvent event = AuthenticateEvent.start();
         TcPrincipal principal = null;
+        // Never cache anonymous binds:
+        boolean isCacheable = ( credentialCache != null ) && StringUtils.isNotEmpty( userId ) && StringUtils.isNotEmpty( password );
+
+        if ( isCacheable )
+        {
+            principal = credentialCache.get( userId, password );
+
+            if ( principal != null )
+            {
+                LOG.debug( "{}.authenticate userId [{}], cached credential, successful", CLS_NM, userId );
+                commit( event, userId, principal, AuthenticateEvent.CACHED, 0 );
+                return principal;
+            }
+        }
+
+        String key = userId != null ? flightKey( userId, password ) : null;
+
+        if ( ( key != null ) && ( failureCache != null ) )
+        {
+            // The same attempt failed moments ago, or the account is locked.  Don't bother the directory:
+            Integer errorId = failureCache.get( userId, key );
+
+            if ( errorId != null )
+            {
+                failureLog.failed( userId, errorId, null );
+                commit( event, userId, null, AuthenticateEvent.REJECTED, errorId );
+                return null;
+            }
+        }
+
         try
         {
-            // If a 'default.roles' property set in config, user them
-            if ( CollectionUtils.isNotEmpty( defaultRoles ) )
+            if ( key != null )
             {
-                principal = j2eeMgr.createSession( userId, password, defaultRoles );
-                LOG.debug( "{}.authenticate userId [{}], with default roles[{}], successful", CLS_NM, userId, defaultRoles );
+                // Concurrent logins with identical credentials share one trip to the directory:
+                principal = logins.execute( key, () -> createSession( userId, password, isCacheable ) );
             }
             else
             {
-                principal = j2eeMgr.createSession(userId, password);
-                LOG.debug( "{}.authenticate userId [{}], successful", CLS_NM, userId );
+                principal = createSession( userId, password, isCacheable );
             }
+
+            commit( event, userId, principal, AuthenticateEvent.SUCCESS, 0 );
         }
         catch (SecurityException se)
         {
-            LOG.warn( "{}.authenticate userId <{}> caught SecurityException=", CLS_NM, userId, se );
+            if ( ( key != null ) && ( failureCache != null ) )
+            {
+                failureCache.put( userId, key, se.getErrorId() );
+            }
+
+            if ( FailureCache.isLockout( se.getErrorId() ) )
+            {
+                // A locked account must not keep logging in from the credential or principal cache:
+                forget( userId );
+            }
+
+            failureLog.failed( userId, se.getErrorId(), se );
+            commit( event, userId, null, AuthenticateEvent.FAILED, se.getErrorId() );
         }
         
         return principal;
     }
 
+    private void commit( AuthenticateEvent event, String userId, TcPrincipal principal, String outcome, int errorId )
+    {
+        // Nothing is computed unless the event is enabled and over its threshold:
+        if ( ( event != null ) && event.shouldCommit() )
+        {
+            event.userIdHash = Events.hash( userId );
+            event.contextId = contextId;
+            event.outcome = outcome;
+            event.errorId = errorId;
+            event.roleCount = Events.roleCount( principal );
+            event.commit();
+        }
+    }
+
+    private TcPrincipal createSession( String userId, String password, boolean isCacheable ) throws SecurityException
+    {
+        RealmMetrics.Operation op = metrics != null ? metrics.createSession() : null;
+        long start = op != null ? op.begin() : 0;
+        TcPrincipal principal = null;
+
+        try
+        {
+            principal = createSession( userId, password );
+        }
+        finally
+        {
+            if ( op != null )
+            {
+                op.end( start, principal != null );
+            }
+        }
+
+        // Only reached when the directory verified the credentials:
+        if ( isCacheable && ( principal != null ) )
+        {
+            credentialCache.put( userId, password, principal );
+        }
+
+        if ( ( principalCache != null ) && ( principal != null ) && StringUtils.isNotEmpty( userId ) )
+        {
+            principalCache.put( userId, principal );
+        }
+
+        return principal;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Principal getPrincipal( String userId )
+    {
+        if ( StringUtils.isEmpty( userId ) )
+        {
+            return null;
+        }
+
+        // Principals of active users are revalidated in the background shortly before they expire:
+        TcPrincipal principal = principalCache != null ? principalCache.get( userId, this::createTrustedSession ) : null;
+
+        if ( principal != null )
+        {
+            LOG.debug( "{}.getPrincipal userId [{}], cached principal, successful", CLS_NM, userId );
+            return principal;
+        }
+
+        try
+        {
+            // The user was authenticated earlier, e.g. by the SingleSignOn valve, only the role activations are redone.
+            // Concurrent requests restoring the same user share one trip to the directory:
+            principal = trustedLogins.execute( userId, () -> createTrustedSession( userId ) );
+
+            if ( ( principalCache != null ) && ( principal != null ) )
+            {
+                principalCache.put( userId, principal );
+            }
+
+            LOG.debug( "{}.getPrincipal userId [{}], trusted session, successful", CLS_NM, userId );
+        }
+        catch ( SecurityException se )
+        {
+            if ( FailureCache.isLockout( se.getErrorId() ) )
+            {
+                forget( userId );
+            }
+
+            failureLog.failed( userId, se.getErrorId(), se );
+        }
+
+        return principal;
+    }
+
+    private TcPrincipal createTrustedSession( String userId ) throws SecurityException
+    {
+        RealmMetrics.Operation op = metrics != null ? metrics.createSession() : null;
+        long start = op != null ? op.begin() : 0;
+        TcPrincipal principal = null;
+
+        try
+        {
+            principal = j2eeMgr.createTrustedSession( userId, defaultRoles );
+        }
+        finally
+        {
+            if ( op != null )
+            {
+                op.end( start, principal != null );
+            }
+        }
+
+        return principal;
+    }
+
+    /**
+     * Drop every principal cached for the user, e.g. once the account is locked.
+     */
+    private void forget( String userId )
+    {
+        if ( credentialCache != null )
+        {
+            credentialCache.remove( userId );
+        }
+
+        if ( principalCache != null )
+        {
+            principalCache.remove( userId );
+        }
+    }
+
+    private TcPrincipal createSession( String userId, String password ) throws SecurityException
+    {
+        TcPrincipal principal;
+
+        // If a 'default.roles' property set in config, user them
+        if ( CollectionUtils.isNotEmpty( defaultRoles ) )
+        {
+            principal = j2eeMgr.createSession( userId, password, defaultRoles );
+            LOG.debug( "{}.authenticate userId [{}], with default roles[{}], successful", CLS_NM, userId, defaultRoles );
+        }
+        else
+        {
+            principal = j2eeMgr.createSession(userId, password);
+            LOG.debug( "{}.authenticate userId [{}], successful", CLS_NM, userId );
+        }
+
+        return principal;
+    }
+
+    /**
+     * The key of an in-flight login is the userId plus a salted digest of the password so that callers presenting
+     * a different password never share a result, and passwords are not held in the map.
+     */
+    private String flightKey( String userId, String password )
+    {
+        try
+        {
+            MessageDigest md = MessageDigest.getInstance( "SHA-256" );
+            md.update( flightSalt );
+            md.update( ( password == null ? "" : password ).getBytes( StandardCharsets.UTF_8 ) );
+
+            return userId + ':' + Base64.getEncoder().encodeToString( md.digest() );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            // SHA-256 is required on every Java platform.
+            throw new IllegalStateException( CLS_NM + ".flightKey caught NoSuchAlgorithmException=" + e, e );
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -131,6 +422,74 @@ public class TcAccessMgrImpl implements TcAccessMgr
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Principal> authenticateAsync( String userId, String password )
+    {
+        // authenticate reports failures by returning null, so the future never completes exceptionally for a bad login:
+        return AsyncExecutor.getInstance().submit( contextId, () -> authenticate( userId, password ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Boolean> hasRoleAsync( Principal principal, String roleName )
+    {
+        String userId = principal.getName();
+
+        // Same outcome as hasRole, errors deny:
+        return j2eeMgr.hasRoleAsync( principal, roleName ).exceptionally( e -> {
+            LOG.warn( "{}.hasRoleAsync userId <{}> role <{}> caught Exception= {}", CLS_NM, userId, roleName, e );
+            return false;
+        } );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasAnyRole( Principal principal, Collection<String> roleNames )
+    {
+        boolean result = false;
+        String userId = principal.getName();
+        try
+        {
+            result = j2eeMgr.hasAnyRole( principal, roleNames );
+            LOG.debug( "{}.hasAnyRole userId [{}], roles{}, result [{}]", CLS_NM, userId, roleNames, result );
+        }
+        catch ( SecurityException se )
+        {
+            LOG.warn( "{}.hasAnyRole userId <{}> roles <{}> caught SecurityException= {}", CLS_NM, userId, roleNames, se);
+        }
+
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BitSet hasRoles( Principal principal, List<String> roleNames )
+    {
+        // Fail closed
+        BitSet result = new BitSet();
+        String userId = principal.getName();
+        try
+        {
+            result = j2eeMgr.hasRoles( principal, roleNames );
+            LOG.debug( "{}.hasRoles userId [{}], roles{}, result {}", CLS_NM, userId, roleNames, result );
+        }
+        catch ( SecurityException se )
+        {
+            LOG.warn( "{}.hasRoles userId <{}> roles <{}> caught SecurityException= {}", CLS_NM, userId, roleNames, se);
+        }
+
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -153,5 +512,66 @@ public class TcAccessMgrImpl implements TcAccessMgr
         this.contextId = contextId;
         j2eeMgr.setContextId( contextId );
         LOG.info( "CONTEXT ID: {}", contextId );
+        registerMetrics();
+    }
+
+    /**
+     * Publish the statistics of this instance's caches with the metrics of its tenant, if the proxy registered any.
+     */
+    private void registerMetrics()
+    {
+        if ( metrics != null )
+        {
+            metrics.unregisterCaches( this );
+        }
+
+        metrics = RealmMetrics.lookup( contextId );
+
+        if ( metrics == null )
+        {
+            return;
+        }
+
+        if ( credentialCache != null )
+        {
+            StripedLruCache<String, ?> cache = credentialCache.getCache();
+            metrics.registerCache( "credential", this, cache::getHits, cache::getMisses, cache::size );
+        }
+
+        if ( failureCache != null )
+        {
+            StripedLruCache<String, ?> failures = failureCache.getCredentials();
+            StripedLruCache<String, ?> lockouts = failureCache.getLockouts();
+            metrics.registerCache( "failure", this, failures::getHits, failures::getMisses, failures::size );
+            metrics.registerCache( "lockout", this, lockouts::getHits, lockouts::getMisses, lockouts::size );
+        }
+
+        if ( principalCache != null )
+        {
+            metrics.registerCache( "principal", this, principalCache::getHits, principalCache::getMisses, principalCache::size );
+        }
+
+        SessionCache sessionCache = SessionCache.getInstance();
+
+        if ( sessionCache != null )
+        {
+            metrics.registerCache( "session", this, sessionCache::getHits, sessionCache::getMisses, sessionCache::size );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void release()
+    {
+        if ( metrics != null )
+        {
+            metrics.unregisterCaches( this );
+        }
+
+        J2eePolicyMgrFactory.releaseInstance( j2eeMgr );
+        j2eeMgr = null;
+        LOG.info( "{} released", CLS_NM );
     }
 }
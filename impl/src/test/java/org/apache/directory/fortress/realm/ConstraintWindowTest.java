@@ -0,0 +1,222 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserRole;
+import org.junit.Test;
+
+/**
+ * Tests {@link ConstraintWindow#nextChange(Session, long, ZoneId)} in America/New_York, which switches to daylight
+ * saving time on 2026-03-08 at 02:00 and back on 2026-11-01 at 02:00.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ConstraintWindowTest
+{
+    private static final ZoneId NEW_YORK = ZoneId.of( "America/New_York" );
+
+
+    @Test
+    public void testNoConstraints()
+    {
+        long now = local( "2026-01-14T10:00" );
+
+        assertEquals( Long.MAX_VALUE, ConstraintWindow.nextChange( null, now, NEW_YORK ) );
+        assertEquals( Long.MAX_VALUE, ConstraintWindow.nextChange( session( new User( "jdoe" ) ), now, NEW_YORK ) );
+
+        User user = new User( "jdoe" );
+        user.setBeginTime( "none" );
+        user.setDayMask( "all" );
+        assertEquals( Long.MAX_VALUE, ConstraintWindow.nextChange( session( user ), now, NEW_YORK ) );
+
+        user.setDayMask( "1234567" );
+        assertEquals( Long.MAX_VALUE, ConstraintWindow.nextChange( session( user ), now, NEW_YORK ) );
+    }
+
+
+    @Test
+    public void testTimeBoundaries()
+    {
+        User user = new User( "jdoe" );
+        user.setBeginTime( "0900" );
+        user.setEndTime( "1700" );
+
+        // Before the window, then inside it, then on the begin minute, then after it:
+        assertEquals( local( "2026-01-14T09:00" ), ConstraintWindow.nextChange( session( user ), local( "2026-01-14T08:30" ), NEW_YORK ) );
+        assertEquals( local( "2026-01-14T17:00" ), ConstraintWindow.nextChange( session( user ), local( "2026-01-14T10:00" ), NEW_YORK ) );
+        assertEquals( local( "2026-01-14T09:01" ), ConstraintWindow.nextChange( session( user ), local( "2026-01-14T09:00" ), NEW_YORK ) );
+        assertEquals( local( "2026-01-15T09:00" ), ConstraintWindow.nextChange( session( user ), local( "2026-01-14T17:30" ), NEW_YORK ) );
+    }
+
+
+    @Test
+    public void testEndTime2359()
+    {
+        User user = new User( "jdoe" );
+        user.setEndTime( "2359" );
+
+        assertEquals( local( "2026-01-14T23:59" ), ConstraintWindow.nextChange( session( user ), local( "2026-01-14T23:00" ), NEW_YORK ) );
+        // Within the last minute the next change is the minute after it, i.e. midnight of the next day:
+        assertEquals( local( "2026-01-15T00:00" ), ConstraintWindow.nextChange( session( user ), local( "2026-01-14T23:59:30" ), NEW_YORK ) );
+    }
+
+
+    @Test
+    public void testMidnight()
+    {
+        User user = new User( "jdoe" );
+        user.setBeginTime( "0000" );
+
+        assertEquals( local( "2026-01-15T00:00" ), ConstraintWindow.nextChange( session( user ), local( "2026-01-14T23:30" ), NEW_YORK ) );
+        // On midnight itself the next change is the minute after it:
+        assertEquals( local( "2026-01-15T00:01" ), ConstraintWindow.nextChange( session( user ), local( "2026-01-15T00:00" ), NEW_YORK ) );
+    }
+
+
+    @Test
+    public void testDayMask()
+    {
+        User user = new User( "jdoe" );
+        // Monday to Friday, 2026-01-14 is a Wednesday:
+        user.setDayMask( "23456" );
+
+        assertEquals( local( "2026-01-15T00:00" ), ConstraintWindow.nextChange( session( user ), local( "2026-01-14T14:00" ), NEW_YORK ) );
+        assertEquals( local( "2026-01-16T00:00" ), ConstraintWindow.nextChange( session( user ), local( "2026-01-15T00:00" ), NEW_YORK ) );
+    }
+
+
+    @Test
+    public void testDates()
+    {
+        User user = new User( "jdoe" );
+        user.setBeginDate( "20260201" );
+        assertEquals( local( "2026-02-01T00:00" ), ConstraintWindow.nextChange( session( user ), local( "2026-01-14T10:00" ), NEW_YORK ) );
+
+        user = new User( "jdoe" );
+        user.setEndDate( "20260114" );
+        assertEquals( local( "2026-01-15T00:00" ), ConstraintWindow.nextChange( session( user ), local( "2026-01-14T10:00" ), NEW_YORK ) );
+
+        // A date in the past no longer changes, the next offset transition still is a boundary:
+        user = new User( "jdoe" );
+        user.setEndDate( "20250101" );
+        assertEquals( Instant.parse( "2026-03-08T07:00:00Z" ).toEpochMilli(),
+            ConstraintWindow.nextChange( session( user ), local( "2026-01-14T10:00" ), NEW_YORK ) );
+    }
+
+
+    @Test
+    public void testLockDatesOfRole()
+    {
+        UserRole role = new UserRole( "jdoe", "role1" );
+        role.setBeginLockDate( "20260120" );
+        role.setEndLockDate( "20260125" );
+        Session session = session( new User( "jdoe" ) );
+        session.setRole( role );
+
+        assertEquals( local( "2026-01-20T00:00" ), ConstraintWindow.nextChange( session, local( "2026-01-14T10:00" ), NEW_YORK ) );
+        assertEquals( local( "2026-01-25T00:00" ), ConstraintWindow.nextChange( session, local( "2026-01-22T10:00" ), NEW_YORK ) );
+    }
+
+
+    @Test
+    public void testSpringForwardGap()
+    {
+        User user = new User( "jdoe" );
+        // 02:30 does not exist on 2026-03-08, the clocks go from 01:59 EST to 03:00 EDT:
+        user.setBeginTime( "0230" );
+
+        // The transition at 07:00Z comes first and is never later than the actual change:
+        assertEquals( Instant.parse( "2026-03-08T07:00:00Z" ).toEpochMilli(),
+            ConstraintWindow.nextChange( session( user ), local( "2026-03-07T23:00" ), NEW_YORK ) );
+
+        // After the transition the next 02:30 is the one of the following day, in EDT:
+        assertEquals( Instant.parse( "2026-03-09T06:30:00Z" ).toEpochMilli(),
+            ConstraintWindow.nextChange( session( user ), Instant.parse( "2026-03-08T07:00:00Z" ).toEpochMilli(), NEW_YORK ) );
+
+        user.setBeginTime( "0300" );
+        // 03:00 EDT is the transition itself:
+        assertEquals( Instant.parse( "2026-03-08T07:00:00Z" ).toEpochMilli(),
+            ConstraintWindow.nextChange( session( user ), local( "2026-03-08T01:30" ), NEW_YORK ) );
+    }
+
+
+    @Test
+    public void testFallBackOverlap()
+    {
+        User user = new User( "jdoe" );
+        // 01:30 happens twice on 2026-11-01, at 05:30Z in EDT and at 06:30Z in EST:
+        user.setBeginTime( "0130" );
+
+        assertEquals( Instant.parse( "2026-11-01T05:30:00Z" ).toEpochMilli(),
+            ConstraintWindow.nextChange( session( user ), Instant.parse( "2026-11-01T04:30:00Z" ).toEpochMilli(), NEW_YORK ) );
+
+        // Past the first 01:30, the transition at 06:00Z comes before the second one:
+        assertEquals( Instant.parse( "2026-11-01T06:00:00Z" ).toEpochMilli(),
+            ConstraintWindow.nextChange( session( user ), Instant.parse( "2026-11-01T05:45:00Z" ).toEpochMilli(), NEW_YORK ) );
+
+        // After the transition the second 01:30 is found:
+        assertEquals( Instant.parse( "2026-11-01T06:30:00Z" ).toEpochMilli(),
+            ConstraintWindow.nextChange( session( user ), Instant.parse( "2026-11-01T06:00:00Z" ).toEpochMilli(), NEW_YORK ) );
+    }
+
+
+    @Test
+    public void testUnparseableReturnsNow()
+    {
+        long now = local( "2026-01-14T10:00" );
+
+        User user = new User( "jdoe" );
+        user.setBeginTime( "9999" );
+        assertEquals( now, ConstraintWindow.nextChange( session( user ), now, NEW_YORK ) );
+
+        user = new User( "jdoe" );
+        user.setEndDate( "2026-01-14" );
+        assertEquals( now, ConstraintWindow.nextChange( session( user ), now, NEW_YORK ) );
+
+        UserRole role = new UserRole( "jdoe", "role1" );
+        role.setEndTime( "noon" );
+        Session session = session( new User( "jdoe" ) );
+        session.setRole( role );
+        assertEquals( now, ConstraintWindow.nextChange( session, now, NEW_YORK ) );
+    }
+
+
+    private static Session session( User user )
+    {
+        return new Session( user, "test" );
+    }
+
+
+    /**
+     * @return the instant the New York wall clock shows the time, which must not fall into an overlap.
+     */
+    private static long local( String dateTime )
+    {
+        return LocalDateTime.parse( dateTime ).atZone( NEW_YORK ).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.tomcat;
+
+/**
+ * Point in time statistics of one of the realm's caches, as presented over JMX.  When several realms of the same
+ * tenant each own a cache of the same name, the figures are summed.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CacheStatistics
+{
+    private final long hits;
+    private final long misses;
+    private final long size;
+
+
+    /**
+     * Create the statistics.
+     *
+     * @param hits   number of lookups that found a value.
+     * @param misses number of lookups that found nothing usable.
+     * @param size   number of entries held.
+     */
+    public CacheStatistics( long hits, long misses, long size )
+    {
+        this.hits = hits;
+        this.misses = misses;
+        this.size = size;
+    }
+
+
+    /**
+     * @return number of lookups that found a value.
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+
+    /**
+     * @return number of lookups that found nothing usable.
+     */
+    public long getMisses()
+    {
+        return misses;
+    }
+
+
+    /**
+     * @return number of entries held.
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+
+    /**
+     * @return fraction of lookups that found a value, 0 if there were none.
+     */
+    public double getHitRatio()
+    {
+        long lookups = hits + misses;
+
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.tomcat;
+
+/**
+ * Point in time statistics of one realm operation, as presented over JMX.  Latencies are in microseconds.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class OperationStatistics
+{
+    private final long successes;
+    private final long failures;
+    private final long inFlight;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+
+
+    /**
+     * Create the statistics.
+     *
+     * @param successes  number of calls that completed successfully.
+     * @param failures   number of calls that failed.
+     * @param inFlight   number of calls in progress.
+     * @param meanMicros average latency.
+     * @param p50Micros  median latency.
+     * @param p99Micros  99th percentile latency.
+     * @param p999Micros 99.9th percentile latency.
+     * @param maxMicros  largest latency.
+     */
+    public OperationStatistics( long successes, long failures, long inFlight, double meanMicros, double p50Micros,
+        double p99Micros, double p999Micros, double maxMicros )
+    {
+        this.successes = successes;
+        this.failures = failures;
+        this.inFlight = inFlight;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+
+    /**
+     * @return number of calls that completed successfully.
+     */
+    public long getSuccesses()
+    {
+        return successes;
+    }
+
+
+    /**
+     * @return number of calls that failed, e.g. rejected logins or errors raised by Fortress.
+     */
+    public long getFailures()
+    {
+        return failures;
+    }
+
+
+    /**
+     * @return number of calls in progress.
+     */
+    public long getInFlight()
+    {
+        return inFlight;
+    }
+
+
+    /**
+     * @return average latency in microseconds.
+     */
+    public double getMeanMicros()
+    {
+        return meanMicros;
+    }
+
+
+    /**
+     * @return median latency in microseconds.
+     */
+    public double getP50Micros()
+    {
+        return p50Micros;
+    }
+
+
+    /**
+     * @return 99th percentile latency in microseconds.
+     */
+    public double getP99Micros()
+    {
+        return p99Micros;
+    }
+
+
+    /**
+     * @return 99.9th percentile latency in microseconds.
+     */
+    public double getP999Micros()
+    {
+        return p999Micros;
+    }
+
+
+    /**
+     * @return largest latency in microseconds.
+     */
+    public double getMaxMicros()
+    {
+        return maxMicros;
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.tomcat;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.directory.fortress.realm.util.LatencyHistogram;
+
+/**
+ * Collects latencies, outcomes and in-flight counts of the realm's operations for one tenant and publishes them as an
+ * MXBean on the platform MBean server.  One instance exists per contextId, shared by every realm of that tenant: the
+ * first {@link #acquire(String)} registers it and the matching last {@link #release(RealmMetrics)} unregisters it.
+ * <p>
+ * Recording is lock-free and does not allocate:
+ * <pre>
+ * long start = metrics.hasRole().begin();
+ * ...
+ * metrics.hasRole().end( start, true );
+ * </pre>
+ * This class is loaded from Tomcat's system classpath, so the implementation, which runs on a URL classloader, can
+ * find the instance of its tenant with {@link #lookup(String)}.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class RealmMetrics implements RealmMetricsMXBean
+{
+    private static final String CLS_NM = RealmMetrics.class.getName();
+    // Do not change from Java's native logger in order to keep Tomcat's system classpath free of additional dependencies.
+    private static final Logger LOG = Logger.getLogger( CLS_NM );
+    private static final String DOMAIN = "org.apache.directory.fortress.realm";
+    // Fortress' name for the default tenant:
+    private static final String HOME = "HOME";
+    private static final Map<String, RealmMetrics> INSTANCES = new ConcurrentHashMap<String, RealmMetrics>();
+
+    private final String contextId;
+    private final Operation authenticate = new Operation();
+    private final Operation createSession = new Operation();
+    private final Operation hasRole = new Operation();
+    private final Operation deserialize = new Operation();
+    private final CopyOnWriteArrayList<CacheProbe> caches = new CopyOnWriteArrayList<CacheProbe>();
+    // Guarded by RealmMetrics.class:
+    private int references;
+    private ObjectName name;
+
+
+    private RealmMetrics( String contextId )
+    {
+        this.contextId = contextId;
+    }
+
+
+    /**
+     * Return the metrics of a tenant, creating and registering them with the platform MBean server if this is the
+     * first realm of the tenant.  Every call must be paired with a call to {@link #release(RealmMetrics)}.
+     *
+     * @param contextId contains the tenant id, null or empty for the default tenant.
+     * @return the tenant's metrics.
+     */
+    public static synchronized RealmMetrics acquire( String contextId )
+    {
+        String key = key( contextId );
+        RealmMetrics metrics = INSTANCES.get( key );
+
+        if ( metrics == null )
+        {
+            metrics = new RealmMetrics( key );
+            metrics.register();
+            INSTANCES.put( key, metrics );
+        }
+
+        metrics.references++;
+
+        return metrics;
+    }
+
+
+    /**
+     * Give back metrics obtained from {@link #acquire(String)}.  They are unregistered when the last realm of the
+     * tenant gives them back.
+     *
+     * @param metrics the metrics to release, may be null.
+     */
+    public static synchronized void release( RealmMetrics metrics )
+    {
+        if ( ( metrics != null ) && ( --metrics.references == 0 ) )
+        {
+            INSTANCES.remove( metrics.contextId, metrics );
+            metrics.unregister();
+        }
+    }
+
+
+    /**
+     * Return the metrics of a tenant if a realm of that tenant is running.
+     *
+     * @param contextId contains the tenant id, null or empty for the default tenant.
+     * @return the tenant's metrics or null.
+     */
+    public static RealmMetrics lookup( String contextId )
+    {
+        return INSTANCES.get( key( contextId ) );
+    }
+
+
+    private static String key( String contextId )
+    {
+        return ( contextId == null ) || contextId.isEmpty() ? HOME : contextId;
+    }
+
+
+    private void register()
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName( DOMAIN + ":type=RealmMetrics,contextId=" + ObjectName.quote( contextId ) );
+            server.registerMBean( this, objectName );
+            name = objectName;
+            LOG.info( CLS_NM + ".register " + objectName );
+        }
+        catch ( JMException e )
+        {
+            // Metrics are still collected, just not published:
+            LOG.warning( CLS_NM + ".register contextId: " + contextId + " caught JMException=" + e );
+        }
+    }
+
+
+    private void unregister()
+    {
+        if ( name != null )
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean( name );
+            }
+            catch ( JMException e )
+            {
+                LOG.warning( CLS_NM + ".unregister " + name + " caught JMException=" + e );
+            }
+
+            name = null;
+        }
+    }
+
+
+    /**
+     * Publish the statistics of a cache.  Several owners may publish caches under the same name, their figures are
+     * summed.
+     *
+     * @param cacheName name the cache is published under.
+     * @param owner     identifies the publisher, for {@link #unregisterCaches(Object)}.
+     * @param hits      supplies the number of lookups that found a value.
+     * @param misses    supplies the number of lookups that found nothing usable.
+     * @param size      supplies the number of entries held.
+     */
+    public void registerCache( String cacheName, Object owner, LongSupplier hits, LongSupplier misses, IntSupplier size )
+    {
+        caches.add( new CacheProbe( cacheName, owner, hits, misses, size ) );
+    }
+
+
+    /**
+     * Stop publishing the caches of an owner.
+     *
+     * @param owner the publisher passed to {@link #registerCache(String, Object, LongSupplier, LongSupplier, IntSupplier)}.
+     */
+    public void unregisterCaches( Object owner )
+    {
+        caches.removeIf( probe -> probe.owner == owner );
+    }
+
+
+    /**
+     * @return the recorder of password logins.
+     */
+    public Operation authenticate()
+    {
+        return authenticate;
+    }
+
+
+    /**
+     * @return the recorder of sessions created against the directory.
+     */
+    public Operation createSession()
+    {
+        return createSession;
+    }
+
+
+    /**
+     * @return the recorder of role checks.
+     */
+    public Operation hasRole()
+    {
+        return hasRole;
+    }
+
+
+    /**
+     * @return the recorder of session deserialization.
+     */
+    public Operation deserialize()
+    {
+        return deserialize;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getContextId()
+    {
+        return contextId;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OperationStatistics getAuthenticate()
+    {
+        return authenticate.getStatistics();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OperationStatistics getCreateSession()
+    {
+        return createSession.getStatistics();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OperationStatistics getHasRole()
+    {
+        return hasRole.getStatistics();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OperationStatistics getDeserialize()
+    {
+        return deserialize.getStatistics();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, CacheStatistics> getCaches()
+    {
+        Map<String, CacheStatistics> result = new TreeMap<String, CacheStatistics>();
+
+        for ( CacheProbe probe : caches )
+        {
+            CacheStatistics stats = new CacheStatistics( probe.hits.getAsLong(), probe.misses.getAsLong(), probe.size.getAsInt() );
+            CacheStatistics other = result.get( probe.name );
+
+            if ( other != null )
+            {
+                stats = new CacheStatistics( stats.getHits() + other.getHits(), stats.getMisses() + other.getMisses(),
+                    stats.getSize() + other.getSize() );
+            }
+
+            result.put( probe.name, stats );
+        }
+
+        return result;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset()
+    {
+        authenticate.reset();
+        createSession.reset();
+        hasRole.reset();
+        deserialize.reset();
+    }
+
+
+    /**
+     * Records the calls of one operation.
+     */
+    public static final class Operation
+    {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+        // Calls begun; those not yet counted by the histogram are in flight:
+        private final LongAdder started = new LongAdder();
+
+
+        private Operation()
+        {
+        }
+
+
+        /**
+         * Mark the start of a call.
+         *
+         * @return the start time to pass to {@link #end(long, boolean)}.
+         */
+        public long begin()
+        {
+            started.increment();
+
+            return System.nanoTime();
+        }
+
+
+        /**
+         * Mark the end of a call that was started with {@link #begin()}.
+         *
+         * @param start   the value returned by begin.
+         * @param success false if the call failed.
+         */
+        public void end( long start, boolean success )
+        {
+            latencies.record( System.nanoTime() - start );
+
+            // Successes are the calls counted by the histogram that did not fail:
+            if ( !success )
+            {
+                failures.increment();
+            }
+        }
+
+
+        private OperationStatistics getStatistics()
+        {
+            long failed = failures.sum();
+            long completed = latencies.getCount();
+            long inFlight = Math.max( 0, started.sum() - completed );
+
+            return new OperationStatistics( Math.max( 0, completed - failed ), failed, inFlight, latencies.getMean() / 1000,
+                micros( latencies.getValueAt( 0.5 ) ), micros( latencies.getValueAt( 0.99 ) ),
+                micros( latencies.getValueAt( 0.999 ) ), micros( latencies.getMax() ) );
+        }
+
+
+        private static double micros( long nanos )
+        {
+            return nanos / 1000d;
+        }
+
+
+        private void reset()
+        {
+            // Forget the completed calls but not those still in flight:
+            long completed = latencies.getCount();
+            latencies.reset();
+            started.add( -completed );
+            failures.reset();
+        }
+    }
+
+
+    /**
+     * Suppliers of the statistics of one published cache.
+     */
+    private static final class CacheProbe
+    {
+        private final String name;
+        private final Object owner;
+        private final LongSupplier hits;
+        private final LongSupplier misses;
+        private final IntSupplier size;
+
+        private CacheProbe( String name, Object owner, LongSupplier hits, LongSupplier misses, IntSupplier size )
+        {
+            this.name = name;
+            this.owner = owner;
+            this.hits = hits;
+            this.misses = misses;
+            this.size = size;
+        }
+    }
+}
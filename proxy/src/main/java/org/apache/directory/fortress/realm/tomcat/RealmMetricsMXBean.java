@@ -0,0 +1,72 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.tomcat;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link RealmMetrics}, registered once per contextId under
+ * {@code org.apache.directory.fortress.realm:type=RealmMetrics,contextId=<contextId>}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface RealmMetricsMXBean
+{
+    /**
+     * @return the tenant these metrics belong to.
+     */
+    String getContextId();
+
+
+    /**
+     * @return statistics of password logins, including those answered from the caches.
+     */
+    OperationStatistics getAuthenticate();
+
+
+    /**
+     * @return statistics of Fortress sessions created against the directory.
+     */
+    OperationStatistics getCreateSession();
+
+
+    /**
+     * @return statistics of role checks.
+     */
+    OperationStatistics getHasRole();
+
+
+    /**
+     * @return statistics of sessions deserialized from their String form.
+     */
+    OperationStatistics getDeserialize();
+
+
+    /**
+     * @return statistics of the realm's caches, by cache name.
+     */
+    Map<String, CacheStatistics> getCaches();
+
+
+    /**
+     * Clear the latency histograms and counters of every operation.  In-flight gauges and cache statistics are kept.
+     */
+    void reset();
+}
@@ -20,13 +20,30 @@
 package org.apache.directory.fortress.realm.tomcat;
 
 import org.apache.directory.fortress.realm.util.CpUtil;
+import org.apache.catalina.Context;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
 import org.apache.catalina.realm.RealmBase;
+import org.apache.tomcat.util.descriptor.web.SecurityConstraint;
 
+import java.io.IOException;
 import java.net.URL;
 import java.security.Principal;
+import java.security.cert.X509Certificate;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import jakarta.servlet.http.HttpServletResponse;
 import java.util.logging.Logger;
 
 import org.apache.directory.fortress.realm.util.ChildFirstUrlClassLoader;
@@ -56,16 +73,28 @@ public class Tc7AccessMgrProxy extends RealmBase
     private String defaultRoles;
     private String realmClasspath;
     private String contextId;
-    private TcAccessMgr realm;
+    private boolean asyncStart;
+    private long startTimeout = 30000;
+    private volatile TcAccessMgr realm;
+    // Only set while, and after, the realm is initialized in the background:
+    private volatile Future<?> starting;
+    // Guards publishing realm against stop.  Not this, which the container holds while it waits for initialization:
+    private final Object lifecycle = new Object();
+    // Published over JMX from start until stop:
+    private volatile RealmMetrics metrics;
 
     /**
      * This method will load the Fortress Tomcat implementation on a URL classloader.  Methods on the implementation are
-     * wrapped by methods on this class and are accessed via the {@code realm} instance variable of this class.
+     * wrapped by methods on this class and are accessed via the {@code realm} instance variable of this class, which
+     * the caller sets to the returned instance.
+     *
+     * @return the new implementation.
      */
-    private void initialize()
+    private TcAccessMgr initialize()
     {
         try
         {
+            long start = System.nanoTime();
             URLClassLoader ucl;
             
             if ( CONTAINER.equalsIgnoreCase( JBOSS_AGENT ) )
@@ -95,11 +124,21 @@ public class Tc7AccessMgrProxy extends RealmBase
             }
 
             LOG.info( CLS_NM + ".initialize - instantiate policy agent name: " + REALM_IMPL );
+            long classpath = System.nanoTime();
             Class<?> sc = ucl.loadClass( REALM_IMPL );
-            realm = (TcAccessMgr) sc.newInstance();
-            realm.setDefaultRoles( defaultRoles );
-            realm.setContextId( contextId );
+            long load = System.nanoTime();
+            // Config, the ldap pool and the caches of the Fortress managers are bootstrapped here:
+            TcAccessMgr newRealm = (TcAccessMgr) sc.newInstance();
+            long instantiate = System.nanoTime();
+            newRealm.setDefaultRoles( defaultRoles );
+            newRealm.setContextId( contextId );
+            long configure = System.nanoTime();
             LOG.info( CLS_NM + " J2EE Tomcat7 policy agent, contextId: " + contextId + ", defaultRoles: " + defaultRoles );
+            LOG.info( CLS_NM + ".initialize completed in " + millis( start, configure ) + " ms: classpath " + millis( start, classpath )
+                + " ms, load " + millis( classpath, load ) + " ms, instantiate " + millis( load, instantiate )
+                + " ms, configure " + millis( instantiate, configure ) + " ms" );
+
+            return newRealm;
         }
         catch ( ClassNotFoundException e )
         {
@@ -122,6 +161,50 @@ public class Tc7AccessMgrProxy extends RealmBase
     }
 
 
+    private static long millis( long from, long to )
+    {
+        return TimeUnit.NANOSECONDS.toMillis( to - from );
+    }
+
+
+    /**
+     * Return the implementation, waiting up to {@code startTimeout} milliseconds if it is still being initialized in
+     * the background.
+     *
+     * @return the implementation, or null if initialization failed.
+     * @throws IllegalStateException if initialization did not complete in time, the request must not be granted.
+     */
+    private TcAccessMgr awaitRealm()
+    {
+        Future<?> init = starting;
+
+        if ( ( realm == null ) && ( init != null ) && !init.isDone() )
+        {
+            try
+            {
+                init.get( startTimeout, TimeUnit.MILLISECONDS );
+            }
+            catch ( TimeoutException te )
+            {
+                String error = CLS_NM + " Fortress Tomcat7 Realm initialization not complete after " + startTimeout + " ms, request denied";
+                LOG.severe( error );
+                throw new IllegalStateException( error, te );
+            }
+            catch ( InterruptedException ie )
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException( CLS_NM + " interrupted waiting for Fortress Tomcat7 Realm initialization", ie );
+            }
+            catch ( ExecutionException ee )
+            {
+                // Already logged by the initialization thread, realm stays null.
+            }
+        }
+
+        return realm;
+    }
+
+
     /**
      * Perform user authentication and evaluate password policies.
      *
@@ -133,12 +216,98 @@ public class Tc7AccessMgrProxy extends RealmBase
     @Override
     public Principal authenticate( String userId, String password )
     {
+        TcAccessMgr realm = awaitRealm();
+
         if ( realm == null )
         {
             throw new IllegalArgumentException( CLS_NM + "authenticate detected Fortress Tomcat7 Realm not initialized correctly.  Check your Fortress Realm configuration" );
         }
-        
-        return realm.authenticate( userId, password );
+
+        RealmMetrics.Operation op = metrics.authenticate();
+        long start = op.begin();
+        Principal principal = null;
+
+        try
+        {
+            principal = realm.authenticate( userId, password );
+        }
+        finally
+        {
+            op.end( start, principal != null );
+        }
+
+        return principal;
+    }
+
+
+    /**
+     * Perform user authentication without holding the calling thread during the directory round trip, e.g. from an
+     * async servlet or authenticator valve.  See {@link TcAccessMgr#authenticateAsync(String, String)}.
+     *
+     * @param userId   Contains the userid of the user signing on.
+     * @param password Contains the user's password.
+     * @return future completed with the Principal which contains the Fortress RBAC session data, or with null if the login failed.
+     */
+    public CompletableFuture<Principal> authenticateAsync( String userId, String password )
+    {
+        TcAccessMgr realm = awaitRealm();
+
+        if ( realm == null )
+        {
+            throw new IllegalArgumentException( CLS_NM + "authenticateAsync detected Fortress Tomcat7 Realm not initialized correctly.  Check your Fortress Realm configuration" );
+        }
+
+        RealmMetrics.Operation op = metrics.authenticate();
+        long start = op.begin();
+
+        return realm.authenticateAsync( userId, password ).whenComplete( ( principal, e ) -> op.end( start, principal != null ) );
+    }
+
+
+    /**
+     * Determine if given Role is contained within User's Tomcat Principal object, without holding the calling thread
+     * if the directory has to be asked.  See {@link TcAccessMgr#hasRoleAsync(Principal, String)}.
+     *
+     * @param principal Contains User's Tomcat RBAC Session data that includes activated Roles.
+     * @param role  Maps to {@code org.apache.directory.fortress.core.model.Role#name}.
+     * @return future completed with true if Role is found in TcPrincipal, false otherwise.
+     */
+    public CompletableFuture<Boolean> hasRoleAsync( Principal principal, String role )
+    {
+        TcAccessMgr realm = awaitRealm();
+
+        if ( realm == null )
+        {
+            throw new IllegalArgumentException( CLS_NM + "hasRoleAsync detected Fortress Tomcat7 Realm not initialized correctly.  Check your Fortress Realm configuration" );
+        }
+
+        RealmMetrics.Operation op = metrics.hasRole();
+        long start = op.begin();
+
+        return realm.hasRoleAsync( principal, role ).whenComplete( ( result, e ) -> op.end( start, e == null ) );
+    }
+
+
+    /**
+     * Log in the user identified by a client certificate, e.g. for mutual TLS.  The chain is validated and mapped to a
+     * userId by {@link RealmBase}, see {@code x509UsernameRetrieverClassName}, and the principal is then obtained from
+     * {@link #getPrincipal(String)}, so no password is checked.  When the principal cache is enabled, repeated requests
+     * of one user are answered from it rather than the directory.
+     *
+     * @param certs Contains the client certificate chain, the user's certificate first.
+     * @return Principal which contains the Fortress RBAC session data, or null if the chain is invalid or the user may not log in.
+     */
+    @Override
+    public Principal authenticate( X509Certificate[] certs )
+    {
+        Principal principal = super.authenticate( certs );
+
+        if ( ( principal == null ) && ( certs != null ) && ( certs.length > 0 ) )
+        {
+            LOG.fine( CLS_NM + ".authenticate client certificate <" + certs[0].getSubjectX500Principal() + "> not authenticated" );
+        }
+
+        return principal;
     }
 
 
@@ -153,20 +322,162 @@ public class Tc7AccessMgrProxy extends RealmBase
     @Override
     public boolean hasRole( Wrapper wrapper, Principal principal, String role )
     {
+        TcAccessMgr realm = awaitRealm();
+
         if(realm == null)
         {
             throw new IllegalArgumentException( CLS_NM + "authenticate detected Fortress Tomcat7 Realm not initialized correctly.  Check your Fortress Realm configuration" );
         }
-        
-        return realm.hasRole( principal, role );
+
+        RealmMetrics.Operation op = metrics.hasRole();
+        long start = op.begin();
+        boolean completed = false;
+
+        try
+        {
+            boolean result = realm.hasRole( principal, role );
+            completed = true;
+
+            return result;
+        }
+        finally
+        {
+            op.end( start, completed );
+        }
+    }
+
+
+
+    /**
+     * Decide access to a resource for the whole set of security constraints at once.  Follows the same rules as
+     * {@link RealmBase#hasResourcePermission(Request, Response, SecurityConstraint[], Context)} but, instead of calling
+     * {@link #hasRole(Wrapper, Principal, String)} once per role, collects the roles of every constraint and evaluates
+     * them with a single call into the Fortress implementation.
+     *
+     * @param request  Request we are processing.
+     * @param response Response we are creating.
+     * @param constraints Security constraints being checked.
+     * @param context  Context to which client of this class is attached.
+     * @return True if access is granted, false otherwise, in which case a 403 has been sent.
+     * @throws IOException if an input/output error occurs.
+     */
+    @Override
+    public boolean hasResourcePermission( Request request, Response response, SecurityConstraint[] constraints, Context context ) throws IOException
+    {
+        if ( constraints == null || constraints.length == 0 )
+        {
+            return true;
+        }
+
+        Principal principal = request.getPrincipal();
+        boolean status = false;
+        boolean denyfromall = false;
+        List<String> roles = new ArrayList<>();
+
+        for ( SecurityConstraint constraint : constraints )
+        {
+            String[] constraintRoles;
+
+            if ( constraint.getAllRoles() )
+            {
+                // * means all roles defined in web.xml
+                constraintRoles = request.getContext().findSecurityRoles();
+            }
+            else
+            {
+                constraintRoles = constraint.findAuthRoles();
+            }
+
+            if ( constraintRoles == null )
+            {
+                constraintRoles = new String[0];
+            }
+
+            if ( constraint.getAuthenticatedUsers() && principal != null )
+            {
+                status = true;
+            }
+            else if ( constraintRoles.length == 0 && !constraint.getAllRoles() && !constraint.getAuthenticatedUsers() )
+            {
+                if ( constraint.getAuthConstraint() )
+                {
+                    // An auth constraint with no roles denies everyone, regardless of the other constraints.
+                    status = false;
+                    denyfromall = true;
+                    break;
+                }
+
+                status = true;
+            }
+            else if ( principal != null )
+            {
+                roles.addAll( Arrays.asList( constraintRoles ) );
+            }
+        }
+
+        if ( !denyfromall && !status && !roles.isEmpty() )
+        {
+            TcAccessMgr realm = awaitRealm();
+
+            if ( realm == null )
+            {
+                throw new IllegalArgumentException( CLS_NM + "hasResourcePermission detected Fortress Tomcat7 Realm not initialized correctly.  Check your Fortress Realm configuration" );
+            }
+
+            RealmMetrics.Operation op = metrics.hasRole();
+            long start = op.begin();
+            boolean completed = false;
+
+            try
+            {
+                status = realm.hasAnyRole( principal, roles );
+                completed = true;
+            }
+            finally
+            {
+                op.end( start, completed );
+            }
+        }
+
+        if ( !denyfromall && allRolesMode != AllRolesMode.STRICT_MODE && !status && principal != null )
+        {
+            for ( SecurityConstraint constraint : constraints )
+            {
+                if ( constraint.getAllRoles() )
+                {
+                    if ( allRolesMode == AllRolesMode.AUTH_ONLY_MODE )
+                    {
+                        status = true;
+                        break;
+                    }
+
+                    // For AllRolesMode.STRICT_AUTH_ONLY_MODE grant only if the application defines no roles.
+                    String[] contextRoles = request.getContext().findSecurityRoles();
+
+                    if ( contextRoles == null || contextRoles.length == 0 )
+                    {
+                        status = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        if ( !status )
+        {
+            response.sendError( HttpServletResponse.SC_FORBIDDEN, sm.getString( "realmBase.forbidden" ) );
+        }
+
+        return status;
     }
 
    
     /**
-     * Gets the password attribute of the TcAccessMgrProxy object
+     * Gets the password attribute of the TcAccessMgrProxy object.  Fortress never discloses passwords, so digest
+     * authentication is not supported.
      *
      * @param username Description of the Parameter
-     * @return The password value
+     * @return The password value, always null
      */
     @Override
     protected String getPassword( String username )
@@ -176,15 +487,38 @@ public class Tc7AccessMgrProxy extends RealmBase
 
 
     /**
-     * Gets the principal attribute of the TcAccessMgrProxy object
+     * Return the principal of a user that has already been authenticated, used by Tomcat's SingleSignOn valve, session
+     * restore and the trusted authentication paths of {@link RealmBase}, e.g. client certificates and SPNEGO.  The
+     * principal of the user's last login is reused while cached, otherwise a trusted Fortress session is created, so no
+     * password bind is needed.
      *
-     * @param username Description of the Parameter
-     * @return The principal value
+     * @param username Contains the userid of the authenticated user.
+     * @return The principal value, or null if the user is unknown or may not log in.
      */
     @Override
     protected Principal getPrincipal( String username )
     {
-        return null;
+        TcAccessMgr realm = awaitRealm();
+
+        if ( realm == null )
+        {
+            throw new IllegalArgumentException( CLS_NM + "getPrincipal detected Fortress Tomcat7 Realm not initialized correctly.  Check your Fortress Realm configuration" );
+        }
+
+        RealmMetrics.Operation op = metrics.authenticate();
+        long start = op.begin();
+        Principal principal = null;
+
+        try
+        {
+            principal = realm.getPrincipal( username );
+        }
+        finally
+        {
+            op.end( start, principal != null );
+        }
+
+        return principal;
     }
 
 
@@ -199,16 +533,71 @@ public class Tc7AccessMgrProxy extends RealmBase
     @Override
     protected void startInternal() throws LifecycleException
     {
-        try
+        // Before the implementation is created, so it finds the metrics of its tenant:
+        metrics = RealmMetrics.acquire( contextId );
+
+        if ( asyncStart )
         {
-            initialize();
+            // Let the container go on starting, requests wait for the realm in awaitRealm:
+            final AtomicReference<FutureTask<Void>> self = new AtomicReference<FutureTask<Void>>();
+            FutureTask<Void> init = new FutureTask<Void>( () -> {
+                TcAccessMgr created;
+
+                try
+                {
+                    created = initialize();
+                }
+                catch ( RuntimeException e )
+                {
+                    LOG.severe( CLS_NM + ".startInternal background initialization caught Exception=" + e );
+                    throw e;
+                }
+
+                boolean published;
+
+                synchronized ( lifecycle )
+                {
+                    // Unless the realm was stopped, and maybe started again, before initialization completed:
+                    published = ( starting == self.get() );
+
+                    if ( published )
+                    {
+                        realm = created;
+                    }
+                }
+
+                if ( !published )
+                {
+                    created.release();
+                }
+
+                return null;
+            } );
+            self.set( init );
+
+            synchronized ( lifecycle )
+            {
+                starting = init;
+            }
+
+            Thread thread = new Thread( init, "FortressRealmInit-" + contextId );
+            thread.setDaemon( true );
+            thread.start();
+            LOG.info( CLS_NM + ".startInternal initializing in background, startTimeout: " + startTimeout );
         }
-        catch (Exception e)
+        else
         {
-            String error = CLS_NM + ".startInternal caught Exception=" + e;
-            LOG.severe( error );
-            e.printStackTrace();
-            throw new LifecycleException( error );
+            try
+            {
+                realm = initialize();
+            }
+            catch (Exception e)
+            {
+                String error = CLS_NM + ".startInternal caught Exception=" + e;
+                LOG.severe( error );
+                e.printStackTrace();
+                throw new LifecycleException( error );
+            }
         }
         
         super.startInternal();
@@ -230,9 +619,39 @@ public class Tc7AccessMgrProxy extends RealmBase
         // Perform normal superclass finalization
         super.stopInternal();
 
+        // Give a background initialization that is still running the chance to finish so its result is released below.
+        // If it completes later it releases the result itself, because starting no longer points at it:
+        Future<?> init = starting;
+
+        if ( ( init != null ) && !init.isDone() )
+        {
+            try
+            {
+                init.get( startTimeout, TimeUnit.MILLISECONDS );
+            }
+            catch ( Exception e )
+            {
+                LOG.warning( CLS_NM + ".stopInternal background initialization did not complete: " + e );
+            }
+        }
+
+        TcAccessMgr stopped;
+
+        synchronized ( lifecycle )
+        {
+            starting = null;
+            stopped = realm;
+            realm = null;
+        }
+
         // Release reference to our sentry impl
-        realm = null;
+        if ( stopped != null )
+        {
+            stopped.release();
+        }
 
+        // Calls still completing keep recording into the released instance, which is harmless:
+        RealmMetrics.release( metrics );
     }
 
     
@@ -306,6 +725,54 @@ public class Tc7AccessMgrProxy extends RealmBase
         this.defaultRoles = defaultRoles;
     }
 
+    /**
+     * Gets the asyncStart attribute of the TcAccessMgrProxy object.  When true, the Fortress implementation is
+     * initialized on a background thread and the container does not wait for it to start.
+     *
+     * @return true if initialization runs in the background.
+     */
+    public boolean getAsyncStart()
+    {
+        return asyncStart;
+    }
+
+
+    /**
+     * Sets the asyncStart attribute of the TcAccessMgrProxy object.  When true, the Fortress implementation is
+     * initialized on a background thread and the container does not wait for it to start.
+     *
+     * @param asyncStart true to initialize in the background.
+     */
+    public void setAsyncStart( boolean asyncStart )
+    {
+        LOG.info( CLS_NM + ".setAsyncStart <" + asyncStart + ">" );
+        this.asyncStart = asyncStart;
+    }
+
+
+    /**
+     * Gets the startTimeout attribute of the TcAccessMgrProxy object.
+     *
+     * @return number of milliseconds a request waits for background initialization before it is denied.
+     */
+    public long getStartTimeout()
+    {
+        return startTimeout;
+    }
+
+
+    /**
+     * Sets the startTimeout attribute of the TcAccessMgrProxy object.  Only used when asyncStart is true.
+     *
+     * @param startTimeout number of milliseconds a request waits for background initialization before it is denied.
+     */
+    public void setStartTimeout( long startTimeout )
+    {
+        LOG.info( CLS_NM + ".setStartTimeout <" + startTimeout + ">" );
+        this.startTimeout = startTimeout;
+    }
+
+
     /**
      * Gets the contextId attribute of the TcAccessMgrProxy object.  When set, it will be used as tenant id within the fortress manager apis.
      *
@@ -20,6 +20,10 @@
 package org.apache.directory.fortress.realm.tomcat;
 
 import java.security.Principal;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This interface prescribes runtime methods that are needed to perform security in Tomcat.  The
@@ -40,6 +44,25 @@ public interface TcAccessMgr
     boolean hasRole( Principal principal, String role );
 
 
+    /**
+     * Determine if any of the given Roles is contained within User's Tomcat Principal object.  The whole collection is
+     * evaluated in one call so callers checking several roles cross the class loader boundary only once.
+     * @param principal Contains User's Tomcat RBAC Session data that includes activated Roles.
+     * @param roles  Each maps to {@code org.apache.directory.fortress.core.model.Role#name}.
+     * @return True if at least one Role is found in TcPrincipal, false otherwise.
+     */
+    boolean hasAnyRole( Principal principal, Collection<String> roles );
+
+
+    /**
+     * Determine which of the given Roles are contained within User's Tomcat Principal object, in one call.
+     * @param principal Contains User's Tomcat RBAC Session data that includes activated Roles.
+     * @param roles  Each maps to {@code org.apache.directory.fortress.core.model.Role#name}.
+     * @return BitSet where bit i is set if the Role at position i of the list is found in TcPrincipal.
+     */
+    BitSet hasRoles( Principal principal, List<String> roles );
+
+
     /**
      * Perform user authentication and evaluate password policies.
      *
@@ -49,6 +72,39 @@ public interface TcAccessMgr
      */
     Principal authenticate( String userId, String password );
 
+
+    /**
+     * Return the principal of a user that has already been authenticated, e.g. by Tomcat's SingleSignOn valve, a
+     * restored container session or a client certificate.  The principal created by the user's last login is reused
+     * while it is cached, otherwise a trusted session is created, i.e. roles are activated without checking a password.
+     *
+     * @param userId Contains the userid of the authenticated user.
+     * @return Principal which contains the Fortress RBAC session data, or null if the user is unknown or may not log in.
+     */
+    Principal getPrincipal( String userId );
+
+
+    /**
+     * Asynchronous variant of {@link #authenticate(String, String)}.  The login runs on the realm's own threads, so
+     * the caller, e.g. an async servlet or authenticator, does not hold a connector thread during the directory round trip.
+     *
+     * @param userId   Contains the userid of the user signing on.
+     * @param password Contains the user's password.
+     * @return future completed with the Principal, or with null if the login failed.
+     */
+    CompletableFuture<Principal> authenticateAsync( String userId, String password );
+
+
+    /**
+     * Asynchronous variant of {@link #hasRole(Principal, String)}.  Completes on the calling thread when the
+     * principal's authorized roles are current in memory.
+     *
+     * @param principal Contains User's Tomcat RBAC Session data that includes activated Roles.
+     * @param role  Maps to {@code org.apache.directory.fortress.core.model.Role#name}.
+     * @return future completed with true if Role is found in TcPrincipal, false otherwise.
+     */
+    CompletableFuture<Boolean> hasRoleAsync( Principal principal, String role );
+
     /**
      * When the 'defaultRoles' parameter is set on realm proxy config (e.g. in server.xml or context.xml) it will be used to pass into
      * createSession calls into Fortress.  This will scope the roles to be considered for activation to this particular set.
@@ -65,4 +121,11 @@ public interface TcAccessMgr
      * @param contextId contains a String containing the tenantId for the operations.
      */
     public void setContextId( String contextId );
-}
\ No newline at end of file
+
+
+    /**
+     * Release the resources held by this instance, e.g. the cache statistics it published for its tenant and the
+     * tenant's policy snapshot.  Called once when the realm stops, the instance must not be used afterwards.
+     */
+    void release();
+}
@@ -0,0 +1,158 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.tomcat;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import jakarta.servlet.ServletException;
+
+import org.apache.catalina.Realm;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+/**
+ * Logs in users whose identity has already been established by a trusted front end, e.g. a TLS terminating proxy that
+ * verified the client certificate, and is passed along in a request header.  No password is checked: the userId in
+ * the header is handed to the context's realm, which for {@link Tc7AccessMgrProxy} creates a trusted Fortress session,
+ * or reuses the one cached for the user, see {@link TcAccessMgr#getPrincipal(String)}.
+ * <p>
+ * The header is only honoured on requests from addresses matching {@code trustedProxies}, loopback by default, and is
+ * removed from every other request so applications never see a forged value.  The valve must precede the context's
+ * authenticator, e.g. by declaring it in context.xml:
+ * <pre>
+ * &lt;Valve className="org.apache.directory.fortress.realm.tomcat.TrustedHeaderValve"
+ *        headerName="X-Remote-User" trustedProxies="10\.0\.0\.\d+" /&gt;
+ * </pre>
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class TrustedHeaderValve extends ValveBase
+{
+    private static final String CLS_NM = TrustedHeaderValve.class.getName();
+    // Do not change from Java's native logger in order to keep Tomcat's system classpath free of additional dependencies.
+    private static final Logger LOG = Logger.getLogger( CLS_NM );
+    /** Reported by {@code HttpServletRequest.getAuthType()} for users logged in by this valve */
+    public static final String AUTH_TYPE = "TRUSTED-HEADER";
+    private String headerName = "X-Remote-User";
+    private Pattern trustedProxies = Pattern.compile( "127\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}|::1|0:0:0:0:0:0:0:1" );
+
+
+    /**
+     * Constructor for the TrustedHeaderValve object
+     */
+    public TrustedHeaderValve()
+    {
+        super( true );
+    }
+
+
+    /**
+     * Log in the user named by the header, if the request comes from a trusted proxy and nobody is logged in yet.
+     *
+     * @param request  Request we are processing.
+     * @param response Response we are creating.
+     * @throws IOException if an input/output error occurs.
+     * @throws ServletException if a servlet error occurs.
+     */
+    @Override
+    public void invoke( Request request, Response response ) throws IOException, ServletException
+    {
+        String userId = request.getHeader( headerName );
+
+        if ( userId != null )
+        {
+            String remoteAddr = request.getRemoteAddr();
+
+            if ( ( trustedProxies == null ) || ( remoteAddr == null ) || !trustedProxies.matcher( remoteAddr ).matches() )
+            {
+                // Anyone can send the header, only the proxy is believed:
+                request.getCoyoteRequest().getMimeHeaders().removeHeader( headerName );
+                LOG.fine( CLS_NM + ".invoke removed header " + headerName + " sent by untrusted address " + remoteAddr );
+            }
+            else if ( ( request.getUserPrincipal() == null ) && !userId.trim().isEmpty() )
+            {
+                Realm realm = request.getContext().getRealm();
+                Principal principal = realm != null ? realm.authenticate( userId.trim() ) : null;
+
+                if ( principal != null )
+                {
+                    request.setAuthType( AUTH_TYPE );
+                    request.setUserPrincipal( principal );
+                }
+                else
+                {
+                    LOG.fine( CLS_NM + ".invoke userId <" + userId + "> from " + remoteAddr + " not authenticated by realm" );
+                }
+            }
+        }
+
+        getNext().invoke( request, response );
+    }
+
+
+    /**
+     * Gets the headerName attribute of the TrustedHeaderValve object
+     *
+     * @return name of the request header that carries the userId.
+     */
+    public String getHeaderName()
+    {
+        return headerName;
+    }
+
+
+    /**
+     * Sets the headerName attribute of the TrustedHeaderValve object
+     *
+     * @param headerName name of the request header that carries the userId.
+     */
+    public void setHeaderName( String headerName )
+    {
+        LOG.info( CLS_NM + ".setHeaderName <" + headerName + ">" );
+        this.headerName = headerName;
+    }
+
+
+    /**
+     * Gets the trustedProxies attribute of the TrustedHeaderValve object
+     *
+     * @return regular expression matched against the remote address of requests, null if no address is trusted.
+     */
+    public String getTrustedProxies()
+    {
+        return trustedProxies != null ? trustedProxies.pattern() : null;
+    }
+
+
+    /**
+     * Sets the trustedProxies attribute of the TrustedHeaderValve object
+     *
+     * @param trustedProxies regular expression matched against the remote address of requests, empty to trust none.
+     */
+    public void setTrustedProxies( String trustedProxies )
+    {
+        LOG.info( CLS_NM + ".setTrustedProxies <" + trustedProxies + ">" );
+        this.trustedProxies = ( ( trustedProxies != null ) && ( trustedProxies.length() > 0 ) ) ? Pattern.compile( trustedProxies ) : null;
+    }
+}
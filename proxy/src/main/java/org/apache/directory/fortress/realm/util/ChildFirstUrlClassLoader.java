@@ -21,16 +21,28 @@ package org.apache.directory.fortress.realm.util;
 
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class extends the standard Java URLClassloader and provides a child first lookup for system classpath and is used when
  * JBoss application server is in use.  The child first URLClassloader behaves as one would expect and always looks in child classloader
  * before going to parent to search.  This inversion is needed in JBoss to allow isolation of Fortress code from the server and application classpaths.
+ * <p>
+ * Local resource lookups, hits and misses, are cached.  This class is registered as parallel capable.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
 public class ChildFirstUrlClassLoader extends URLClassLoader
 {
+    static
+    {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final ConcurrentHashMap<String, Optional<URL>> resources = new ConcurrentHashMap<String, Optional<URL>>();
+
+
     /**
      * Constructor for the ChildFirstUrlClassLoader object accepts an array of URLs and parent reference.
      *
@@ -55,47 +67,50 @@ public class ChildFirstUrlClassLoader extends URLClassLoader
 
 
     /**
-     * Description of the Method
+     * Load the class from this loader's classpath first, then from the parent.
      *
-     * @param name    Description of the Parameter
-     * @param resolve Description of the Parameter
-     * @return Description of the Return Value
-     * @throws ClassNotFoundException Description of the Exception
+     * @param name    binary name of the class.
+     * @param resolve if true, resolve the class.
+     * @return the resulting Class object.
+     * @throws ClassNotFoundException if the class could not be found.
      */
     protected Class<?> loadClass( String name, boolean resolve ) throws ClassNotFoundException
     {
-        Class<?> c = findLoadedClass( name );
-        
-        if ( c == null )
+        synchronized ( getClassLoadingLock( name ) )
         {
-            try
-            {
-                c = findClass( name );
-            }
-            catch ( ClassNotFoundException ignore )
-            {
+            Class<?> c = findLoadedClass( name );
 
-            }
-            
-            if ( c == null) 
+            if ( c == null )
             {
-                if ( getParent() != null )
+                try
                 {
-                    c = getParent().loadClass( name );
+                    c = findClass( name );
                 }
-                else
+                catch ( ClassNotFoundException ignore )
                 {
-                    c = getSystemClassLoader().loadClass( name );
+
+                }
+
+                if ( c == null)
+                {
+                    if ( getParent() != null )
+                    {
+                        c = getParent().loadClass( name );
+                    }
+                    else
+                    {
+                        c = getSystemClassLoader().loadClass( name );
+                    }
                 }
             }
-        }
-        
-        if ( resolve )
-        {
-            resolveClass( c );
-        }
 
-        return c;
+            if ( resolve )
+            {
+                resolveClass( c );
+            }
+
+            return c;
+        }
     }
 
 
@@ -107,8 +122,7 @@ public class ChildFirstUrlClassLoader extends URLClassLoader
      */
     public URL getResource( String name )
     {
-        URL url;
-        url = findResource( name );
+        URL url = resources.computeIfAbsent( name, n -> Optional.ofNullable( findResource( n ) ) ).orElse( null );
         
         if ( url == null )
         {
@@ -125,4 +139,3 @@ public class ChildFirstUrlClassLoader extends URLClassLoader
         return url;
     }
 }
-
@@ -0,0 +1,208 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.realm.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds.  Values are counted in log-linear buckets: every power of two is
+ * split into 16 sub-buckets, so a reported percentile is within about 6% of the true value across the whole range of a
+ * long.  Recording is a few arithmetic operations and atomic increments and never allocates.
+ * <p>
+ * Percentiles are computed from a copy of the buckets taken when read.  Values recorded while the copy is taken may
+ * or may not be included.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class LatencyHistogram
+{
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    // Values below SUB_COUNT get a bucket each, every higher power of two gets SUB_COUNT buckets:
+    private static final int BUCKETS = ( 64 - SUB_BITS ) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray( BUCKETS );
+    private final AtomicLong max = new AtomicLong();
+
+
+    /**
+     * Count one value.
+     *
+     * @param nanos the latency, negative values are counted as zero.
+     */
+    public void record( long nanos )
+    {
+        long value = Math.max( nanos, 0 );
+        counts.incrementAndGet( index( value ) );
+
+        long current = max.get();
+
+        while ( ( value > current ) && !max.compareAndSet( current, value ) )
+        {
+            current = max.get();
+        }
+    }
+
+
+    /**
+     * Return the value below which the given fraction of the recorded values fall.
+     *
+     * @param quantile between 0 and 1, e.g. 0.99.
+     * @return the upper bound of the bucket holding the quantile, in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getValueAt( double quantile )
+    {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            snapshot[i] = counts.get( i );
+            count += snapshot[i];
+        }
+
+        if ( count == 0 )
+        {
+            return 0;
+        }
+
+        long rank = Math.max( 1, (long) Math.ceil( quantile * count ) );
+        long seen = 0;
+
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            seen += snapshot[i];
+
+            if ( seen >= rank )
+            {
+                return Math.min( upperBound( i ), max.get() );
+            }
+        }
+
+        return max.get();
+    }
+
+
+    /**
+     * @return number of values recorded.
+     */
+    public long getCount()
+    {
+        long count = 0;
+
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            count += counts.get( i );
+        }
+
+        return count;
+    }
+
+
+    /**
+     * @return average of the values recorded, estimated from the midpoints of their buckets, in nanoseconds.
+     */
+    public double getMean()
+    {
+        long count = 0;
+        double sum = 0;
+
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            long n = counts.get( i );
+
+            if ( n > 0 )
+            {
+                count += n;
+                sum += n * ( ( lowerBound( i ) + upperBound( i ) ) / 2d );
+            }
+        }
+
+        return count == 0 ? 0 : Math.min( sum / count, max.get() );
+    }
+
+
+    /**
+     * @return largest value recorded, in nanoseconds.
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+
+    /**
+     * Forget all recorded values.  Values recorded concurrently may survive the reset.
+     */
+    public void reset()
+    {
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            counts.set( i, 0 );
+        }
+
+        max.set( 0 );
+    }
+
+
+    private static int index( long value )
+    {
+        if ( value < SUB_COUNT )
+        {
+            return (int) value;
+        }
+
+        // Keep the leading SUB_BITS + 1 bits of the value, the first of which is implied by the power of two:
+        int shift = 63 - Long.numberOfLeadingZeros( value ) - SUB_BITS;
+
+        return ( shift + 1 ) * SUB_COUNT + (int) ( ( value >>> shift ) - SUB_COUNT );
+    }
+
+
+    private static long lowerBound( int index )
+    {
+        if ( index < SUB_COUNT )
+        {
+            return index;
+        }
+
+        int shift = index / SUB_COUNT - 1;
+        long sub = index % SUB_COUNT + SUB_COUNT;
+
+        return sub << shift;
+    }
+
+
+    private static long upperBound( int index )
+    {
+        if ( index < SUB_COUNT )
+        {
+            return index;
+        }
+
+        int shift = index / SUB_COUNT - 1;
+        long sub = index % SUB_COUNT + SUB_COUNT;
+
+        return ( ( sub + 1 ) << shift ) - 1;
+    }
+}